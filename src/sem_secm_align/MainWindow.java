@@ -1,6 +1,6 @@
 /*
  * Created: 2022-01-14
- * Updated: 2023-04-06
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align;
@@ -35,6 +35,8 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import sem_secm_align.data_types.SECMImage;
 import sem_secm_align.data_types.SEMImage;
 import sem_secm_align.data_types.Unit;
+import sem_secm_align.data_types.loaders.SECMLoader;
+import sem_secm_align.data_types.loaders.SECMLoaders;
 import sem_secm_align.edge_detection.MorphologicalTransformationDialog;
 import sem_secm_align.settings.Settings;
 
@@ -692,9 +694,12 @@ public class MainWindow extends JFrame{
      * {@link SECMImage} which gets sent to the {@link #view_screen}.
      */
     private void secmOpen(){
-        FileFilter ff = new FileNameExtensionFilter( "Text files", "txt");
+        FileFilter ff = new FileNameExtensionFilter( "SECM files", SECMLoaders.getAllExtensions());
         JFileChooser filedialog = new JFileChooser();
         filedialog.addChoosableFileFilter(ff);
+        for(SECMLoader loader : SECMLoaders.getLoaders()){
+            filedialog.addChoosableFileFilter(new FileNameExtensionFilter(loader.getName(), loader.getExtensions()));
+        }
         filedialog.setFileFilter(ff);
         int response = filedialog.showOpenDialog(this);
         if(response == JFileChooser.APPROVE_OPTION){
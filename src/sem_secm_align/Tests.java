@@ -4,18 +4,48 @@
  */
 package sem_secm_align;
 
+import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
 import javax.imageio.ImageIO;
+import sem_secm_align.data_types.BitGrid;
+import sem_secm_align.data_types.FluxReader;
 import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMImage;
+import sem_secm_align.data_types.SECMPoints;
+import sem_secm_align.data_types.loaders.SECMLoader;
+import sem_secm_align.data_types.loaders.SECMLoaders;
 import sem_secm_align.settings.ColourSettings;
+import sem_secm_align.settings.Constants;
+import sem_secm_align.utility.Bicubic;
+import sem_secm_align.utility.ImageParser;
 import static sem_secm_align.utility.ImageParser.bufferedImageToGrayscale;
+import sem_secm_align.utility.Search;
+import sem_secm_align.utility.SingularMatrixException;
+import sem_secm_align.utility.filters.Close;
+import sem_secm_align.utility.filters.DilationErosion;
+import sem_secm_align.utility.filters.DistanceTransform;
 import sem_secm_align.utility.filters.Filter;
 import sem_secm_align.utility.filters.SobelX;
 import sem_secm_align.utility.filters.SobelY;
@@ -25,6 +55,1333 @@ import sem_secm_align.utility.filters.SobelY;
  * @author Nathaniel
  */
 public class Tests {
+    
+    /**
+     * Runs the consistency checks below and prints the result of each.
+     * @param args Not used.
+     * @throws Exception If a check cannot set up its files.
+     */
+    public static void main(String[] args) throws Exception{
+        boolean passed = true;
+        passed &= testFluxGridding();
+        passed &= testFluxNumbers();
+        passed &= testFluxChunks();
+        passed &= testSECMCache();
+        passed &= testSECMInterpolation();
+        passed &= testSECMBicubicThreads();
+        passed &= testSECMBatches();
+        passed &= testSearch();
+        passed &= testMATLoader();
+        passed &= testASCIILoader();
+        passed &= testLoaderDetection();
+        passed &= testGrayscale();
+        passed &= testBitGrid();
+        passed &= testDilationErosion();
+        passed &= testLargeRectangles();
+        passed &= testDistanceTransform();
+        System.out.println(passed ? "All checks passed." : "Some checks FAILED.");
+        if(!passed){
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Checks that an SECM image is gridded correctly from a Flux file whose points are shuffled and whose coordinates wander within 
+     * {@link Constants#RELATIVE_ERR_CUTOFF} of the grid, and that a file with a missing point is rejected.
+     * @return <code>true</code> if the grid, the scaled currents and the rejection are as expected.
+     * @throws Exception If the test file cannot be written.
+     */
+    public static boolean testFluxGridding() throws Exception{
+        Random random = new Random(0);
+        int columns = 23;
+        int rows = 17;
+        double[][] currents = new double[columns][rows];
+        ArrayList<String> lines = new ArrayList<>();
+        for(int i = 0; i < columns; i++){
+            for(int j = 0; j < rows; j++){
+                double x = (i + 1)*2.5*(1 + (random.nextDouble() - 0.5)*Constants.RELATIVE_ERR_CUTOFF*1E-3);
+                double y = (j + 3)*4.0*(1 + (random.nextDouble() - 0.5)*Constants.RELATIVE_ERR_CUTOFF*1E-3);
+                currents[i][j] = random.nextGaussian()*1E-9;
+                lines.add(x + "," + y + "," + currents[i][j]);
+            }
+        }
+        Collections.shuffle(lines, random);
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+        for(double[] column : currents){
+            for(double current : column){
+                minimum = Math.min(minimum, current);
+                maximum = Math.max(maximum, current);
+            }
+        }
+        Path file = Files.createTempFile("flux-grid", ".txt");
+        int failures = 0;
+        try{
+            Files.write(file, ("# x,y,current\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII));
+            SECMImage image = new SECMImage(file.toString());
+            double[][] data = image.getData();
+            if(!image.isDisplayable() || data.length != columns || data[0].length != rows){
+                failures ++;
+            }
+            else{
+                for(int i = 0; i < columns; i++){
+                    for(int j = 0; j < rows; j++){
+                        failures += data[i][j] == (currents[i][j] - minimum)/(maximum - minimum) ? 0 : 1;
+                    }
+                }
+            }
+            //one point short of a full grid
+            Files.write(file, ("# x,y,current\n" + String.join("\n", lines.subList(1, lines.size())) + "\n").getBytes(StandardCharsets.US_ASCII));
+            failures += new SECMImage(file.toString()).isDisplayable() ? 1 : 0;
+            return report("Flux gridding", failures, columns*rows + 1);
+        }
+        finally{
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /**
+     * Checks that {@link FluxReader} parses numbers to exactly the same <code>double</code> as {@link Double#parseDouble(String)}, 
+     * including negative zero, long mantissas, extreme exponents and randomly generated values.
+     * @return <code>true</code> if every number matches.
+     * @throws Exception If the test file cannot be written or read.
+     */
+    public static boolean testFluxNumbers() throws Exception{
+        String[] edge_cases = {"0", "-0", "-0.0", "+0.0", "0.0e10", "1", "-1", "+1.5", ".5", "5.", "0.1", "-0.3", "1e5", "1E5", "1e+5", "1.5e-5", "-2.5E-3", 
+            "1e22", "1e23", "1e-22", "1e-23", "9007199254740992", "9007199254740993", "9007199254740995", "123456789012345678", "1234567890123456789", 
+            "12345678901234567890123456789", "0.1234567890123456789012345", "3.141592653589793238462643383279", "100000000000000000000000000000", 
+            "1.7976931348623157e308", "1.7976931348623159e308", "1e309", "-1e400", "4.9e-324", "2.4703282292062327e-324", "2.2250738585072014E-308", 
+            "2.2250738585072011e-308", "1e-400", "0.000000000000000000000000000001", "000000123.456000", "7.0E-10", "NaN", "Infinity", "-Infinity"};
+        Random random = new Random(1);
+        String[] values = Arrays.copyOf(edge_cases, edge_cases.length + 4000);
+        for(int i = edge_cases.length; i < values.length; i++){
+            switch(i % 4){
+                case 0:
+                    values[i] = Double.toString(Double.longBitsToDouble(random.nextLong()));
+                    break;
+                case 1:
+                    values[i] = Double.toString((random.nextDouble() - 0.5)*Math.pow(10, random.nextInt(40) - 20));
+                    break;
+                case 2:
+                    values[i] = (random.nextBoolean() ? "-" : "") + random.nextInt(1000000) + "." + random.nextInt(1000000) + "e" + (random.nextInt(60) - 30);
+                    break;
+                default:
+                    values[i] = Long.toString(random.nextLong() >>> random.nextInt(64)) + "." + Long.toString(random.nextLong() >>> 1);
+                    break;
+            }
+        }
+        Path file = Files.createTempFile("flux-numbers", ".txt");
+        try{
+            StringBuilder text = new StringBuilder("# x,y,current\n");
+            for(int i = 0; i < values.length; i++){
+                text.append(values[i]).append(", ").append(i).append(",").append(values[i]).append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+            Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+            SECMPoints points = FluxReader.read(file.toString());
+            int failures = points.size() == values.length ? 0 : 1;
+            for(int i = 0; i < Math.min(values.length, points.size()); i++){
+                long expected = Double.doubleToLongBits(Double.parseDouble(values[i]));
+                if(Double.doubleToLongBits(points.getX(i)) != expected || Double.doubleToLongBits(points.getCurrent(i)) != expected || points.getY(i) != i){
+                    System.out.println("    " + values[i] + " was read as " + points.getX(i) + " and " + points.getCurrent(i));
+                    failures ++;
+                }
+            }
+            return report("Flux number parsing", failures, values.length);
+        }
+        finally{
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /**
+     * Checks that a Flux file large enough to be split into chunks, whose chunk boundaries fall in the middle of lines, 
+     * reads the same in parallel as it does sequentially and holds the values that were written. The file is over 12 MB, so it is split into at least 3 chunks.
+     * @return <code>true</code> if both reads hold every point in order.
+     * @throws Exception If the test file cannot be written or read.
+     */
+    public static boolean testFluxChunks() throws Exception{
+        Random random = new Random(2);
+        int count = 300000;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] current = new double[count];
+        Path file = Files.createTempFile("flux-chunks", ".txt");
+        try{
+            StringBuilder text = new StringBuilder("#x,y,current\n");
+            for(int i = 0; i < count; i++){
+                x[i] = random.nextInt(1000)*1.5e-6;
+                y[i] = random.nextInt(1000)*1.5e-6;
+                current[i] = random.nextGaussian()*Math.pow(10, random.nextInt(12) - 12);
+                if(i % 1000 == 0){
+                    text.append("# a comment line of some length ").append(random.nextInt()).append('\n');
+                }
+                //lines of varying length, so that the chunks cannot all end on line boundaries
+                text.append(x[i]).append(',').append(i % 3 == 0 ? " " : "").append(y[i]).append(",").append(current[i]);
+                text.append(i % 5 == 0 ? ",extra\n" : (i % 7 == 0 ? "\r\n" : "\n"));
+            }
+            Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+            SECMPoints sequential = FluxReader.read(file.toString(), false);
+            SECMPoints parallel = FluxReader.read(file.toString(), true);
+            int failures = sequential.size() == count && parallel.size() == count ? 0 : 1;
+            for(int i = 0; i < Math.min(count, Math.min(sequential.size(), parallel.size())); i++){
+                for(SECMPoints points : new SECMPoints[]{sequential, parallel}){
+                    if(points.getX(i) != x[i] || points.getY(i) != y[i] || Double.doubleToLongBits(points.getCurrent(i)) != Double.doubleToLongBits(current[i])){
+                        failures ++;
+                    }
+                }
+            }
+            return report("Flux parallel chunks (" + Files.size(file) + " bytes)", failures, 2*count);
+        }
+        finally{
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    /**
+     * Checks that the binary sidecar cache of an SECM image is used while the source file is unchanged 
+     * and is ignored once the size or modification time of the source file changes.
+     * @return <code>true</code> if each load holds the expected data.
+     * @throws Exception If the test files cannot be written or read.
+     */
+    public static boolean testSECMCache() throws Exception{
+        Path directory = Files.createTempDirectory("secm-cache");
+        Path file = directory.resolve("image.csv");
+        //the sidecar is named after the source file (see SECMCache.EXTENSION)
+        Path cache = Paths.get(file.toString() + ".secmcache");
+        String original = "0,0,1\n1,0,2\n2,0,3\n0,1,4\n1,1,5\n2,1,6\n";
+        String same_size = "0,0,6\n1,0,5\n2,0,4\n0,1,3\n1,1,2\n2,1,1\n";
+        String resized = "0,0,1\n1,0,1\n2,0,1\n0,1,1\n1,1,1\n2,1,10\n";
+        int failures = 0;
+        try{
+            Files.write(file, original.getBytes(StandardCharsets.US_ASCII));
+            FileTime original_time = FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis()/1000*1000);
+            Files.setLastModifiedTime(file, original_time);
+            double[][] first = new SECMImage(file.toString()).getData();
+            if(!Files.isRegularFile(cache)){
+                System.out.println("    no cache was written");
+                failures ++;
+            }
+            //the same size and time: the cache is trusted even though the contents changed
+            Files.write(file, same_size.getBytes(StandardCharsets.US_ASCII));
+            Files.setLastModifiedTime(file, original_time);
+            if(!Arrays.deepEquals(new SECMImage(file.toString()).getData(), first)){
+                System.out.println("    the cache was not used for an unchanged file");
+                failures ++;
+            }
+            //a new modification time: the file is parsed again
+            FileTime later_time = FileTime.fromMillis(original_time.toMillis() + 5000);
+            Files.setLastModifiedTime(file, later_time);
+            double[][] second = new SECMImage(file.toString()).getData();
+            if(!Arrays.deepEquals(second, new double[][]{{1, 0.4}, {0.8, 0.2}, {0.6, 0}})){
+                System.out.println("    the cache was used after the modification time changed: " + Arrays.deepToString(second));
+                failures ++;
+            }
+            //a new size with the same modification time: the file is parsed again
+            Files.write(file, resized.getBytes(StandardCharsets.US_ASCII));
+            Files.setLastModifiedTime(file, later_time);
+            double[][] third = new SECMImage(file.toString()).getData();
+            if(!Arrays.deepEquals(third, new double[][]{{0, 0}, {0, 0}, {0, 1}})){
+                System.out.println("    the cache was used after the size changed: " + Arrays.deepToString(third));
+                failures ++;
+            }
+            return report("SECM sidecar cache", failures, 4);
+        }
+        finally{
+            Files.deleteIfExists(cache);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+    
+    /**
+     * Checks the nearest-neighbour, bilinear and bicubic lookups of {@link SECMImage#getScaledCurrent(double, double, int)} 
+     * against {@link #referenceScaledCurrent(double[], double[], double[][], double, double, int)}, which finds cells by searching as the lookups originally did. 
+     * Axes with exactly uniform, decimal (uniform to within rounding) and irregular spacing are used, with points inside and outside the domain, 
+     * on the nodes and halfway between them.
+     * @return <code>true</code> if every lookup matches.
+     * @throws Exception If the test file cannot be written.
+     */
+    public static boolean testSECMInterpolation() throws Exception{
+        Random random = new Random(6);
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 6; t++){
+            double[] xs = testAxis(random, t % 3, 12 + random.nextInt(20));
+            double[] ys = testAxis(random, (t + 1) % 3, 8 + random.nextInt(20));
+            SECMImage image = testImage(random, xs, ys, false);
+            double[][] data = image.getData();
+            double[][] points = testPoints(random, xs, ys);
+            for(int mode : new int[]{SECMImage.INTERPOLATION_NN, SECMImage.INTERPOLATION_BILINEAR, SECMImage.INTERPOLATION_BICUBIC}){
+                for(double[] point : points){
+                    double expected = referenceScaledCurrent(xs, ys, data, point[0], point[1], mode);
+                    double actual = image.getScaledCurrent(point[0], point[1], mode);
+                    if(!closeEnough(actual, expected, mode)){
+                        if(failures < 10){
+                            System.out.println("    mode " + mode + " at (" + point[0] + ", " + point[1] + "): " + actual + " instead of " + expected);
+                        }
+                        failures ++;
+                    }
+                    cases ++;
+                }
+            }
+        }
+        return report("SECM interpolation", failures, cases);
+    }
+    
+    /**
+     * Checks bicubic lookups made from several threads at once on freshly loaded images against {@link #referenceScaledCurrent(double[], double[], double[][], double, double, int)}, 
+     * and that images with fewer than 5 coordinates along an axis give {@link Double#NaN}.
+     * @return <code>true</code> if every lookup matches.
+     * @throws Exception If a test file cannot be written.
+     */
+    public static boolean testSECMBicubicThreads() throws Exception{
+        Random random = new Random(7);
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 4; t++){
+            double[] xs = testAxis(random, t % 3, t == 3 ? 4 : 10 + random.nextInt(20));
+            double[] ys = testAxis(random, 2, 10 + random.nextInt(20));
+            SECMImage image = testImage(random, xs, ys, false);
+            double[][] data = image.getData();
+            double[][] points = testPoints(random, xs, ys);
+            boolean too_small = xs.length < 5;
+            failures += (int)IntStream.range(0, points.length).parallel().filter(i -> {
+                double expected = referenceScaledCurrent(xs, ys, data, points[i][0], points[i][1], SECMImage.INTERPOLATION_BICUBIC);
+                double actual = image.getScaledCurrent(points[i][0], points[i][1], SECMImage.INTERPOLATION_BICUBIC);
+                return !closeEnough(actual, expected, SECMImage.INTERPOLATION_BICUBIC) || too_small != Double.isNaN(actual);
+            }).count();
+            cases += points.length;
+        }
+        return report("SECM bicubic lookups from several threads", failures, cases);
+    }
+    
+    /**
+     * Checks {@link SECMImage#getScaledCurrents(double[], double[], double[], int)}, {@link SECMImage#getCurrents(double[], double[], double[], int)}, 
+     * {@link SECMImage#getScaledCurrentGrid(double[], double[], double[], int)} and {@link SECMImage#getCurrentGrid(double[], double[], double[], int)} 
+     * against point-by-point calls, which they must match exactly, and the grids against {@link #referenceScaledCurrent(double[], double[], double[][], double, double, int)}.
+     * Images in double and single precision, an image too small for bicubic interpolation and an invalid interpolation mode are included.
+     * @return <code>true</code> if every value matches.
+     * @throws Exception If a test file cannot be written.
+     */
+    public static boolean testSECMBatches() throws Exception{
+        Random random = new Random(8);
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 8; t++){
+            double[] xs = testAxis(random, t % 3, t == 6 ? 4 : 8 + random.nextInt(20));
+            double[] ys = testAxis(random, (t + 2) % 3, 8 + random.nextInt(20));
+            SECMImage image = testImage(random, xs, ys, t % 2 == 1);
+            double[][] data = image.getData();
+            double[][] points = testPoints(random, xs, ys);
+            double[] x = new double[points.length];
+            double[] y = new double[points.length];
+            for(int i = 0; i < points.length; i++){
+                x[i] = points[i][0];
+                y[i] = points[i][1];
+            }
+            double[] grid_x = Arrays.copyOf(x, 60);
+            double[] grid_y = Arrays.copyOfRange(y, 60, 100);
+            for(int mode : new int[]{SECMImage.INTERPOLATION_NN, SECMImage.INTERPOLATION_BILINEAR, SECMImage.INTERPOLATION_BICUBIC, 7}){
+                double[] scaled = new double[x.length];
+                double[] currents = new double[x.length];
+                image.getScaledCurrents(x, y, scaled, mode);
+                image.getCurrents(x, y, currents, mode);
+                for(int i = 0; i < x.length; i++){
+                    if(Double.compare(scaled[i], image.getScaledCurrent(x[i], y[i], mode)) != 0 || Double.compare(currents[i], image.getCurrent(x[i], y[i], mode)) != 0){
+                        failures ++;
+                    }
+                    cases ++;
+                }
+                double[] scaled_grid = new double[grid_x.length*grid_y.length];
+                double[] current_grid = new double[grid_x.length*grid_y.length];
+                image.getScaledCurrentGrid(grid_x, grid_y, scaled_grid, mode);
+                image.getCurrentGrid(grid_x, grid_y, current_grid, mode);
+                for(int j = 0; j < grid_y.length; j++){
+                    for(int i = 0; i < grid_x.length; i++){
+                        int index = j*grid_x.length + i;
+                        double expected = referenceScaledCurrent(xs, ys, data, grid_x[i], grid_y[j], mode);
+                        if(Double.compare(scaled_grid[index], image.getScaledCurrent(grid_x[i], grid_y[j], mode)) != 0 
+                                || Double.compare(current_grid[index], image.getCurrent(grid_x[i], grid_y[j], mode)) != 0 
+                                || !closeEnough(scaled_grid[index], expected, mode)){
+                            failures ++;
+                        }
+                        cases ++;
+                    }
+                }
+            }
+        }
+        return report("SECM batch and grid lookups", failures, cases);
+    }
+    
+    /**
+     * Checks {@link Search#FindSmaller(double, double[])} and {@link Search.Cursor#findSmaller(double)} against {@link #referenceFindSmaller(double, double[])} 
+     * on arrays of 1 to 200 values, for keys in increasing, decreasing and random order, keys equal to the values, repeated keys and infinite keys. 
+     * A {@link Double#NaN} key must give the cursor the same result as {@link Search#FindSmaller(double, double[])} without disturbing later searches.
+     * @return <code>true</code> if every search matches.
+     */
+    public static boolean testSearch(){
+        Random random = new Random(9);
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 300; t++){
+            int length = t < 5 ? t + 1 : 1 + random.nextInt(200);
+            double[] array = new double[length];
+            for(int i = 0; i < length; i++){
+                array[i] = (i == 0 ? -50 : array[i - 1]) + 0.01 + random.nextDouble();
+            }
+            double[] keys = new double[3*length + 20];
+            for(int i = 0; i < keys.length; i++){
+                keys[i] = random.nextInt(4) == 0 ? array[random.nextInt(length)] : array[0] - 2 + random.nextDouble()*(array[length - 1] - array[0] + 4);
+            }
+            keys[0] = Double.NEGATIVE_INFINITY;
+            keys[1] = Double.POSITIVE_INFINITY;
+            keys[2] = keys[3];
+            switch(t % 3){
+                case 0:
+                    Arrays.sort(keys);
+                    break;
+                case 1:
+                    Arrays.sort(keys);
+                    for(int i = 0; i < keys.length/2; i++){
+                        double swap = keys[i];
+                        keys[i] = keys[keys.length - 1 - i];
+                        keys[keys.length - 1 - i] = swap;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            Search.Cursor cursor = new Search.Cursor(array);
+            for(int i = 0; i < keys.length; i++){
+                int expected = referenceFindSmaller(keys[i], array);
+                if(Search.FindSmaller(keys[i], array) != expected || cursor.findSmaller(keys[i]) != expected){
+                    failures ++;
+                }
+                cases ++;
+                if(i % 10 == 0){
+                    if(cursor.findSmaller(Double.NaN) != Search.FindSmaller(Double.NaN, array)){
+                        failures ++;
+                    }
+                    cases ++;
+                }
+            }
+        }
+        return report("Search and Search.Cursor", failures, cases);
+    }
+    
+    /**
+     * Checks {@link SECMLoaders#MAT} on MAT-files written in both byte orders, with and without compression, 
+     * holding vectors of points, axes with a matrix of currents in either orientation and three-column tables. 
+     * Short names and small integer arrays are written as small data elements. Every truncation of each file, other than between two arrays, must be rejected, as must compressed elements whose stream is cut short.
+     * @return <code>true</code> if every file is read correctly.
+     * @throws Exception If a test file cannot be written.
+     */
+    public static boolean testMATLoader() throws Exception{
+        Random random = new Random(10);
+        int failures = 0;
+        int cases = 0;
+        Path directory = Files.createTempDirectory("mat-loader");
+        Path file = directory.resolve("scan.mat");
+        try{
+            for(int t = 0; t < 16; t++){
+                ByteOrder order = t % 2 == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                boolean compressed = (t/2) % 2 == 1;
+                int nx = 2 + random.nextInt(6);
+                //a square matrix is always read with one row per y-coordinate
+                int ny = t/4 == 2 ? nx + 1 : 2 + random.nextInt(6);
+                double[] xs = new double[nx];
+                double[] ys = new double[ny];
+                for(int i = 0; i < nx; i++){
+                    xs[i] = i*3 - 4;
+                }
+                for(int j = 0; j < ny; j++){
+                    ys[j] = j*5 + 2;
+                }
+                double[] currents = new double[nx*ny];
+                SECMPoints expected = new SECMPoints();
+                for(int i = 0; i < nx; i++){
+                    for(int j = 0; j < ny; j++){
+                        currents[i*ny + j] = random.nextInt(2000) - 1000;
+                        expected.add(xs[i], ys[j], currents[i*ny + j]);
+                    }
+                }
+                byte[][] arrays;
+                switch(t/4){
+                    case 0:{
+                        //vectors of points
+                        double[] x = new double[nx*ny];
+                        double[] y = new double[nx*ny];
+                        for(int k = 0; k < x.length; k++){
+                            x[k] = expected.getX(k);
+                            y[k] = expected.getY(k);
+                        }
+                        arrays = new byte[][]{matArray(order, "x", new int[]{x.length, 1}, x, false), matArray(order, "y", new int[]{1, y.length}, y, true), 
+                            matArray(order, "current", new int[]{currents.length, 1}, currents, false)};
+                        break;
+                    }
+                    case 1:{
+                        //axes with a matrix of one row per y-coordinate, stored column by column
+                        double[] matrix = new double[nx*ny];
+                        for(int i = 0; i < nx; i++){
+                            for(int j = 0; j < ny; j++){
+                                matrix[i*ny + j] = currents[i*ny + j];
+                            }
+                        }
+                        arrays = new byte[][]{matArray(order, "X", new int[]{1, nx}, xs, true), matArray(order, "Y", new int[]{ny, 1}, ys, true), 
+                            matArray(order, "data", new int[]{ny, nx}, matrix, true)};
+                        break;
+                    }
+                    case 2:{
+                        //axes with a matrix of one row per x-coordinate and an unnamed current
+                        double[] matrix = new double[nx*ny];
+                        for(int i = 0; i < nx; i++){
+                            for(int j = 0; j < ny; j++){
+                                matrix[j*nx + i] = currents[i*ny + j];
+                            }
+                        }
+                        arrays = new byte[][]{matArray(order, "scan", new int[]{nx, ny}, matrix, false), matArray(order, "x", new int[]{1, nx}, xs, false), 
+                            matArray(order, "y", new int[]{1, ny}, ys, false)};
+                        break;
+                    }
+                    default:{
+                        //a table with one row (or, transposed, one column) per point
+                        int count = nx*ny;
+                        boolean columns = t % 4 < 2;
+                        double[] table = new double[3*count];
+                        for(int k = 0; k < count; k++){
+                            double[] point = {expected.getX(k), expected.getY(k), expected.getCurrent(k)};
+                            for(int c = 0; c < 3; c++){
+                                table[columns ? c*count + k : 3*k + c] = point[c];
+                            }
+                        }
+                        arrays = new byte[][]{matArray(order, "points", columns ? new int[]{count, 3} : new int[]{3, count}, table, false)};
+                        break;
+                    }
+                }
+                byte[] contents = matFile(order, compressed, arrays);
+                Files.write(file, contents);
+                try{
+                    if(!sortedPoints(SECMLoaders.MAT.read(file.toString())).equals(sortedPoints(expected))){
+                        System.out.println("    layout " + t/4 + " (" + order + (compressed ? ", compressed" : "") + ") was read incorrectly.");
+                        failures ++;
+                    }
+                }
+                catch(ImproperFileFormattingException e){
+                    System.out.println("    layout " + t/4 + " (" + order + (compressed ? ", compressed" : "") + ") was rejected: " + e.getMessage());
+                    failures ++;
+                }
+                cases ++;
+                //a file cut between two arrays is a valid file with fewer arrays
+                ArrayList<Integer> boundaries = new ArrayList<>();
+                ByteBuffer elements = ByteBuffer.wrap(contents).order(order);
+                for(int position = 128; position < contents.length; ){
+                    boundaries.add(position);
+                    int type = elements.getInt(position);
+                    int length = elements.getInt(position + 4);
+                    position += 8 + (type == 15 ? length : (length + 7) & ~7);
+                }
+                for(int cut = 0; cut < contents.length; cut += 1 + random.nextInt(5)){
+                    if(boundaries.contains(cut)){
+                        continue;
+                    }
+                    Files.write(file, Arrays.copyOf(contents, cut));
+                    try{
+                        SECMLoaders.MAT.read(file.toString());
+                        System.out.println("    layout " + t/4 + " (" + order + (compressed ? ", compressed" : "") + ") truncated to " + cut + " bytes was accepted.");
+                        failures ++;
+                    }
+                    catch(ImproperFileFormattingException e){
+
+                    }
+                    cases ++;
+                }
+            }
+            //compressed elements whose stream ends before the array does, including streams that only lack their checksum
+            byte[] stream = deflate(matArray(ByteOrder.LITTLE_ENDIAN, "points", new int[]{1, 3}, new double[]{1, 2, 3}, false));
+            for(int cut = 1; cut < stream.length; cut++){
+                ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                contents.write(matFile(ByteOrder.LITTLE_ENDIAN, false));
+                contents.write(matElement(ByteOrder.LITTLE_ENDIAN, 15, Arrays.copyOf(stream, cut)));
+                Files.write(file, contents.toByteArray());
+                try{
+                    SECMLoaders.MAT.read(file.toString());
+                    System.out.println("    a compressed stream cut to " + cut + " of " + stream.length + " bytes was accepted.");
+                    failures ++;
+                }
+                catch(ImproperFileFormattingException e){
+
+                }
+                cases ++;
+            }
+        }
+        finally{
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+        return report("MAT-file loading", failures, cases);
+    }
+    
+    /**
+     * Checks {@link SECMLoaders#ASCII} on files separated by spaces, tabs, commas and semicolons (with decimal commas), 
+     * with header lines, comments and blank lines, and that a malformed line after the data has begun is rejected.
+     * @return <code>true</code> if every file is read correctly.
+     * @throws Exception If a test file cannot be written.
+     */
+    public static boolean testASCIILoader() throws Exception{
+        SECMPoints expected = new SECMPoints();
+        expected.add(1.5, 2.25, -3.5E-9);
+        expected.add(-4, 2.25, 0.125);
+        expected.add(1.5, 7, 12);
+        expected.add(-4, 7, 1E3);
+        String[] files = {
+            "HEKA export\nX [um]\tY [um]\tI [A]\n1.5\t2.25\t-3.5E-9\n-4\t2.25\t0.125\n\n1.5\t7\t12\n-4  7  1E3\n",
+            "# x y current\n% comment\n1.5 2.25 -3.5e-9 17\n-4 2.25 0.125 17\n\"quoted\"\n1.5 7 12 17\n-4 7 1000 17\n",
+            "x;y;current\r\n1,5;2,25;-3,5E-9\r\n-4;2,25;0,125\r\n1,5 ; 7 ; 12\r\n-4;7;1000\r\n",
+            "1.5, 2.25, -3.5E-9\n-4,2.25,0.125\n1.5,7,12\n-4,7,1000\n"
+        };
+        int failures = 0;
+        int cases = 0;
+        Path directory = Files.createTempDirectory("ascii-loader");
+        Path file = directory.resolve("scan.asc");
+        try{
+            for(int t = 0; t < files.length; t++){
+                Files.write(file, files[t].getBytes(StandardCharsets.ISO_8859_1));
+                try{
+                    if(!sortedPoints(SECMLoaders.ASCII.read(file.toString())).equals(sortedPoints(expected))){
+                        System.out.println("    file " + t + " was read incorrectly.");
+                        failures ++;
+                    }
+                }
+                catch(ImproperFileFormattingException e){
+                    System.out.println("    file " + t + " was rejected: " + e.getMessage());
+                    failures ++;
+                }
+                cases ++;
+            }
+            for(String text : new String[]{"1 2 3\n4 5 6\n7 8\n", "1 2 3\n4 five 6\n", "header only\n"}){
+                Files.write(file, text.getBytes(StandardCharsets.ISO_8859_1));
+                try{
+                    SECMLoaders.ASCII.read(file.toString());
+                    failures ++;
+                }
+                catch(ImproperFileFormattingException e){
+
+                }
+                cases ++;
+            }
+        }
+        finally{
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+        return report("ASCII file loading", failures, cases);
+    }
+    
+    /**
+     * Checks that {@link SECMLoaders#forFile(java.lang.String)} picks the right loader from the extension and contents of a file. 
+     * In particular, comma separated <code>.txt</code> and <code>.csv</code> files must still be read as Flux files.
+     * @return <code>true</code> if every file gets the right loader.
+     * @throws Exception If a test file cannot be written.
+     */
+    public static boolean testLoaderDetection() throws Exception{
+        byte[] mat = matFile(ByteOrder.LITTLE_ENDIAN, false, matArray(ByteOrder.LITTLE_ENDIAN, "points", new int[]{1, 3}, new double[]{1, 2, 3}, false));
+        byte[] comma = "1.5,2.25,3\n4,5,6\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] commented = "# Flux export\n1.5,2.25,3\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] spaces = "x y current\n1.5 2.25 3\n4 5 6\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] semicolons = "1,5;2,25;3\n".getBytes(StandardCharsets.US_ASCII);
+        Object[][] files = {
+            {"scan.txt", comma, SECMLoaders.FLUX}, {"scan.csv", comma, SECMLoaders.FLUX}, {"scan.CSV", commented, SECMLoaders.FLUX}, 
+            {"scan", comma, SECMLoaders.FLUX}, {"scan.txt", spaces, SECMLoaders.ASCII}, {"scan.csv", semicolons, SECMLoaders.ASCII}, 
+            {"scan.asc", comma, SECMLoaders.ASCII}, {"scan.dat", spaces, SECMLoaders.ASCII}, {"scan", spaces, SECMLoaders.ASCII}, 
+            {"scan.mat", mat, SECMLoaders.MAT}, {"scan.bin", mat, SECMLoaders.MAT}, {"scan.txt", mat, SECMLoaders.MAT}
+        };
+        int failures = 0;
+        Path directory = Files.createTempDirectory("loader-detection");
+        try{
+            for(Object[] entry : files){
+                Path file = directory.resolve((String)entry[0]);
+                Files.write(file, (byte[])entry[1]);
+                SECMLoader loader = SECMLoaders.forFile(file.toString());
+                if(loader != entry[2]){
+                    System.out.println("    " + entry[0] + " was given to " + loader.getName() + " instead of " + ((SECMLoader)entry[2]).getName() + ".");
+                    failures ++;
+                }
+                Files.delete(file);
+            }
+        }
+        finally{
+            Files.deleteIfExists(directory);
+        }
+        return report("loader detection", failures, files.length);
+    }
+    
+    /**
+     * Checks {@link ImageParser#bufferedImageToGrayscaleFlat(BufferedImage)} and {@link ImageParser#bufferedImageToGrayscale(BufferedImage)} 
+     * against averaging the channels of {@link BufferedImage#getRGB(int, int)} pixel by pixel, as images were originally converted. 
+     * Every image type read directly from its data buffer is used, along with an indexed image, sub-images whose rasters start part way into their buffer 
+     * and images large enough to be converted in parallel.
+     * @return <code>true</code> if every pixel matches exactly.
+     */
+    public static boolean testGrayscale(){
+        Random random = new Random(11);
+        int[] types = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, 
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_INDEXED};
+        int failures = 0;
+        int cases = 0;
+        for(int type : types){
+            for(int size : new int[]{1, 37, 600}){
+                BufferedImage image = new BufferedImage(size + 13, size, type);
+                WritableRaster raster = image.getRaster();
+                for(int y = 0; y < raster.getHeight(); y++){
+                    for(int x = 0; x < raster.getWidth(); x++){
+                        for(int band = 0; band < raster.getNumBands(); band++){
+                            raster.setSample(x, y, band, random.nextInt(1 << raster.getSampleModel().getSampleSize(band)));
+                        }
+                    }
+                }
+                BufferedImage[] images = {image, image.getSubimage(7, size/3, 5 + size/2, size - size/3)};
+                for(BufferedImage test : images){
+                    double[] flat = ImageParser.bufferedImageToGrayscaleFlat(test);
+                    double[][] grid = bufferedImageToGrayscale(test);
+                    int width = test.getWidth();
+                    for(int y = 0; y < test.getHeight(); y++){
+                        for(int x = 0; x < width; x++){
+                            Color c = new Color(test.getRGB(x, y));
+                            double expected = (double)(c.getBlue() + c.getGreen() + c.getRed())/3;
+                            if(flat[y*width + x] != expected || grid[x][y] != expected){
+                                failures ++;
+                            }
+                            cases ++;
+                        }
+                    }
+                }
+            }
+        }
+        return report("grayscale conversion", failures, cases);
+    }
+    
+    /**
+     * Checks {@link BitGrid#set(int, int, boolean)}, {@link BitGrid#get(int, int)}, {@link BitGrid#count()}, {@link BitGrid#and(BitGrid)}, {@link BitGrid#or(BitGrid)}, 
+     * {@link BitGrid#andNot(BitGrid)}, {@link BitGrid#not()} and {@link BitGrid#setWord(int, int, long)} against the same operations on <code>int[][]</code> grids, 
+     * at widths on either side of multiples of 64. Since {@link BitGrid#equals(Object)} compares whole words, 
+     * the comparisons also check that the unused bits of the last word of each row stay clear.
+     * @return <code>true</code> if every operation matches.
+     */
+    public static boolean testBitGrid(){
+        Random random = new Random(22);
+        int failures = 0;
+        int cases = 0;
+        for(int width : new int[]{1, 5, 63, 64, 65, 100, 127, 128, 129, 200}){
+            int height = width == 5 ? 0 : 1 + random.nextInt(12);
+            int[][] a = randomGrid(random, width, height, 0.5);
+            int[][] b = randomGrid(random, width, height, 0.3);
+            BitGrid bits_a = BitGrid.fromArray(a);
+            BitGrid bits_b = BitGrid.fromArray(b);
+            if(width == 5){
+                bits_a = new BitGrid(width, height);
+                bits_b = new BitGrid(width, height);
+            }
+            int ones = 0;
+            int[][] and = new int[width][height];
+            int[][] or = new int[width][height];
+            int[][] and_not = new int[width][height];
+            int[][] not = new int[width][height];
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    ones += a[x][y];
+                    and[x][y] = a[x][y] & b[x][y];
+                    or[x][y] = a[x][y] | b[x][y];
+                    and_not[x][y] = a[x][y] & (1 - b[x][y]);
+                    not[x][y] = 1 - a[x][y];
+                    if(bits_a.get(x, y) != (a[x][y] != 0)){
+                        failures ++;
+                    }
+                    cases ++;
+                }
+            }
+            if(bits_a.count() != ones || !Arrays.deepEquals(bits_a.toArray(), a)){
+                failures ++;
+            }
+            cases ++;
+            //set every grid-section of a copy one at a time, in both directions
+            BitGrid set = new BitGrid(width, height);
+            set.not();
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    set.set(x, y, true);
+                    set.set(x, y, a[x][y] != 0);
+                }
+            }
+            failures += matches(set, a) ? 0 : 1;
+            BitGrid result = bits_a.copy();
+            result.and(bits_b);
+            failures += matches(result, and) ? 0 : 1;
+            result = bits_a.copy();
+            result.or(bits_b);
+            failures += matches(result, or) ? 0 : 1;
+            result = bits_a.copy();
+            result.andNot(bits_b);
+            failures += matches(result, and_not) ? 0 : 1;
+            result = bits_a.copy();
+            result.not();
+            failures += matches(result, not) && result.count() == width*height - ones ? 0 : 1;
+            result.not();
+            failures += result.equals(bits_a) ? 0 : 1;
+            //filling the last word of each row must not set the bits past the end of the row
+            result = new BitGrid(width, height);
+            int[][] full = new int[width][height];
+            for(int y = 0; y < height && width > 0; y++){
+                result.setWord(y, result.getWordsPerRow() - 1, -1L);
+                for(int x = (result.getWordsPerRow() - 1)*64; x < width; x++){
+                    full[x][y] = 1;
+                }
+            }
+            failures += matches(result, full) ? 0 : 1;
+            cases += 7;
+        }
+        return report("BitGrid operations", failures, cases);
+    }
+    
+    /**
+     * Checks that dilating and eroding a {@link BitGrid} gives the same result as {@link DilationErosion#dilateGrid(int[][], int[][])} 
+     * and {@link DilationErosion#erodeGrid(int[][], int[][])} for square, rectangular and sparse masks, 
+     * on grids whose widths are and are not multiples of 64, including grids that are all 0s or all 1s and a grid with no grid-sections.
+     * @return <code>true</code> if every result matches.
+     */
+    public static boolean testDilationErosion(){
+        Random random = new Random(3);
+        int[] widths = {1, 2, 31, 63, 64, 65, 100, 128, 129, 191};
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 400; t++){
+            int width = widths[t % widths.length];
+            int height = 1 + random.nextInt(90);
+            double density = t % 20 == 0 ? 0 : (t % 20 == 1 ? 1 : random.nextDouble());
+            int[][] grid = randomGrid(random, width, height, density);
+            BitGrid bits = BitGrid.fromArray(grid);
+            //a square, a full rectangle taken by the int methods as centred on (length/2, length/2), or a sparse mask
+            int size = 1 + random.nextInt(15);
+            int[][] mask;
+            switch(t % 3){
+                case 0:
+                    mask = randomGrid(random, size, size, 1);
+                    break;
+                case 1:
+                    mask = randomGrid(random, size, 1 + random.nextInt(15), 1);
+                    break;
+                default:
+                    mask = randomGrid(random, size, size, 0.3);
+                    break;
+            }
+            failures += matches(DilationErosion.dilate(bits, mask), DilationErosion.dilateGrid(grid, mask)) ? 0 : 1;
+            failures += matches(DilationErosion.erode(bits, mask), DilationErosion.erodeGrid(grid, mask)) ? 0 : 1;
+            //a rectangle centred on (width/2, height/2)
+            int rectangle_width = 1 + random.nextInt(20);
+            int rectangle_height = 1 + random.nextInt(20);
+            int[][] rectangle = rectangleMask(rectangle_width, rectangle_height);
+            failures += matches(DilationErosion.dilateRectangle(bits, rectangle_width, rectangle_height), DilationErosion.dilateGrid(grid, rectangle)) ? 0 : 1;
+            failures += matches(DilationErosion.erodeRectangle(bits, rectangle_width, rectangle_height), DilationErosion.erodeGrid(grid, rectangle)) ? 0 : 1;
+            cases += 4;
+        }
+        BitGrid empty = new BitGrid(0, 0);
+        failures += DilationErosion.dilateRectangle(empty, 5, 5).equals(empty) && DilationErosion.erode(empty, rectangleMask(3, 3)).equals(empty) ? 0 : 1;
+        cases ++;
+        return report("BitGrid dilation and erosion", failures, cases);
+    }
+    
+    /**
+     * Checks rectangles of 32 or more grid-sections, which are applied with the van Herk/Gil-Werman running maximum and a transposed pass along the rows, 
+     * against {@link DilationErosion#dilateGrid(int[][], int[][])} and {@link DilationErosion#erodeGrid(int[][], int[][])}. 
+     * The grids have heights that are not multiples of 64.
+     * @return <code>true</code> if every result matches.
+     */
+    public static boolean testLargeRectangles(){
+        Random random = new Random(4);
+        int[][] sizes = {{150, 97}, {64, 100}, {200, 130}, {70, 33}};
+        int[][] rectangles = {{40, 33}, {33, 70}, {32, 5}, {5, 45}};
+        int failures = 0;
+        int cases = 0;
+        for(int[] size : sizes){
+            int[][] grid = randomGrid(random, size[0], size[1], 0.05 + 0.9*random.nextDouble());
+            BitGrid bits = BitGrid.fromArray(grid);
+            for(int n : new int[]{31, 63}){
+                int[][] mask = rectangleMask(n, n);
+                failures += matches(new Close(n).applyFilter(bits), DilationErosion.erodeGrid(DilationErosion.dilateGrid(grid, mask), mask)) ? 0 : 1;
+                cases ++;
+            }
+            for(int[] rectangle : rectangles){
+                int[][] mask = rectangleMask(rectangle[0], rectangle[1]);
+                failures += matches(DilationErosion.dilateRectangle(bits, rectangle[0], rectangle[1]), DilationErosion.dilateGrid(grid, mask)) ? 0 : 1;
+                failures += matches(DilationErosion.erodeRectangle(bits, rectangle[0], rectangle[1]), DilationErosion.erodeGrid(grid, mask)) ? 0 : 1;
+                cases += 2;
+            }
+        }
+        return report("Large rectangle dilation and erosion", failures, cases);
+    }
+    
+    /**
+     * Checks {@link DistanceTransform} against distances measured to every grid-section in turn, 
+     * counting grid-sections outside the grid as background in {@link DistanceTransform#squaredDistancesToBackground(BitGrid)}, 
+     * and checks disk dilation and erosion against {@link DilationErosion#dilateGrid(int[][], int[][])} and {@link DilationErosion#erodeGrid(int[][], int[][])} 
+     * with an explicit disk mask. Grids that are all 0s or all 1s are included.
+     * @return <code>true</code> if every result matches.
+     */
+    public static boolean testDistanceTransform(){
+        Random random = new Random(5);
+        int failures = 0;
+        int cases = 0;
+        for(int t = 0; t < 200; t++){
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(40);
+            double density = t % 10 == 0 ? 0 : (t % 10 == 1 ? 1 : random.nextDouble()*random.nextDouble());
+            int[][] grid = randomGrid(random, width, height, density);
+            BitGrid bits = BitGrid.fromArray(grid);
+            double[][] distances = DistanceTransform.squaredDistances(bits);
+            double[][] background_distances = DistanceTransform.squaredDistancesToBackground(bits);
+            boolean distances_match = true;
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
+                    double nearest = Double.POSITIVE_INFINITY;
+                    //the ring of grid-sections just outside the grid holds the nearest background outside it
+                    double nearest_background = Double.POSITIVE_INFINITY;
+                    for(int xs = -1; xs <= width; xs++){
+                        for(int ys = -1; ys <= height; ys++){
+                            double distance = (double)(x - xs)*(x - xs) + (double)(y - ys)*(y - ys);
+                            boolean inside = xs >= 0 && ys >= 0 && xs < width && ys < height;
+                            if(inside && grid[xs][ys] == 1){
+                                nearest = Math.min(nearest, distance);
+                            }
+                            else{
+                                nearest_background = Math.min(nearest_background, distance);
+                            }
+                        }
+                    }
+                    boolean match = Double.isInfinite(nearest) ? distances[x][y] >= DistanceTransform.INFINITY : distances[x][y] == nearest;
+                    distances_match &= match && background_distances[x][y] == nearest_background;
+                }
+            }
+            failures += distances_match ? 0 : 1;
+            int radius = random.nextInt(12);
+            int[][] disk = new int[2*radius + 1][2*radius + 1];
+            for(int x = 0; x < disk.length; x++){
+                for(int y = 0; y < disk.length; y++){
+                    disk[x][y] = (x - radius)*(x - radius) + (y - radius)*(y - radius) <= radius*radius ? 1 : 0;
+                }
+            }
+            failures += matches(DilationErosion.dilateDisk(bits, radius), DilationErosion.dilateGrid(grid, disk)) ? 0 : 1;
+            failures += matches(DilationErosion.erodeDisk(bits, radius), DilationErosion.erodeGrid(grid, disk)) ? 0 : 1;
+            cases += 3;
+        }
+        return report("Distance transform and disk morphology", failures, cases);
+    }
+    
+    /**
+     * Prints the result of a check.
+     * @param name The name of the check.
+     * @param failures The number of cases that failed.
+     * @param cases The number of cases checked.
+     * @return <code>true</code> if no case failed.
+     */
+    private static boolean report(String name, int failures, int cases){
+        System.out.println((failures == 0 ? "passed " : "FAILED ") + name + ": " + failures + " of " + cases + " cases failed");
+        return failures == 0;
+    }
+    
+    /**
+     * Creates a random grid of 0s and 1s.
+     * @param random The source of randomness.
+     * @param width The size of the grid in x.
+     * @param height The size of the grid in y.
+     * @param density The probability that each grid-section is 1.
+     * @return The grid, indexed as <code>grid[x][y]</code>.
+     */
+    private static int[][] randomGrid(Random random, int width, int height, double density){
+        int[][] grid = new int[width][height];
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                grid[x][y] = random.nextDouble() < density ? 1 : 0;
+            }
+        }
+        return grid;
+    }
+    /**
+     * Creates the square mask that {@link DilationErosion#dilateGrid(int[][], int[][])} needs to apply a rectangle 
+     * the way {@link DilationErosion#dilateRectangle(BitGrid, int, int)} does, centred on <code>(width/2, height/2)</code>.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @return A square mask whose centre lies at <code>(width/2, height/2)</code> of the rectangle of 1s within it.
+     */
+    private static int[][] rectangleMask(int width, int height){
+        int mid = Math.max(width/2, height/2);
+        int[][] mask = new int[2*mid + 1][2*mid + 1];
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                mask[x - width/2 + mid][y - height/2 + mid] = 1;
+            }
+        }
+        return mask;
+    }
+    /**
+     * Compares a grid of bits with a grid of 0s and 1s.
+     * @param bits The grid of bits.
+     * @param grid The grid of 0s and 1s, indexed as <code>grid[x][y]</code>.
+     * @return <code>true</code> if the grids hold the same values.
+     */
+    private static boolean matches(BitGrid bits, int[][] grid){
+        return bits.equals(BitGrid.fromArray(grid));
+    }
+    
+    /**
+     * Lists the points of a set in a canonical order so that sets can be compared regardless of the order in which their points were read.
+     * @param points The points.
+     * @return Each point as text, sorted.
+     */
+    private static ArrayList<String> sortedPoints(SECMPoints points){
+        ArrayList<String> list = new ArrayList<>();
+        for(int i = 0; i < points.size(); i++){
+            list.add(points.getX(i) + " " + points.getY(i) + " " + points.getCurrent(i));
+        }
+        Collections.sort(list);
+        return list;
+    }
+    
+    /**
+     * Assembles a level 5 MAT-file.
+     * @param order The byte order of the file.
+     * @param compressed Whether each array is stored in a compressed element.
+     * @param arrays The array elements of the file, as created by {@link #matArray(java.nio.ByteOrder, java.lang.String, int[], double[], boolean)}.
+     * @return The contents of the file.
+     * @throws IOException If an array cannot be compressed.
+     */
+    private static byte[] matFile(ByteOrder order, boolean compressed, byte[]... arrays) throws IOException{
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        byte[] text = new byte[116];
+        Arrays.fill(text, (byte)' ');
+        byte[] description = "MATLAB 5.0 MAT-file, written by Tests".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(description, 0, text, 0, description.length);
+        file.write(text);
+        file.write(new byte[8]);
+        file.write(ByteBuffer.allocate(4).order(order).putShort((short)0x0100).putShort((short)('M' << 8 | 'I')).array());
+        for(byte[] array : arrays){
+            if(compressed){
+                file.write(matElement(order, 15, deflate(array)));
+            }
+            else{
+                file.write(array);
+            }
+        }
+        return file.toByteArray();
+    }
+    
+    /**
+     * Compresses data into a zlib stream.
+     * @param data The data to compress.
+     * @return The zlib stream.
+     * @throws IOException If the data cannot be compressed.
+     */
+    private static byte[] deflate(byte[] data) throws IOException{
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try(DeflaterOutputStream stream = new DeflaterOutputStream(deflated)){
+            stream.write(data);
+        }
+        return deflated.toByteArray();
+    }
+    
+    /**
+     * Creates the <code>miMATRIX</code> element of a double precision MAT-file array.
+     * @param order The byte order of the file.
+     * @param name The name of the array.
+     * @param dimensions The size of each dimension of the array.
+     * @param values The values of the array in column-major order.
+     * @param int16 Whether to store the values as 16-bit integers, as MATLAB does when they fit.
+     * @return The element.
+     */
+    private static byte[] matArray(ByteOrder order, String name, int[] dimensions, double[] values, boolean int16){
+        ByteBuffer flags = ByteBuffer.allocate(8).order(order).putInt(6).putInt(0);
+        ByteBuffer sizes = ByteBuffer.allocate(4*dimensions.length).order(order);
+        for(int dimension : dimensions){
+            sizes.putInt(dimension);
+        }
+        ByteBuffer real = ByteBuffer.allocate(values.length*(int16 ? 2 : 8)).order(order);
+        for(double value : values){
+            if(int16){
+                real.putShort((short)value);
+            }
+            else{
+                real.putDouble(value);
+            }
+        }
+        ByteArrayOutputStream matrix = new ByteArrayOutputStream();
+        matrix.writeBytes(matElement(order, 6, flags.array()));
+        matrix.writeBytes(matElement(order, 5, sizes.array()));
+        matrix.writeBytes(matElement(order, 1, name.getBytes(StandardCharsets.US_ASCII)));
+        matrix.writeBytes(matElement(order, int16 ? 3 : 9, real.array()));
+        return matElement(order, 14, matrix.toByteArray());
+    }
+    
+    /**
+     * Creates a MAT-file data element, using the small data element format for data of up to 4 bytes.
+     * @param order The byte order of the file.
+     * @param type The data type of the element.
+     * @param data The data of the element.
+     * @return The tagged and, unless compressed, padded element.
+     */
+    private static byte[] matElement(ByteOrder order, int type, byte[] data){
+        if(data.length <= 4 && type != 14 && type != 15){
+            return ByteBuffer.allocate(8).order(order).putInt(data.length << 16 | type).put(data).array();
+        }
+        int padded = type == 15 ? data.length : (data.length + 7) & ~7;
+        return ByteBuffer.allocate(8 + padded).order(order).putInt(type).putInt(data.length).put(data).array();
+    }
+    
+    /**
+     * Creates the coordinates of an axis of an SECM image.
+     * @param random The source of randomness.
+     * @param spacing 0 for steps that are exact in binary, 1 for decimal steps that are only uniform to within rounding, 2 for irregular steps.
+     * @param count The number of coordinates.
+     * @return The coordinates from lowest to highest.
+     */
+    private static double[] testAxis(Random random, int spacing, int count){
+        double[] axis = new double[count];
+        double start = 5 + random.nextInt(20);
+        for(int i = 0; i < count; i++){
+            switch(spacing){
+                case 0:
+                    axis[i] = start + i*0.5;
+                    break;
+                case 1:
+                    axis[i] = start + i*0.1;
+                    break;
+                default:
+                    axis[i] = i == 0 ? start : axis[i - 1] + 0.5 + random.nextDouble();
+                    break;
+            }
+        }
+        return axis;
+    }
+    
+    /**
+     * Writes a Flux file with random currents over the given axes and loads it.
+     * @param random The source of randomness.
+     * @param xs The x-coordinates.
+     * @param ys The y-coordinates.
+     * @param single_precision Whether the image should keep its data in single precision.
+     * @return The loaded image.
+     * @throws Exception If the file cannot be written.
+     */
+    private static SECMImage testImage(Random random, double[] xs, double[] ys, boolean single_precision) throws Exception{
+        StringBuilder text = new StringBuilder();
+        for(double y : ys){
+            for(double x : xs){
+                text.append(x).append(',').append(y).append(',').append(random.nextGaussian()).append('\n');
+            }
+        }
+        Path directory = Files.createTempDirectory("secm-image");
+        Path file = directory.resolve("image.csv");
+        try{
+            Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+            return new SECMImage(file.toString(), single_precision);
+        }
+        finally{
+            Files.deleteIfExists(Paths.get(file.toString() + ".secmcache"));
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+    
+    /**
+     * Creates points at which to evaluate an SECM image: random points over and around the domain, 
+     * the nodes themselves and the points halfway between neighbouring nodes.
+     * @param random The source of randomness.
+     * @param xs The x-coordinates of the image.
+     * @param ys The y-coordinates of the image.
+     * @return The points as <code>{x, y}</code> pairs.
+     */
+    private static double[][] testPoints(Random random, double[] xs, double[] ys){
+        ArrayList<double[]> points = new ArrayList<>();
+        double width = xs[xs.length - 1] - xs[0];
+        double height = ys[ys.length - 1] - ys[0];
+        for(int i = 0; i < 2000; i++){
+            points.add(new double[]{xs[0] + (random.nextDouble()*1.6 - 0.3)*width, ys[0] + (random.nextDouble()*1.6 - 0.3)*height});
+        }
+        for(int i = 0; i < xs.length; i++){
+            for(int j = 0; j < ys.length; j++){
+                points.add(new double[]{xs[i], ys[j]});
+                if(i + 1 < xs.length && j + 1 < ys.length){
+                    points.add(new double[]{(xs[i] + xs[i + 1])/2, (ys[j] + ys[j + 1])/2});
+                }
+            }
+        }
+        return points.toArray(new double[0][]);
+    }
+    
+    /**
+     * Compares an interpolated value with its reference. 
+     * Nearest-neighbour values must be identical and bilinear values may differ by rounding. 
+     * Bicubic values are cubics in the absolute coordinates, whose evaluation loses several digits to cancellation when the cells are small compared to the coordinates, 
+     * so they only need to agree to within 1E-6; choosing the wrong cell or nodes moves them by far more.
+     * @param actual The value being checked.
+     * @param expected The reference value.
+     * @param mode The interpolation mode.
+     * @return <code>true</code> if the values match.
+     */
+    private static boolean closeEnough(double actual, double expected, int mode){
+        if(mode == SECMImage.INTERPOLATION_NN || Double.isNaN(expected)){
+            return Double.compare(actual, expected) == 0;
+        }
+        return Math.abs(actual - expected) <= (mode == SECMImage.INTERPOLATION_BICUBIC ? 1E-6 : 1E-9);
+    }
+    
+    /**
+     * Evaluates the scaled current of an SECM image the way {@link SECMImage} originally did, finding each cell with {@link #referenceFindSmaller(double, double[])}.
+     * @param xs The x-coordinates of the image.
+     * @param ys The y-coordinates of the image.
+     * @param data The scaled currents, indexed as <code>data[x][y]</code>.
+     * @param x The x-coordinate of interest.
+     * @param y The y-coordinate of interest.
+     * @param mode The interpolation mode.
+     * @return The scaled current, or {@link Double#NaN} if it cannot be evaluated.
+     */
+    private static double referenceScaledCurrent(double[] xs, double[] ys, double[][] data, double x, double y, int mode){
+        int x_lower = referenceFindSmaller(x, xs);
+        int y_lower = referenceFindSmaller(y, ys);
+        switch(mode){
+            case SECMImage.INTERPOLATION_NN:{
+                int x_index = x_lower == -1 ? 0 : (x_lower == xs.length - 1 ? xs.length - 1 : (Math.abs(x - xs[x_lower]) < Math.abs(x - xs[x_lower + 1]) ? x_lower : x_lower + 1));
+                int y_index = y_lower == -1 ? 0 : (y_lower == ys.length - 1 ? ys.length - 1 : (Math.abs(y - ys[y_lower]) < Math.abs(y - ys[y_lower + 1]) ? y_lower : y_lower + 1));
+                return data[x_index][y_index];
+            }
+            case SECMImage.INTERPOLATION_BILINEAR:{
+                int x_upper = Math.min(x_lower + 1, xs.length - 1);
+                int y_upper = Math.min(y_lower + 1, ys.length - 1);
+                x_lower = Math.max(x_lower, 0);
+                y_lower = Math.max(y_lower, 0);
+                double slope = x_upper != x_lower ? (data[x_upper][y_lower] - data[x_lower][y_lower])/(xs[x_upper] - xs[x_lower]) : 0;
+                double current_y_lower = slope*(x - xs[x_lower]) + data[x_lower][y_lower];
+                if(y_upper != y_lower){
+                    slope = x_upper != x_lower ? (data[x_upper][y_upper] - data[x_lower][y_upper])/(xs[x_upper] - xs[x_lower]) : 0;
+                    double current_y_upper = slope*(x - xs[x_lower]) + data[x_lower][y_upper];
+                    slope = (current_y_upper - current_y_lower)/(ys[y_upper] - ys[y_lower]);
+                }
+                else{
+                    slope = 0;
+                }
+                return slope*(y - ys[y_lower]) + current_y_lower;
+            }
+            case SECMImage.INTERPOLATION_BICUBIC:{
+                if(xs.length < 5 || ys.length < 5){
+                    return Double.NaN;
+                }
+                int[] x_nodes = new int[4];
+                double[] x_positions = new double[4];
+                int[] y_nodes = new int[4];
+                double[] y_positions = new double[4];
+                referenceBicubicNodes(x_lower, xs, x_nodes, x_positions);
+                referenceBicubicNodes(y_lower, ys, y_nodes, y_positions);
+                try{
+                    double[][] xinv = Bicubic.cInverse(x_positions[0], x_positions[1], x_positions[2], x_positions[3]);
+                    double[][] yinv = Bicubic.cInverse(y_positions[0], y_positions[1], y_positions[2], y_positions[3]);
+                    double[] along_x = new double[4];
+                    for(int row = 0; row < 4; row++){
+                        double[] p = new double[4];
+                        for(int k = 0; k < 4; k++){
+                            for(int node = 0; node < 4; node++){
+                                p[k] += xinv[k][node]*data[x_nodes[node]][y_nodes[row]];
+                            }
+                        }
+                        along_x[row] = p[0]*Math.pow(x, 3) + p[1]*x*x + p[2]*x + p[3];
+                    }
+                    double[] p = new double[4];
+                    for(int k = 0; k < 4; k++){
+                        for(int node = 0; node < 4; node++){
+                            p[k] += yinv[k][node]*along_x[node];
+                        }
+                    }
+                    return Math.min(1.0, Math.max(0.0, p[0]*Math.pow(y, 3) + p[1]*y*y + p[2]*y + p[3]));
+                }
+                catch(SingularMatrixException e){
+                    return Double.NaN;
+                }
+            }
+            default:
+                return Double.NaN;
+        }
+    }
+    
+    /**
+     * Finds the four nodes of a bicubic lookup along one axis, extending the axis past its ends with the spacing of its end cells as {@link SECMImage} originally did.
+     * @param lower The index of the greatest coordinate strictly less than the key, or -1.
+     * @param coordinates The coordinates of the axis.
+     * @param nodes Receives the indices of the data used for each node.
+     * @param positions Receives the coordinate of each node.
+     */
+    private static void referenceBicubicNodes(int lower, double[] coordinates, int[] nodes, double[] positions){
+        int last = coordinates.length - 1;
+        if(lower < 0){
+            nodes[0] = 0;
+            nodes[1] = 0;
+            nodes[2] = 0;
+            nodes[3] = 1;
+            double diff = coordinates[1] - coordinates[0];
+            positions[2] = coordinates[0];
+            positions[3] = coordinates[1];
+            positions[1] = positions[2] - diff;
+            positions[0] = positions[1] - diff;
+        }
+        else if(lower == 0){
+            nodes[0] = 0;
+            nodes[1] = 0;
+            nodes[2] = 1;
+            nodes[3] = 2;
+            positions[1] = coordinates[0];
+            positions[2] = coordinates[1];
+            positions[3] = coordinates[2];
+            positions[0] = positions[1] - (positions[2] - positions[1]);
+        }
+        else if(lower == last){
+            nodes[0] = last - 1;
+            nodes[1] = last;
+            nodes[2] = last;
+            nodes[3] = last;
+            positions[0] = coordinates[last - 1];
+            positions[1] = coordinates[last];
+            positions[2] = positions[1] + (positions[1] - positions[0]);
+            positions[3] = positions[2] + (positions[1] - positions[0]);
+        }
+        else if(lower == last - 1){
+            nodes[0] = lower - 1;
+            nodes[1] = lower;
+            nodes[2] = lower + 1;
+            nodes[3] = last;
+            positions[0] = coordinates[lower - 1];
+            positions[1] = coordinates[lower];
+            positions[2] = coordinates[lower + 1];
+            positions[3] = positions[2] + (positions[2] - positions[1]);
+        }
+        else{
+            for(int k = 0; k < 4; k++){
+                nodes[k] = lower - 1 + k;
+                positions[k] = coordinates[lower - 1 + k];
+            }
+        }
+    }
+    
+    /**
+     * Finds the greatest coordinate strictly less than a key by checking every coordinate in turn.
+     * @param key The value to compare against.
+     * @param array The coordinates from lowest to highest.
+     * @return The index of the greatest coordinate strictly less than <code>key</code>, or -1 if there is none.
+     */
+    private static int referenceFindSmaller(double key, double[] array){
+        int index = -1;
+        for(int i = 0; i < array.length; i++){
+            if(array[i] < key){
+                index = i;
+            }
+        }
+        return index;
+    }
+    
     public static void testSobel() throws ImproperFileFormattingException{
         BufferedImage sem_image = null;
         boolean readcorrectly;
@@ -1,6 +1,6 @@
 /*
  * Created: 2022-01-14
- * Updated: 2023-05-29
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align;
@@ -11,27 +11,38 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Stack;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import sem_secm_align.data_types.BitGrid;
 import sem_secm_align.data_types.ImproperFileFormattingException;
 import sem_secm_align.data_types.SEMImage;
+import sem_secm_align.data_types.SEMRegion;
 import sem_secm_align.edge_detection.EdgeDetectionWindow;
 import sem_secm_align.edge_detection.MorphologicalTransformationDialog;
+import sem_secm_align.settings.ColourMap;
 import sem_secm_align.settings.ColourSettings;
 import sem_secm_align.settings.Settings;
-import static sem_secm_align.utility.ImageParser.bufferedImageToGrayscale;
+import static sem_secm_align.utility.ImageParser.bufferedImageToGrayscaleFlat;
 import sem_secm_align.utility.filters.BinaryFilter;
 
 /**
@@ -118,355 +129,76 @@ public class Visualizer extends JPanel{
         sam_start_y                 =        settings.DEFAULT_SAM_YSTART_INDEX;
         sam_step_size_x             =        settings.DEFAULT_SAM_XSTEP;
         sam_step_size_y             =        settings.DEFAULT_SAM_YSTEP;
-        switches = new int[1][1];
+        switches = new BitGrid(1, 1);
+        Thread render_thread = new Thread(renderer, "Visualizer renderer");
+        render_thread.setDaemon(true);
+        render_thread.start();
     }
     
     /**
-     * Forces the graphics of this visualizer to update
+     * Forces the graphics of this visualizer to update.
+     * <p>A snapshot of the view (see {@link #snapshot()}) is handed to the {@link Renderer}, which draws it on a background thread 
+     * and shows it once it is finished. Only the layers that have been marked dirty by {@link #invalidateLayers(int)} are redrawn, 
+     * so that changing a transparency or drawing a cell does not redraw the SECM and SEM images. 
+     * Grid-sections marked by {@link #invalidateCells(int, int, int, int)} are redrawn on their own and only their part of the panel is repainted.
+     * If this is called again before the frame has been started, only the latest view is drawn.</p>
      * @see #render_mode
-     * @see #defaultImage() 
-     * @see #drawSECM() 
-     * @see #drawSEM(float) 
-     * @see #drawReactivity() 
-     * @see #drawSampling() 
      */
     public void updateGraphics(){
-        switch (render_mode) {
-            case SEM_MODE://draw SECM and SEM
-                if(secm_image.isDisplayable()){
-                    if(sem_image.isDisplayable()){
-                        base_image = drawSEM(sem_transparency);
-                    }else{
-                        base_image = drawSECM();
-                    }
-                }else{
-                    base_image = defaultImage();
-                }
-                break;
-            case REACTIVITY_MODE://draw reactivity
-                if(secm_image.isDisplayable()){
-                    base_image = drawReactivity();
-                }else{
-                    base_image = defaultImage();
-                }
-                break;
-            case SAMPLING_MODE://draw sampling
-                if(secm_image.isDisplayable()){
-                    base_image = drawSampling();
-                }else{
-                    base_image = defaultImage();
-                }
-                break;
-            default: //just draw SECM
-                if(secm_image.isDisplayable()){
-                    base_image = drawSECM();
-                }else{
-                    base_image = defaultImage();
-                }
-                break;
-        }
-        repaint();
+        ViewState state = snapshot();
+        working_scale = state.working_scale;
+        renderer.request(state, dirty_layers, dirty_cells);
+        dirty_layers = 0;
+        dirty_cells = null;
     }
     
     /**
-     * Creates a black image the same size as this component.
-     * @return a black image the same size as this component.
+     * Marks layers as needing to be redrawn with the next frame.
+     * @param layers The layers to be redrawn, as a combination of {@link #LAYER_SECM}, {@link #LAYER_SEM}, {@link #LAYER_SELECTION}, 
+     * {@link #LAYER_GRID} and {@link #LAYER_SAMPLING}, or {@link #ALL_LAYERS}.
      */
-    private BufferedImage defaultImage(){
-        int width = this.getWidth();
-        int height = this.getHeight();
-        BufferedImage def = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics def_graphics = def.getGraphics();
-        def_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
-        def_graphics.fillRect(0, 0, width, height);
-        return def;
-    }
-    
-    /**
-     * Creates an image of the SECM image using nearest neighbor interpolation.
-     * @return an image of the SECM image.
-     */
-    private BufferedImage drawSECM(){
-        int width = this.getWidth();
-        int height = this.getHeight();
-        BufferedImage secm = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics secm_graphics = secm.getGraphics();
-        secm_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
-        secm_graphics.fillRect(0, 0, width, height);
-        
-        double secm_width = secm_image.getXMax() - secm_image.getXMin();
-        double secm_height = secm_image.getYMax() - secm_image.getYMin();
-        
-        int image_width, image_height;
-        working_scale = (double)width/secm_width/secm_scale_factor; //pixels per metre
-        
-        if(secm_width/width < secm_height/height){
-            image_width = (int)(secm_width/secm_height*(double)height);
-            image_height = height;
-            working_scale = (double)height/secm_height/secm_scale_factor;
-        }
-        else{
-            image_width = width;
-            image_height = (int)(secm_height/secm_width*(double)width);
-        }
-        
-        int x0 = (width - image_width)/2;
-        int y0 = (height - image_height)/2;
-        
-        //render the image
-        for(int x = 0; x <= image_width; x++){
-            double xcoord = (double)x / (double)image_width * secm_width + secm_image.getXMin();
-            for(int y = 0; y <= image_height; y++){
-                double ycoord = (double)y / (double)image_height * secm_height + secm_image.getYMin();
-                double current = secm_image.getScaledCurrent(xcoord, ycoord, SECMImage.INTERPOLATION_NN);
-                secm_graphics.setColor(ColourSettings.colourScale(current, ColourSettings.CSCALE_GREY));
-                secm_graphics.fillRect(x + x0, y + y0, 1, 1);
-            }
-        }
-        
-        return secm;
+    private void invalidateLayers(int layers){
+        dirty_layers |= layers;
     }
     
     /**
-     * Creates an image of the SEM image with the set transparency overlaid on the SECM image.
-     * The SECM image is rendered the same way as {@link #drawSECM()}.
-     * @return an image of the SEM image with the set transparency overlaid on the SECM image.
+     * Marks a block of grid-sections whose switches have changed as needing to be redrawn with the next frame.
+     * Unlike invalidating {@link #LAYER_SELECTION}, only these grid-sections are redrawn.
+     * @param x1 The first x-index of the block.
+     * @param y1 The first y-index of the block.
+     * @param x2 The last x-index of the block + 1.
+     * @param y2 The last y-index of the block + 1.
      */
-    private BufferedImage drawSEM(float transparency){
-        int width = this.getWidth();
-        int height = this.getHeight();
-        BufferedImage sem = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        if(transparency < 1.0f){
-            sem = drawSECM();
-        }
-        else{
-            Graphics sem_ugraphics = sem.getGraphics();
-            sem_ugraphics.setColor(ColourSettings.BACKGROUND_COLOUR);
-            sem_ugraphics.fillRect(0, 0, width, height);
-        }
-        Graphics2D sem_graphics = sem.createGraphics();
-        
-        double secm_width = secm_image.getXMax() - secm_image.getXMin();
-        double secm_height = secm_image.getYMax() - secm_image.getYMin();
-        
-        int image_width, image_height;
-        working_scale = (double)width/secm_width/secm_scale_factor; //pixels per metre
-        
-        if(secm_width/width < secm_height/height){
-            image_width = (int)(secm_width/secm_height*(double)height);
-            image_height = height;
-            working_scale = (double)height/secm_height/secm_scale_factor;
-        }
-        else{
-            image_width = width;
-            image_height = (int)(secm_height/secm_width*(double)width);
-        }
-        
-        
-        int x0 = (width - image_width)/2;
-        int y0 = (height - image_height)/2;
-        
-        sem_graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,transparency));
-        double sem_cx = (double)image_width*0.5;
-        double sem_cy = (double)image_height*0.5;
-        
-        //AffineTransform does stuff backwards!!!! (somebody made the matrices multiply in the wrong order)
-        
-        double rotation_rad = Math.toRadians(sem_rotation + extra_rotation);
-        
-        AffineTransform sem_transform = new AffineTransform();
-        sem_transform.translate(working_scale*(sem_xoffs + extra_x_offset), working_scale*(sem_yoffs + extra_y_offset));
-        sem_transform.rotate(rotation_rad, sem_cx, sem_cy);
-        sem_transform.scale(working_scale/sem_scale, working_scale/sem_scale);
-        if(sem_mirrorx){
-            sem_transform.translate(sem_image.getWidth(), 0.0);
-            sem_transform.scale(-1, 1);
-        }
-        if(sem_mirrory){
-            sem_transform.translate(0.0, sem_image.getHeight());
-            sem_transform.scale(1, -1);
-        }
-        AffineTransformOp ato = new AffineTransformOp(sem_transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
-        sem_graphics.drawImage(sem_image.getImage(), ato, x0, y0);
-//        sem_graphics.drawImage(sem_image.getImage(), sem_transform, this);
-//        sem_graphics.drawImage(sem_image.getImage(), x0, y0, this);
-//        sem_graphics.drawImage(sem_image.getImage(), ato, x0, y0);
-        
-        return sem;
+    private void invalidateCells(int x1, int y1, int x2, int y2){
+        dirty_cells = unionCells(dirty_cells, new int[]{x1, y1, x2, y2});
     }
     
     /**
-     * Creates an image of the Reactivity selection with the set transparency overlaid on the SEM image with the set transparency overlaid on the SECM image.
-     * Renders and zooms into a cropped region.
-     * Rendering also includes the grid (if enabled) and the selection box when the crop tool is in use.
-     * @return an image of the reactivity.
+     * Finds the smallest block of grid-sections containing two blocks.
+     * @param a A block as <code>{first x-index, first y-index, last x-index + 1, last y-index + 1}</code>, or <code>null</code> for no block.
+     * @param b Another block in the same form, or <code>null</code>.
+     * @return the block containing both, or <code>null</code> if both are <code>null</code>.
      */
-    private BufferedImage drawReactivity(){
-        /////////////////////////////
-        //draw the cropped SECM image
-        int width = this.getWidth();
-        int height = this.getHeight();
-        BufferedImage reac = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D reac_graphics = reac.createGraphics();
-        reac_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
-        reac_graphics.fillRect(0, 0, width, height);
-        
-        //Evaluate the scaling and offsets for the cropped image
-        double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
-        double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
-        double crop_scale = (double)width/crop_width/secm_scale_factor; //pixels per metre
-        
-        int image_width, image_height;
-        
-        if(crop_width/width < crop_height/height){
-            image_width = (int)(crop_width/crop_height*(double)height);
-            image_height = height;
-            crop_scale = (double)height/crop_height/secm_scale_factor;
-        }
-        else{
-            image_width = width;
-            image_height = (int)(crop_height/crop_width*(double)width);
-        }
-        
-        int x0 = (width - image_width)/2;
-        int y0 = (height - image_height)/2;
-        
-        //render the SECM image
-        for(int x = 0; x <= image_width; x++){
-            double xcoord = (double)x / (double)image_width * crop_width + crop_x1/secm_scale_factor;
-            for(int y = 0; y <= image_height; y++){
-                double ycoord = (double)y / (double)image_height * crop_height + crop_y1/secm_scale_factor;
-                double current = secm_image.getScaledCurrent(xcoord, ycoord, SECMImage.INTERPOLATION_NN);
-                reac_graphics.setColor(ColourSettings.colourScale(current, ColourSettings.CSCALE_GREY));
-                reac_graphics.fillRect(x + x0, y + y0, 1, 1);
-            }
-        }
-        
-        //////////////////////////////
-        //Render the cropped SEM image
-        if(sem_image.isDisplayable()){
-            reac_graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,reac_sem_transparency));
-            BufferedImage semimage = drawSEM(1.0f);
-            AffineTransform sem_transform = new AffineTransform();
-
-            double scalefactor = crop_scale / working_scale;
-            sem_transform.scale(scalefactor, scalefactor);
-
-
-            double secm_width = secm_image.getXMax() - secm_image.getXMin();
-            double secm_height = secm_image.getYMax() - secm_image.getYMin();
-
-            int precrop_imagewidth, precrop_imageheight;
-
-            if(secm_width/width < secm_height/height){
-                precrop_imagewidth = (int)(secm_width/secm_height*(double)height);
-                precrop_imageheight = height;
-            }
-            else{
-                precrop_imagewidth = width;
-                precrop_imageheight = (int)(secm_height/secm_width*(double)width);
-            }
-
-            int precrop_x0 = (width - precrop_imagewidth) / 2;
-            int precrop_y0 = (height - precrop_imageheight) / 2;
-
-            double x0s = ((double)precrop_x0)*scalefactor;
-            double y0s = ((double)precrop_y0)*scalefactor;
-
-            int xdisp = getRenderX(secm_image.getXMin()*secm_scale_factor) - getRenderX(crop_x1) - (int)x0s + x0;
-            int ydisp = getRenderY(secm_image.getYMin()*secm_scale_factor) - getRenderY(crop_y1) - (int)y0s + y0;
-
-            AffineTransformOp ato = new AffineTransformOp(sem_transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
-            reac_graphics.drawImage(semimage, ato, xdisp, ydisp);
-        }
-        ////////////////////////////////
-        // reactivity-specific rendering
-        //reac_cellwidth = reac_xresolution;
-        //reac_cellheight = reac_yresolution;
-        
-        double wstart = Math.floor((crop_x1 - secm_image.getXMin()*secm_scale_factor) / reac_xresolution);
-        double hstart = Math.floor((crop_y1 - secm_image.getYMin()*secm_scale_factor) / reac_yresolution);
-        double wstop = Math.ceil((crop_x2 - secm_image.getXMin()*secm_scale_factor) / reac_xresolution);
-        double hstop = Math.ceil((crop_y2 - secm_image.getYMin()*secm_scale_factor) / reac_yresolution);
-        
-        double wstoplim = switches.length;
-        double hstoplim = switches[0].length;
-        wstart = Math.max(wstart, 0.0);
-        hstart = Math.max(hstart, 0.0);
-        wstop = Math.min(wstop, wstoplim);
-        hstop = Math.min(hstop, hstoplim);
-        
-        reac_graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,reac_selection_transparency));
-        reac_graphics.setColor(ColourSettings.ACTIVE_COLOUR);
-        for(int w_index = (int)wstart; w_index < (int)wstop; w_index ++){
-            double x_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)w_index;
-            x_m = Math.max(x_m, crop_x1);
-            double x2_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)w_index + 1.0);
-            x2_m = Math.min(x2_m, crop_x2);
-            int cellwidth = getRenderX(x2_m) - getRenderX(x_m);
-            for(int h_index = (int)hstart; h_index < (int)hstop; h_index ++){
-                if(switches[w_index][h_index] > 0){
-                    double y_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)h_index;
-                    y_m = Math.max(y_m, crop_y1);
-                    double y2_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)h_index + 1.0);
-                    y2_m = Math.min(y2_m, crop_y2);
-                    int cellheight = getRenderY(y2_m) - getRenderY(y_m);
-                    reac_graphics.fillRect(getRenderX(x_m), getRenderY(y_m), cellwidth, cellheight);
-                }
-            }
-        }
-
-        if(reac_grid){
-            reac_graphics.setColor(ColourSettings.GRID_COLOUR);
-            for(double w_index = wstart + 1; w_index < wstop; w_index ++){
-                double linex_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*w_index;
-                int linex_p = getRenderX(linex_m);
-                reac_graphics.drawLine(linex_p, y0, linex_p, height - y0);
-            }
-
-            for(double h_index = hstart + 1; h_index < hstop; h_index ++){
-                double liney_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*h_index;
-                int liney_p = getRenderY(liney_m);
-                reac_graphics.drawLine(x0, liney_p, width - x0, liney_p);
-            }
+    private static int[] unionCells(int[] a, int[] b){
+        if(a == null){
+            return b;
         }
-        
-        //render the selection box if a crop is in progress
-        if(crop_in_progress){
-            reac_graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,1.0f));
-            reac_graphics.setColor(ColourSettings.SELECTION_COLOUR);
-            reac_graphics.drawRect(tentative_crop_x1, tentative_crop_y1, tentative_crop_x2 - tentative_crop_x1, tentative_crop_y2 - tentative_crop_y1);
+        if(b == null){
+            return a;
         }
-        return reac;
+        return new int[]{Math.min(a[0], b[0]), Math.min(a[1], b[1]), Math.max(a[2], b[2]), Math.max(a[3], b[3])};
     }
     
     /**
-     * Creates an image of the reactivity with the pixels that will be sampled being shaded orange.
-     * Calls {@link #drawReactivity()} and then renders the orange grid-sections on top.
-     * @return 
+     * Takes an immutable snapshot of the current view that can be drawn on any thread.
+     * The switches are only copied again if the selection has changed since they were last copied.
+     * @return the snapshot.
      */
-    private Image drawSampling(){
-        BufferedImage sam = drawReactivity();
-        Graphics2D sam_graphics = sam.createGraphics();
-        
-        sam_graphics.setColor(ColourSettings.SAMPLE_COLOUR);
-        for(int xindex = sam_start_x; xindex < sam_start_x + sam_num_steps_x*sam_step_size_x; xindex += sam_step_size_x){
-            double x_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)xindex;
-            x_m = Math.max(x_m, crop_x1);
-            double x2_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)xindex + 1.0);
-            x2_m = Math.min(x2_m, crop_x2);
-            int cellwidth = getRenderX(x2_m) - getRenderX(x_m);
-            for(int yindex = sam_start_y; yindex < sam_start_y + sam_num_steps_y*sam_step_size_y; yindex += sam_step_size_y){
-                double y_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)yindex;
-                y_m = Math.max(y_m, crop_y1);
-                double y2_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)yindex + 1.0);
-                y2_m = Math.min(y2_m, crop_y2);
-                int cellheight = getRenderY(y2_m) - getRenderY(y_m);
-                sam_graphics.fillRect(getRenderX(x_m), getRenderY(y_m), cellwidth, cellheight);
-            }
+    private ViewState snapshot(){
+        if(switches_snapshot == null || (dirty_layers & LAYER_SELECTION) != 0 || dirty_cells != null){
+            switches_snapshot = switches.copy();
         }
-        
-        return sam;
+        return new ViewState(this, switches_snapshot);
     }
     
     /**
@@ -492,7 +224,13 @@ public class Visualizer extends JPanel{
     private void semMouseDrag(MouseEvent e){
         int mousex = e.getX();
         int mousey = e.getY();
+        if(pan_in_progress || rotation_in_progress){
+            drag_idle = false;
+            drag_idle_timer.restart();
+        }
+        
         if(pan_in_progress){
+            invalidateLayers(LAYER_SEM);
             double delta_x = mousex - initial_mouse_x;
             double delta_y = mousey - initial_mouse_y;
             extra_x_offset = delta_x / working_scale;
@@ -502,6 +240,7 @@ public class Visualizer extends JPanel{
         }
         
         if(rotation_in_progress){
+            invalidateLayers(LAYER_SEM);
             double phi = getPhi(mousex, mousey);
             extra_rotation = phi - initial_mouse_phi;
             PARENT.setSEMRotationField(sem_rotation + extra_rotation);
@@ -520,15 +259,17 @@ public class Visualizer extends JPanel{
         else if(drawing && !erasing){
             int mx = e.getX();
             int my = e.getY();
-            if(getIndexX(mx) < switches.length && getIndexX(mx) >= 0 && getIndexY(my) < switches[0].length && getIndexY(my) >= 0){
-                switches[getIndexX(mx)][getIndexY(my)] = 1;
+            if(getIndexX(mx) < switches.getWidth() && getIndexX(mx) >= 0 && getIndexY(my) < switches.getHeight() && getIndexY(my) >= 0){
+                switches.set(getIndexX(mx), getIndexY(my), true);
+                invalidateCells(getIndexX(mx), getIndexY(my), getIndexX(mx) + 1, getIndexY(my) + 1);
             }
         }
         else if(erasing){
             int mx = e.getX();
             int my = e.getY();
-            if(getIndexX(mx) < switches.length && getIndexX(mx) >= 0 && getIndexY(my) < switches[0].length && getIndexY(my) >= 0){
-                switches[getIndexX(mx)][getIndexY(my)] = 0;
+            if(getIndexX(mx) < switches.getWidth() && getIndexX(mx) >= 0 && getIndexY(my) < switches.getHeight() && getIndexY(my) >= 0){
+                switches.set(getIndexX(mx), getIndexY(my), false);
+                invalidateCells(getIndexX(mx), getIndexY(my), getIndexX(mx) + 1, getIndexY(my) + 1);
             }
         }
     }
@@ -655,7 +396,8 @@ public class Visualizer extends JPanel{
                         drawing = true;
                         int mx = e.getX();
                         int my = e.getY();
-                        switches[getIndexX(mx)][getIndexY(my)] = 1;
+                        switches.set(getIndexX(mx), getIndexY(my), true);
+                        invalidateCells(getIndexX(mx), getIndexY(my), getIndexX(mx) + 1, getIndexY(my) + 1);
                         break;
                     }
                 case FILL:
@@ -664,8 +406,8 @@ public class Visualizer extends JPanel{
                         int my = e.getY();
                         int ix = getIndexX(mx);
                         int iy = getIndexY(my);
-                        switches[ix][iy] = 1;
-                        fill(ix, iy, 0, 1);
+                        switches.set(ix, iy, true);
+                        fill(ix, iy, false, true);
                         break;
                     }
                 default:
@@ -682,7 +424,8 @@ public class Visualizer extends JPanel{
                         erasing = true;
                         int mx = e.getX();
                         int my = e.getY();
-                        switches[getIndexX(mx)][getIndexY(my)] = 0;
+                        switches.set(getIndexX(mx), getIndexY(my), false);
+                        invalidateCells(getIndexX(mx), getIndexY(my), getIndexX(mx) + 1, getIndexY(my) + 1);
                         break;
                     }
                 case FILL:
@@ -691,8 +434,8 @@ public class Visualizer extends JPanel{
                         int my = e.getY();
                         int ix = getIndexX(mx);
                         int iy = getIndexY(my);
-                        switches[ix][iy] = 0;
-                        fill(ix, iy, 1, 0);
+                        switches.set(ix, iy, false);
+                        fill(ix, iy, true, false);
                         break;
                     }
                 default:
@@ -731,6 +474,7 @@ public class Visualizer extends JPanel{
      * Stops the rotation operation, updating the SEM image's rotation to its new value.
      */
     private void stopRotation(){
+        invalidateLayers(LAYER_SEM);
         rotation_in_progress = false;
         sem_rotation += extra_rotation;
         double cycles = Math.round(sem_rotation / 360.0);
@@ -739,12 +483,15 @@ public class Visualizer extends JPanel{
         initial_mouse_phi = 0;
         initial_mouse_x = 0;
         initial_mouse_y = 0;
+        drag_idle_timer.stop();
+        updateGraphics();
     }
     
     /**
      * Stops the pan operation, updating the SEM image's position offsets to their new values.
      */
     private void stopPan(){
+        invalidateLayers(LAYER_SEM);
         pan_in_progress = false;
         sem_xoffs += extra_x_offset;
         sem_yoffs += extra_y_offset;
@@ -752,6 +499,8 @@ public class Visualizer extends JPanel{
         extra_y_offset = 0;
         initial_mouse_x = 0;
         initial_mouse_y = 0;
+        drag_idle_timer.stop();
+        updateGraphics();
     }
     
     /**
@@ -768,6 +517,7 @@ public class Visualizer extends JPanel{
         crop_x2 = cx2;
         crop_y1 = cy1;
         crop_y2 = cy2;
+        invalidateLayers(ALL_LAYERS);
         updateGraphics();
     }
     
@@ -781,6 +531,8 @@ public class Visualizer extends JPanel{
         initial_mouse_x = 0;
         initial_mouse_y = 0;
         PARENT.setSEMRotationField(sem_rotation);
+        drag_idle_timer.stop();
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -795,6 +547,8 @@ public class Visualizer extends JPanel{
         initial_mouse_y = 0;
         PARENT.setSEMXOffsetField(sem_xoffs);
         PARENT.setSEMYOffsetField(sem_yoffs);
+        drag_idle_timer.stop();
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -814,6 +568,7 @@ public class Visualizer extends JPanel{
      * Undoes the cropping operation, reverting the cropping extents to match the extents of the SECM image.
      */
     private void undoCrop(){
+        invalidateLayers(ALL_LAYERS);
         crop_x1 = secm_image.getXMin()*secm_scale_factor;
         crop_x2 = secm_image.getXMax()*secm_scale_factor;
         crop_y1 = secm_image.getYMin()*secm_scale_factor;
@@ -824,56 +579,64 @@ public class Visualizer extends JPanel{
     
     /**
      * Handles the 'fill' tool, replacing contiguous pixels of <code>toreplace</code> value to the <code>replacewith</code> value
+     * The block of grid-sections that was changed, including the origin, is marked with {@link #invalidateCells(int, int, int, int)}.
      * @param xorigin x-coordinate at which the tool was used in pixels relative to this component's top-left corner.
      * @param yorigin y-coordinate at which the tool was used in pixels relative to this component's top-left corner.
      * @param toreplace The values to be replaced.
      * @param replacewith The values to which the switches are to be set.
      */
-    private void fill(int xorigin, int yorigin, int toreplace, int replacewith){
-        int xmax = switches.length;
-        int ymax = switches[0].length;
+    private void fill(int xorigin, int yorigin, boolean toreplace, boolean replacewith){
+        int xmax = switches.getWidth();
+        int ymax = switches.getHeight();
         //create stacks for the coordinates that are to be looked around
         //there is a real possibility that a great deal of points need to be looked at, so a recursive method was intractible.
         Stack<Integer> x_stack = new Stack<>();
         Stack<Integer> y_stack = new Stack<>();
         x_stack.push(xorigin);
         y_stack.push(yorigin);
+        //the bounds of the grid-sections that have been changed
+        int x1 = xorigin, y1 = yorigin, x2 = xorigin, y2 = yorigin;
         while(!x_stack.empty()){
             int x = x_stack.pop();
             int y = y_stack.pop();
+            x1 = Math.min(x1, x);
+            y1 = Math.min(y1, y);
+            x2 = Math.max(x2, x);
+            y2 = Math.max(y2, y);
             //look right
             if(x+1 < xmax){
-                if(switches[x+1][y] == toreplace){
-                    switches[x+1][y] = replacewith;
+                if(switches.get(x+1, y) == toreplace){
+                    switches.set(x+1, y, replacewith);
                     x_stack.push(x+1);
                     y_stack.push(y);
                 }
             }
             //look left
             if(x > 0){
-                if(switches[x-1][y] == toreplace){
-                    switches[x-1][y] = replacewith;
+                if(switches.get(x-1, y) == toreplace){
+                    switches.set(x-1, y, replacewith);
                     x_stack.push(x-1);
                     y_stack.push(y);
                 }
             }
             //look down
             if(y+1 < ymax){
-                if(switches[x][y+1] == toreplace){
-                    switches[x][y+1] = replacewith;
+                if(switches.get(x, y+1) == toreplace){
+                    switches.set(x, y+1, replacewith);
                     x_stack.push(x);
                     y_stack.push(y+1);
                 }
             }
             //look up
             if(y > 0){
-                if(switches[x][y-1] == toreplace){
-                    switches[x][y-1] = replacewith;
+                if(switches.get(x, y-1) == toreplace){
+                    switches.set(x, y-1, replacewith);
                     x_stack.push(x);
                     y_stack.push(y-1);
                 }
             }
         }
+        invalidateCells(x1, y1, x2 + 1, y2 + 1);
     }
     
     /**
@@ -936,7 +699,8 @@ public class Visualizer extends JPanel{
             reac_xresolution = xres;
             double xbins = Math.ceil((secm_image.getXMax() - secm_image.getXMin())/reac_xresolution*secm_scale_factor);
             double ybins = Math.ceil((secm_image.getYMax() - secm_image.getYMin())/reac_yresolution*secm_scale_factor);
-            switches = new int[(int)xbins][(int)ybins];
+            switches = new BitGrid((int)xbins, (int)ybins);
+            invalidateLayers(LAYER_SELECTION | LAYER_GRID | LAYER_SAMPLING);
             updateGraphics();
         }
     }
@@ -950,7 +714,8 @@ public class Visualizer extends JPanel{
             reac_yresolution = yres;
             double xbins = Math.ceil((secm_image.getXMax() - secm_image.getXMin())/reac_xresolution*secm_scale_factor);
             double ybins = Math.ceil((secm_image.getYMax() - secm_image.getYMin())/reac_yresolution*secm_scale_factor);
-            switches = new int[(int)xbins][(int)ybins];
+            switches = new BitGrid((int)xbins, (int)ybins);
+            invalidateLayers(LAYER_SELECTION | LAYER_GRID | LAYER_SAMPLING);
             updateGraphics();
         }
     }
@@ -976,6 +741,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingNumberXSteps(int num){
         sam_num_steps_x = num;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -985,6 +751,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingNumberYSteps(int num){
         sam_num_steps_y = num;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -995,6 +762,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingStartingX(int start){
         sam_start_x = start;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -1005,6 +773,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingStartingY(int start){
         sam_start_y = start;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -1015,6 +784,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingStepSizeX(int step){
         sam_step_size_x = step;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -1025,6 +795,7 @@ public class Visualizer extends JPanel{
      */
     public void setSamplingStepSizeY(int step){
         sam_step_size_y = step;
+        invalidateLayers(LAYER_SAMPLING);
         updateGraphics();
     }
     
@@ -1042,7 +813,8 @@ public class Visualizer extends JPanel{
         crop_y2 = secm_image.getYMax()*secm_scale_factor;
         double xbins = Math.ceil((secm_image.getXMax() - secm_image.getXMin())/reac_xresolution*secm_scale_factor);
         double ybins = Math.ceil((secm_image.getYMax() - secm_image.getYMin())/reac_yresolution*secm_scale_factor);
-        switches = new int[(int)xbins][(int)ybins];
+        switches = new BitGrid((int)xbins, (int)ybins);
+        invalidateLayers(ALL_LAYERS);
         updateGraphics();
     }
     
@@ -1059,7 +831,8 @@ public class Visualizer extends JPanel{
         crop_y2 = secm_image.getYMax()*secm_scale_factor;
         double xbins = Math.ceil((secm_image.getXMax() - secm_image.getXMin())/reac_xresolution*secm_scale_factor);
         double ybins = Math.ceil((secm_image.getYMax() - secm_image.getYMin())/reac_yresolution*secm_scale_factor);
-        switches = new int[(int)xbins][(int)ybins];
+        switches = new BitGrid((int)xbins, (int)ybins);
+        invalidateLayers(ALL_LAYERS);
         updateGraphics();
     }
     
@@ -1069,6 +842,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMImage(SEMImage sem){
         sem_image = sem;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1078,6 +852,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMMirrorX(boolean mirror){
         sem_mirrorx = mirror;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1087,6 +862,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMMirrorY(boolean mirror){
         sem_mirrory = mirror;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1096,6 +872,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMRotation(double rot){
         sem_rotation = rot;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1105,6 +882,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMScale(double scale){
         sem_scale = scale;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1124,6 +902,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMXOffs(double offs){
         sem_xoffs = offs;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     
@@ -1134,6 +913,7 @@ public class Visualizer extends JPanel{
      */
     public void setSEMYOffs(double offs){
         sem_yoffs = offs;
+        invalidateLayers(LAYER_SEM);
         updateGraphics();
     }
     //</editor-fold>
@@ -1312,26 +1092,62 @@ public class Visualizer extends JPanel{
      * @return SECM currents at each section of the reactivity grid using bilinear interpolation. The currents are at the same scale used in the original SECM image file.
      */
     public double[][] getSECMCurrents(){
-        double[][] secmcurrents = new double[switches.length][switches[0].length];
-        for(int xindex = 0; xindex < switches.length; xindex ++){
+        double[][] secmcurrents = new double[switches.getWidth()][switches.getHeight()];
+        double[] x_secm_coords = toSECMUnits(getReactivityGridXCoords());
+        double[] y_secm_coords = toSECMUnits(getReactivityGridYCoords());
+        double[] currents = new double[x_secm_coords.length*y_secm_coords.length];
+        secm_image.getCurrentGrid(x_secm_coords, y_secm_coords, currents, SECMImage.INTERPOLATION_BILINEAR);
+        for(int xindex = 0; xindex < switches.getWidth(); xindex ++){
+            for(int yindex = 0; yindex < switches.getHeight(); yindex ++){
+                secmcurrents[xindex][yindex] = currents[yindex*x_secm_coords.length + xindex];
+            }
+        }
+        return secmcurrents;
+    }
+    
+    /**
+     * Evaluates the x-coordinate of the centre of each column of the reactivity grid.
+     * @return the x-coordinates in metres, indexed by the x-index of the grid.
+     */
+    private double[] getReactivityGridXCoords(){
+        double[] coords = new double[switches.getWidth()];
+        for(int xindex = 0; xindex < switches.getWidth(); xindex ++){
             double x1 = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)xindex;
             x1 = Math.max(x1, secm_image.getXMin());
             double x2 = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)xindex + 1.0);
             x2 = Math.min(x2, secm_image.getXMax());
-            double x_coord = 0.5*(x1 + x2);
-            double x_secm_coord = x_coord/secm_scale_factor;
-            for(int yindex = 0; yindex < switches[0].length; yindex ++){
-                double y1 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)yindex;
-                y1 = Math.max(y1, secm_image.getYMin());
-                double y2 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)yindex + 1.0);
-                y2 = Math.min(y2, secm_image.getYMax());
-                double y_coord = 0.5*(y1 + y2);
-                double y_secm_coord = y_coord/secm_scale_factor;
-                double current = secm_image.getCurrent(x_secm_coord, y_secm_coord, SECMImage.INTERPOLATION_BILINEAR);
-                secmcurrents[xindex][yindex] = current;
-            }
+            coords[xindex] = 0.5*(x1 + x2);
         }
-        return secmcurrents;
+        return coords;
+    }
+    
+    /**
+     * Evaluates the y-coordinate of the centre of each row of the reactivity grid.
+     * @return the y-coordinates in metres, indexed by the y-index of the grid.
+     */
+    private double[] getReactivityGridYCoords(){
+        double[] coords = new double[switches.getHeight()];
+        for(int yindex = 0; yindex < switches.getHeight(); yindex ++){
+            double y1 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)yindex;
+            y1 = Math.max(y1, secm_image.getYMin());
+            double y2 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)yindex + 1.0);
+            y2 = Math.min(y2, secm_image.getYMax());
+            coords[yindex] = 0.5*(y1 + y2);
+        }
+        return coords;
+    }
+    
+    /**
+     * Converts coordinates in metres to the units of the SECM image.
+     * @param coords the coordinates in metres.
+     * @return a new array holding the coordinates in the units of the SECM image.
+     */
+    private double[] toSECMUnits(double[] coords){
+        double[] secm_coords = new double[coords.length];
+        for(int i = 0; i < coords.length; i++){
+            secm_coords[i] = coords[i]/secm_scale_factor;
+        }
+        return secm_coords;
     }
     
     /**
@@ -1355,15 +1171,13 @@ public class Visualizer extends JPanel{
      * @return 
      */
     public double[][] getSEMSignals() throws ImproperFileFormattingException{
-        BufferedImage sem = drawSEM(1.0f);
+        double[] grayscale = getSEMPlane();
         
         int width = this.getWidth();
         int height = this.getHeight();
         
-        double[][] grayscale = bufferedImageToGrayscale(sem);
-        
-        int switch_width = switches.length;
-        int switch_height = switches[0].length;
+        int switch_width = switches.getWidth();
+        int switch_height = switches.getHeight();
         
         double[][] sums = new double[switch_width][switch_height];
         double[][] samples = new double[switch_width][switch_height];
@@ -1395,7 +1209,7 @@ public class Visualizer extends JPanel{
                 double ycoord = (double)y / (double)image_height * secm_height;
                 int reac_grid_y = (int)Math.round((ycoord*secm_scale_factor) / reac_yresolution);
                 try{
-                sums[reac_grid_x][reac_grid_y] += grayscale[x + x0][y + y0];
+                sums[reac_grid_x][reac_grid_y] += grayscale[(y + y0)*width + x + x0];
                 samples[reac_grid_x][reac_grid_y] ++;
                 }
                 catch(Exception e){
@@ -1405,8 +1219,8 @@ public class Visualizer extends JPanel{
                     System.out.println("y: " + y + " max: " + image_height);
                     System.out.println("sumsx: " + reac_grid_x + " max: " + switch_width);
                     System.out.println("sumsy: " + reac_grid_y + " max: " + switch_height);
-                    System.out.println("grayx: " + gx + " max: " + grayscale.length);
-                    System.out.println("grayy: " + gy + " max: " + grayscale[0].length);
+                    System.out.println("grayx: " + gx + " max: " + width);
+                    System.out.println("grayy: " + gy + " max: " + height);
                     return sums;
                 }
             }
@@ -1422,12 +1236,30 @@ public class Visualizer extends JPanel{
         return sums;
     }
     
+    /**
+     * Returns the grayscale signal of the SEM image as it is drawn onto this component by {@link ViewState#drawSEM(float, boolean)} at full opacity.
+     * The SEM image is sampled at full resolution rather than from its mipmap pyramid, so the signal does not depend on how far the pyramid has been built.
+     * The plane is kept until the SEM image, its placement or the size of this component changes, 
+     * so that {@link #getSEMSignals()} and {@link #saveSEM(java.lang.String, int)} do not redraw and reconvert the SEM image every time.
+     * @return The gray level of each pixel of this component, indexed as <code>plane[y*getWidth() + x]</code>.
+     */
+    private double[] getSEMPlane(){
+        List<Object> key = Arrays.asList(sem_image, sem_rotation + extra_rotation, sem_xoffs + extra_x_offset, sem_yoffs + extra_y_offset, sem_scale, 
+                sem_mirrorx, sem_mirrory, this.getWidth(), this.getHeight(), 
+                secm_image, secm_image.getXMin(), secm_image.getXMax(), secm_image.getYMin(), secm_image.getYMax(), secm_scale_factor);
+        if(sem_plane == null || !key.equals(sem_plane_key)){
+            sem_plane = bufferedImageToGrayscaleFlat(snapshot().drawSEM(1.0f, false));
+            sem_plane_key = key;
+        }
+        return sem_plane;
+    }
+    
     /**
      * Returns the size of {@link #switches}
-     * @return the size of {@link #switches} as: <code>new int[]{switches.length, switches[0].length}</code>
+     * @return the size of {@link #switches} as: <code>new int[]{width, height}</code>
      */
     public int[] getReactivityGridSize(){
-        return new int[]{switches.length, switches[0].length};
+        return new int[]{switches.getWidth(), switches.getHeight()};
     }
     
     /**
@@ -1435,8 +1267,9 @@ public class Visualizer extends JPanel{
      * @param new_switches the new switches.
      * @see EdgeDetectionWindow#applyDetection() 
      */
-    public void setSwitches(int[][] new_switches){
+    public void setSwitches(BitGrid new_switches){
         switches = new_switches;
+        invalidateLayers(LAYER_SELECTION);
         updateGraphics();
     }
     
@@ -1446,8 +1279,9 @@ public class Visualizer extends JPanel{
      * @see MorphologicalTransformationDialog
      */
     public void filterSwitches(BinaryFilter filter){
-        int[][] new_switches = filter.applyFilter(switches);
+        BitGrid new_switches = filter.applyFilter(switches);
         switches = new_switches;
+        invalidateLayers(LAYER_SELECTION);
         updateGraphics();
     }
     
@@ -1512,23 +1346,17 @@ public class Visualizer extends JPanel{
             pw.print(String.format("##xindex%syindex%sswitch%sxcoord/m%sycoord/m%scurrent/A", 
                     data_separator, data_separator, data_separator, data_separator, data_separator));
             
-            for(int xindex = 0; xindex < switches.length; xindex ++){
-                double x1 = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)xindex;
-                x1 = Math.max(x1, secm_image.getXMin());
-                double x2 = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)xindex + 1.0);
-                x2 = Math.min(x2, secm_image.getXMax());
-                double x_coord = 0.5*(x1 + x2);
-                double x_secm_coord = x_coord/secm_scale_factor;
-                for(int yindex = 0; yindex < switches[0].length; yindex ++){
-                    double y1 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)yindex;
-                    y1 = Math.max(y1, secm_image.getYMin());
-                    double y2 = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)yindex + 1.0);
-                    y2 = Math.min(y2, secm_image.getYMax());
-                    double y_coord = 0.5*(y1 + y2);
-                    double y_secm_coord = y_coord/secm_scale_factor;
-                    double current = secm_image.getCurrent(x_secm_coord, y_secm_coord, interpolation)*current_scale;
+            double[] x_coords = getReactivityGridXCoords();
+            double[] y_coords = getReactivityGridYCoords();
+            double[] currents = new double[x_coords.length*y_coords.length];
+            secm_image.getCurrentGrid(toSECMUnits(x_coords), toSECMUnits(y_coords), currents, interpolation);
+            for(int xindex = 0; xindex < switches.getWidth(); xindex ++){
+                double x_coord = x_coords[xindex];
+                for(int yindex = 0; yindex < switches.getHeight(); yindex ++){
+                    double y_coord = y_coords[yindex];
+                    double current = currents[yindex*x_coords.length + xindex]*current_scale;
                     pw.print(String.format("\n%d%s%d%s%d%s%.6E%s%.6E%s%.6E",
-                            xindex, data_separator, yindex, data_separator, switches[xindex][yindex], data_separator,
+                            xindex, data_separator, yindex, data_separator, switches.get(xindex, yindex) ? 1 : 0, data_separator,
                             x_coord, data_separator, y_coord, data_separator, current));
                 }
             }
@@ -1552,10 +1380,9 @@ public class Visualizer extends JPanel{
             f.createNewFile();
             try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(f)))) {
                 pw.print("#x" + delimiter + "y" + delimiter + "signal");
-                BufferedImage sem = drawSEM(1.0f);
+                double[] grayscale = getSEMPlane();
                 int width = this.getWidth();
                 int height = this.getHeight();
-                double[][] grayscale = bufferedImageToGrayscale(sem);
                 double secm_width = secm_image.getXMax() - secm_image.getXMin();
                 double secm_height = secm_image.getYMax() - secm_image.getYMin();
                 int image_width, image_height;
@@ -1575,7 +1402,7 @@ public class Visualizer extends JPanel{
                     for(int y = 0; y < image_height; y++){
                         double ycoord = (double)y / (double)image_height * secm_height;
                         try{
-                            double data = grayscale[x + x0][y + y0];
+                            double data = grayscale[(y + y0)*width + x + x0];
                             pw.print("\n" + xcoord + delimiter + ycoord + delimiter + data);
                         }
                         catch(ArrayIndexOutOfBoundsException e){
@@ -1583,8 +1410,8 @@ public class Visualizer extends JPanel{
                             int gy = y + y0;
                             System.out.println("x: " + x + " max: " + image_width);
                             System.out.println("y: " + y + " max: " + image_height);
-                            System.out.println("grayx: " + gx + " max: " + grayscale.length);
-                            System.out.println("grayy: " + gy + " max: " + grayscale[0].length);
+                            System.out.println("grayx: " + gx + " max: " + width);
+                            System.out.println("grayy: " + gy + " max: " + height);
                         }
                     }
                 }   
@@ -1602,6 +1429,23 @@ public class Visualizer extends JPanel{
      * The image that is rendered in the visualizer in {@link #paint(java.awt.Graphics)}.
      */
     private Image base_image;
+    /**
+     * Draws the frames of this visualizer on a background thread.
+     */
+    private final Renderer renderer = new Renderer();
+    /**
+     * The layers that have changed since the last frame was requested, as a combination of the <code>LAYER_</code> flags.
+     */
+    private int dirty_layers = ALL_LAYERS;
+    /**
+     * The copy of {@link #switches} given to the last snapshot, reused until the selection changes.
+     */
+    private BitGrid switches_snapshot;
+    /**
+     * The block of grid-sections that have changed since the last frame was requested, as <code>{first x-index, first y-index, last x-index + 1, last y-index + 1}</code>, 
+     * or <code>null</code> if none have.
+     */
+    private int[] dirty_cells;
     /**
      * Determines if the reactivity grid should be rendered.
      * The grid will be rendered if and only if this value is <code>true</code>.
@@ -1719,6 +1563,19 @@ public class Visualizer extends JPanel{
      * Will be <code>true</code> if and only if the SEM image is being actively rotated by the user.
      */
     private boolean rotation_in_progress;
+    /**
+     * Will be <code>true</code> if the pointer has not moved for {@link #PREVIEW_IDLE_DELAY} milliseconds during the current translation or rotation operation.
+     * While it is <code>false</code>, the SEM image is drawn as a reduced resolution preview.
+     */
+    private boolean drag_idle;
+    /**
+     * Sets {@link #drag_idle} and asks for a full resolution frame once the pointer has stopped moving during a translation or rotation operation.
+     * Restarted by every drag event.
+     */
+    private final Timer drag_idle_timer = new Timer(PREVIEW_IDLE_DELAY, e -> {
+        drag_idle = true;
+        updateGraphics();
+    });
     /**
      * The x-offset being added to the SEM image by the current translation operation in metres.
      */
@@ -1749,6 +1606,14 @@ public class Visualizer extends JPanel{
      * The scale of the image of the visualizer in pixels per metre
      */
     private double working_scale;
+    /**
+     * The grayscale SEM signal last drawn by {@link #getSEMPlane()}, or <code>null</code>.
+     */
+    private double[] sem_plane;
+    /**
+     * The inputs that {@link #sem_plane} was drawn from. The plane is redrawn when these no longer match.
+     */
+    private List<Object> sem_plane_key;
     /**
      * The lower x-bound of the cropped area in metres.
      */
@@ -1788,7 +1653,7 @@ public class Visualizer extends JPanel{
     /**
      * Holds the state of the reactivity at each grid-section in the reactivity and sampling screens
      */
-    private int[][] switches;
+    private BitGrid switches;
     /**
      * Will be <code>true</code> if and only if the user is currently activating pixels using the pencil tool in the reactivity screen.
      */
@@ -1843,4 +1708,1152 @@ public class Visualizer extends JPanel{
      * The render more for rendering the sampling screen
      */
     public static final int SAMPLING_MODE = 3;
+    /**
+     * The layer holding the SECM image, cropped in the reactivity and sampling modes.
+     */
+    private static final int LAYER_SECM = 1;
+    /**
+     * The layer holding the transformed SEM image.
+     */
+    private static final int LAYER_SEM = 2;
+    /**
+     * The layer holding the active grid-sections of the reactivity grid.
+     */
+    private static final int LAYER_SELECTION = 4;
+    /**
+     * The layer holding the lines of the reactivity grid.
+     */
+    private static final int LAYER_GRID = 8;
+    /**
+     * The layer holding the grid-sections that will be sampled.
+     */
+    private static final int LAYER_SAMPLING = 16;
+    /**
+     * Every layer.
+     */
+    private static final int ALL_LAYERS = LAYER_SECM | LAYER_SEM | LAYER_SELECTION | LAYER_GRID | LAYER_SAMPLING;
+    /**
+     * The factor by which the resolution of the SEM layer is reduced while the SEM image is being translated or rotated.
+     */
+    private static final int PREVIEW_REDUCTION = 4;
+    /**
+     * The time in milliseconds that the pointer must rest during a translation or rotation operation before a full resolution frame is drawn.
+     */
+    private static final int PREVIEW_IDLE_DELAY = 200;
+    
+    /**
+     * An immutable snapshot of everything that the rendering of a {@link Visualizer} depends on, together with the methods that draw each layer from it.
+     * <p>Snapshots are taken on the event dispatch thread by {@link Visualizer#snapshot()} and drawn on the {@link Renderer}'s thread, 
+     * so nothing the user does while a frame is being drawn can change the frame. The SECM and SEM images are shared rather than copied since they are not changed once loaded; 
+     * the reactivity switches are copied.</p>
+     */
+    private static final class ViewState{
+        
+        /**
+         * Takes a snapshot of a visualizer.
+         * @param v The visualizer.
+         * @param switches A copy of the visualizer's switches that will not be changed.
+         */
+        private ViewState(Visualizer v, BitGrid switches){
+            width = v.getWidth();
+            height = v.getHeight();
+            render_mode = v.render_mode;
+            secm_image = v.secm_image;
+            secm_scale_factor = v.secm_scale_factor;
+            sem_image = v.sem_image;
+            sem_scale = v.sem_scale;
+            sem_xoffs = v.sem_xoffs;
+            sem_yoffs = v.sem_yoffs;
+            sem_rotation = v.sem_rotation;
+            sem_mirrorx = v.sem_mirrorx;
+            sem_mirrory = v.sem_mirrory;
+            sem_transparency = v.sem_transparency;
+            extra_x_offset = v.extra_x_offset;
+            extra_y_offset = v.extra_y_offset;
+            extra_rotation = v.extra_rotation;
+            reac_grid = v.reac_grid;
+            reac_selection_transparency = v.reac_selection_transparency;
+            reac_sem_transparency = v.reac_sem_transparency;
+            reac_xresolution = v.reac_xresolution;
+            reac_yresolution = v.reac_yresolution;
+            crop_x1 = v.crop_x1;
+            crop_x2 = v.crop_x2;
+            crop_y1 = v.crop_y1;
+            crop_y2 = v.crop_y2;
+            crop_in_progress = v.crop_in_progress;
+            tentative_crop_x1 = v.tentative_crop_x1;
+            tentative_crop_y1 = v.tentative_crop_y1;
+            tentative_crop_x2 = v.tentative_crop_x2;
+            tentative_crop_y2 = v.tentative_crop_y2;
+            sam_num_steps_x = v.sam_num_steps_x;
+            sam_num_steps_y = v.sam_num_steps_y;
+            sam_start_x = v.sam_start_x;
+            sam_start_y = v.sam_start_y;
+            sam_step_size_x = v.sam_step_size_x;
+            sam_step_size_y = v.sam_step_size_y;
+            this.switches = switches;
+            preview = render_mode == SEM_MODE && (v.pan_in_progress || v.rotation_in_progress) && !v.drag_idle;
+            
+            double secm_width = secm_image.getXMax() - secm_image.getXMin();
+            double secm_height = secm_image.getYMax() - secm_image.getYMin();
+            double scale = (double)width/secm_width/secm_scale_factor; //pixels per metre
+            if(secm_width/width < secm_height/height){
+                scale = (double)height/secm_height/secm_scale_factor;
+            }
+            working_scale = scale;
+        }
+        
+        /**
+         * Returns the width of the panel when the snapshot was taken.
+         * @return the width in pixels.
+         */
+        private int getWidth(){
+            return width;
+        }
+        
+        /**
+         * Returns the height of the panel when the snapshot was taken.
+         * @return the height in pixels.
+         */
+        private int getHeight(){
+            return height;
+        }
+        
+        /**
+         * Creates a black image the same size as the panel.
+         * @return a black image the same size as the panel.
+         */
+        private BufferedImage defaultImage(){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage def = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics def_graphics = def.getGraphics();
+            def_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
+            def_graphics.fillRect(0, 0, width, height);
+            return def;
+        }
+    
+        /**
+         * Creates a transparent image the same size as the panel for a layer to be drawn onto.
+         * @return a transparent image the same size as the panel.
+         */
+        private BufferedImage emptyLayer(){
+            return new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        }
+    
+        /**
+         * Creates an image of the SECM image using nearest neighbor interpolation.
+         * @return an image of the SECM image.
+         */
+        private BufferedImage drawSECM(){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage secm = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics secm_graphics = secm.getGraphics();
+            secm_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
+            secm_graphics.fillRect(0, 0, width, height);
+        
+            double secm_width = secm_image.getXMax() - secm_image.getXMin();
+            double secm_height = secm_image.getYMax() - secm_image.getYMin();
+        
+            int image_width, image_height;
+        
+            if(secm_width/width < secm_height/height){
+                image_width = (int)(secm_width/secm_height*(double)height);
+                image_height = height;
+            }
+            else{
+                image_width = width;
+                image_height = (int)(secm_height/secm_width*(double)width);
+            }
+        
+            int x0 = (width - image_width)/2;
+            int y0 = (height - image_height)/2;
+        
+            //render the image
+            double[] xcoords = new double[image_width + 1];
+            double[] ycoords = new double[image_height + 1];
+            for(int x = 0; x <= image_width; x++){
+                xcoords[x] = (double)x / (double)image_width * secm_width + secm_image.getXMin();
+            }
+            for(int y = 0; y <= image_height; y++){
+                ycoords[y] = (double)y / (double)image_height * secm_height + secm_image.getYMin();
+            }
+            double[] currents = new double[xcoords.length*ycoords.length];
+            secm_image.getScaledCurrentGrid(xcoords, ycoords, currents, SECMImage.INTERPOLATION_NN);
+            writeColours(secm, currents, xcoords.length, ycoords.length, x0, y0, ColourSettings.getColourMap(ColourSettings.CSCALE_GREY));
+        
+            return secm;
+        }
+    
+        /**
+         * Creates an image of the SEM image with the set transparency overlaid on the SECM image.
+         * The SECM image is rendered the same way as {@link #drawSECM()} and the SEM image the same way as {@link #drawSEMLayer(int, boolean)} at full resolution.
+         * Unlike {@link Renderer#composeSEM(ViewState)}, nothing is taken from the cached layers.
+         * @param transparency The opacity of the SEM image.
+         * @param filtered <code>true</code> to draw zoomed out SEM images from their mipmap pyramid, for display; <code>false</code> to sample the full image, for signals.
+         * @return an image of the SEM image with the set transparency overlaid on the SECM image.
+         */
+        private BufferedImage drawSEM(float transparency, boolean filtered){
+            BufferedImage sem = transparency < 1.0f ? drawSECM() : defaultImage();
+            overlay(sem, drawSEMLayer(1, filtered), transparency);
+            return sem;
+        }
+    
+        /**
+         * Creates the SEM layer: the scaled, rotated and translated SEM image at full opacity on a transparent background.
+         * <p>With a reduction greater than 1, the SEM image is drawn from a coarser level of its pyramid onto a correspondingly smaller image, 
+         * which is then stretched over the panel. This is used for quick previews while the SEM image is being dragged.</p>
+         * @param reduction The factor by which the resolution of the layer is reduced, 1 for full resolution.
+         * @param filtered <code>true</code> to draw zoomed out SEM images from their mipmap pyramid, for display; <code>false</code> to sample the full image, for signals.
+         * @return an image of the SEM image positioned over the SECM image.
+         */
+        private BufferedImage drawSEMLayer(int reduction, boolean filtered){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage sem = emptyLayer();
+            Graphics2D sem_graphics = sem.createGraphics();
+        
+            double secm_width = secm_image.getXMax() - secm_image.getXMin();
+            double secm_height = secm_image.getYMax() - secm_image.getYMin();
+        
+            int image_width, image_height;
+        
+            if(secm_width/width < secm_height/height){
+                image_width = (int)(secm_width/secm_height*(double)height);
+                image_height = height;
+            }
+            else{
+                image_width = width;
+                image_height = (int)(secm_height/secm_width*(double)width);
+            }
+        
+        
+            int x0 = (width - image_width)/2;
+            int y0 = (height - image_height)/2;
+        
+            double sem_cx = (double)image_width*0.5;
+            double sem_cy = (double)image_height*0.5;
+        
+            //AffineTransform does stuff backwards!!!! (somebody made the matrices multiply in the wrong order)
+        
+            double rotation_rad = Math.toRadians(sem_rotation + extra_rotation);
+        
+            AffineTransform sem_transform = new AffineTransform();
+            sem_transform.translate(working_scale*(sem_xoffs + extra_x_offset), working_scale*(sem_yoffs + extra_y_offset));
+            sem_transform.rotate(rotation_rad, sem_cx, sem_cy);
+            sem_transform.scale(working_scale/sem_scale, working_scale/sem_scale);
+            if(sem_mirrorx){
+                sem_transform.translate(sem_image.getWidth(), 0.0);
+                sem_transform.scale(-1, 1);
+            }
+            if(sem_mirrory){
+                sem_transform.translate(0.0, sem_image.getHeight());
+                sem_transform.scale(1, -1);
+            }
+            //only the part of the SEM image that lands on the panel is needed, at the resolution it is drawn at
+            SEMRegion region = sem_image.getRegion(getVisibleSEMArea(sem_transform, x0, y0, width, height), sem_scale/working_scale*reduction, filtered);
+            sem_transform.concatenate(region.toImageTransform());
+            if(reduction > 1){
+                AffineTransform reduced_transform = AffineTransform.getScaleInstance(1.0/reduction, 1.0/reduction);
+                reduced_transform.translate(x0, y0);
+                reduced_transform.concatenate(sem_transform);
+                BufferedImage reduced = new BufferedImage((width + reduction - 1)/reduction, (height + reduction - 1)/reduction, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D reduced_graphics = reduced.createGraphics();
+                reduced_graphics.drawImage(region.getImage(), new AffineTransformOp(reduced_transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR), 0, 0);
+                reduced_graphics.dispose();
+                //the layer is still empty, so the preview can be copied in rather than blended
+                sem_graphics.setComposite(AlphaComposite.Src);
+                sem_graphics.drawImage(reduced, 0, 0, reduced.getWidth()*reduction, reduced.getHeight()*reduction, null);
+            }
+            else{
+                AffineTransformOp ato = new AffineTransformOp(sem_transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
+                sem_graphics.drawImage(region.getImage(), ato, x0, y0);
+            }
+    //        sem_graphics.drawImage(sem_image.getImage(), sem_transform, this);
+    //        sem_graphics.drawImage(sem_image.getImage(), x0, y0, this);
+    //        sem_graphics.drawImage(sem_image.getImage(), ato, x0, y0);
+            sem_graphics.dispose();
+        
+            return sem;
+        }
+    
+        /**
+         * Writes a grid of scaled currents into an image in a colour scale.
+         * The colours are written straight into the pixels of the image rather than drawn one rectangle at a time.
+         * @param image The image to draw onto. Must be of type {@link BufferedImage#TYPE_INT_ARGB}.
+         * @param currents The scaled currents, indexed as <code>currents[j*columns + i]</code>.
+         * @param columns The number of columns in <code>currents</code>.
+         * @param rows The number of rows in <code>currents</code>.
+         * @param x0 The x-coordinate in <code>image</code> of the first column. Columns that land outside the image are skipped.
+         * @param y0 The y-coordinate in <code>image</code> of the first row. Rows that land outside the image are skipped.
+         * @param map The colour scale.
+         */
+        private static void writeColours(BufferedImage image, double[] currents, int columns, int rows, int x0, int y0, ColourMap map){
+            int width = image.getWidth();
+            int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            int i_start = Math.max(0, -x0);
+            int i_end = Math.min(columns, width - x0);
+            int j_start = Math.max(0, -y0);
+            int j_end = Math.min(rows, image.getHeight() - y0);
+            for(int j = j_start; j < j_end; j++){
+                int source = j*columns;
+                int target = (j + y0)*width + x0;
+                for(int i = i_start; i < i_end; i++){
+                    pixels[target + i] = map.getARGB(currents[source + i]);
+                }
+            }
+        }
+    
+        /**
+         * Finds the part of the SEM image that is drawn onto the panel.
+         * @param sem_transform The transform from SEM pixels to panel pixels, before the drawing offset.
+         * @param x0 The x-offset at which the SEM image is drawn.
+         * @param y0 The y-offset at which the SEM image is drawn.
+         * @param width The width of the panel.
+         * @param height The height of the panel.
+         * @return The bounds of the visible area in SEM pixels, or the whole SEM image if the transform cannot be inverted.
+         */
+        private Rectangle2D getVisibleSEMArea(AffineTransform sem_transform, int x0, int y0, int width, int height){
+            try{
+                Rectangle2D panel = new Rectangle2D.Double(-x0, -y0, width, height);
+                return sem_transform.createInverse().createTransformedShape(panel).getBounds2D();
+            }
+            catch(NoninvertibleTransformException e){
+                return new Rectangle2D.Double(0, 0, sem_image.getWidth(), sem_image.getHeight());
+            }
+        }
+    
+        /**
+         * Creates the SECM layer of the reactivity mode: the SECM image zoomed into the cropped region using nearest neighbor interpolation.
+         * @return an image of the cropped SECM image.
+         */
+        private BufferedImage drawReactivitySECM(){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage reac = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D reac_graphics = reac.createGraphics();
+            reac_graphics.setColor(ColourSettings.BACKGROUND_COLOUR);
+            reac_graphics.fillRect(0, 0, width, height);
+            reac_graphics.dispose();
+        
+            //Evaluate the scaling and offsets for the cropped image
+            double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
+            double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
+        
+            int image_width, image_height;
+        
+            if(crop_width/width < crop_height/height){
+                image_width = (int)(crop_width/crop_height*(double)height);
+                image_height = height;
+            }
+            else{
+                image_width = width;
+                image_height = (int)(crop_height/crop_width*(double)width);
+            }
+        
+            int x0 = (width - image_width)/2;
+            int y0 = (height - image_height)/2;
+        
+            //render the SECM image
+            double[] xcoords = new double[image_width + 1];
+            double[] ycoords = new double[image_height + 1];
+            for(int x = 0; x <= image_width; x++){
+                xcoords[x] = (double)x / (double)image_width * crop_width + crop_x1/secm_scale_factor;
+            }
+            for(int y = 0; y <= image_height; y++){
+                ycoords[y] = (double)y / (double)image_height * crop_height + crop_y1/secm_scale_factor;
+            }
+            double[] currents = new double[xcoords.length*ycoords.length];
+            secm_image.getScaledCurrentGrid(xcoords, ycoords, currents, SECMImage.INTERPOLATION_NN);
+            writeColours(reac, currents, xcoords.length, ycoords.length, x0, y0, ColourSettings.getColourMap(ColourSettings.CSCALE_GREY));
+        
+            return reac;
+        }
+    
+        /**
+         * Creates the SEM layer of the reactivity mode: the SEM image as it is drawn by {@link #drawSEM(float, boolean)}, zoomed into the cropped region.
+         * @return an image of the cropped SEM image on a transparent background.
+         */
+        private BufferedImage drawReactivitySEM(){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage reac = emptyLayer();
+            Graphics2D reac_graphics = reac.createGraphics();
+        
+            //Evaluate the scaling and offsets for the cropped image
+            double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
+            double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
+            double crop_scale = (double)width/crop_width/secm_scale_factor; //pixels per metre
+        
+            int image_width, image_height;
+        
+            if(crop_width/width < crop_height/height){
+                image_width = (int)(crop_width/crop_height*(double)height);
+                image_height = height;
+                crop_scale = (double)height/crop_height/secm_scale_factor;
+            }
+            else{
+                image_width = width;
+                image_height = (int)(crop_height/crop_width*(double)width);
+            }
+        
+            int x0 = (width - image_width)/2;
+            int y0 = (height - image_height)/2;
+        
+            BufferedImage semimage = drawSEM(1.0f, true);
+            AffineTransform sem_transform = new AffineTransform();
+
+            double scalefactor = crop_scale / working_scale;
+            sem_transform.scale(scalefactor, scalefactor);
+
+
+            double secm_width = secm_image.getXMax() - secm_image.getXMin();
+            double secm_height = secm_image.getYMax() - secm_image.getYMin();
+
+            int precrop_imagewidth, precrop_imageheight;
+
+            if(secm_width/width < secm_height/height){
+                precrop_imagewidth = (int)(secm_width/secm_height*(double)height);
+                precrop_imageheight = height;
+            }
+            else{
+                precrop_imagewidth = width;
+                precrop_imageheight = (int)(secm_height/secm_width*(double)width);
+            }
+
+            int precrop_x0 = (width - precrop_imagewidth) / 2;
+            int precrop_y0 = (height - precrop_imageheight) / 2;
+
+            double x0s = ((double)precrop_x0)*scalefactor;
+            double y0s = ((double)precrop_y0)*scalefactor;
+
+            int xdisp = getRenderX(secm_image.getXMin()*secm_scale_factor) - getRenderX(crop_x1) - (int)x0s + x0;
+            int ydisp = getRenderY(secm_image.getYMin()*secm_scale_factor) - getRenderY(crop_y1) - (int)y0s + y0;
+
+            AffineTransformOp ato = new AffineTransformOp(sem_transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
+            reac_graphics.drawImage(semimage, ato, xdisp, ydisp);
+            reac_graphics.dispose();
+            return reac;
+        }
+    
+        /**
+         * Finds the grid-sections of the reactivity grid that are at least partly inside the cropped region.
+         * @return the range of grid-sections as <code>{first x-index, first y-index, last x-index + 1, last y-index + 1}</code>.
+         */
+        private int[] getVisibleCells(){
+            double wstart = Math.floor((crop_x1 - secm_image.getXMin()*secm_scale_factor) / reac_xresolution);
+            double hstart = Math.floor((crop_y1 - secm_image.getYMin()*secm_scale_factor) / reac_yresolution);
+            double wstop = Math.ceil((crop_x2 - secm_image.getXMin()*secm_scale_factor) / reac_xresolution);
+            double hstop = Math.ceil((crop_y2 - secm_image.getYMin()*secm_scale_factor) / reac_yresolution);
+        
+            double wstoplim = switches.getWidth();
+            double hstoplim = switches.getHeight();
+            wstart = Math.max(wstart, 0.0);
+            hstart = Math.max(hstart, 0.0);
+            wstop = Math.min(wstop, wstoplim);
+            hstop = Math.min(hstop, hstoplim);
+            return new int[]{(int)wstart, (int)hstart, (int)wstop, (int)hstop};
+        }
+    
+        /**
+         * Creates the selection layer of the reactivity mode: the active grid-sections at full opacity on a transparent background.
+         * @return an image of the active grid-sections.
+         */
+        private BufferedImage drawSelection(){
+            BufferedImage selection = emptyLayer();
+            Graphics2D reac_graphics = selection.createGraphics();
+            fillCells(reac_graphics, getVisibleCells());
+            reac_graphics.dispose();
+            return selection;
+        }
+    
+        /**
+         * Redraws a block of grid-sections of the selection layer, leaving the rest of the layer as it is.
+         * @param selection The selection layer, as drawn by {@link #drawSelection()} from an earlier snapshot.
+         * @param cells The block of grid-sections as <code>{first x-index, first y-index, last x-index + 1, last y-index + 1}</code>.
+         * @return the part of the panel that was redrawn, possibly empty.
+         */
+        private Rectangle redrawSelection(BufferedImage selection, int[] cells){
+            int[] visible = getVisibleCells();
+            int[] block = {Math.max(cells[0], visible[0]), Math.max(cells[1], visible[1]), Math.min(cells[2], visible[2]), Math.min(cells[3], visible[3])};
+            if(block[0] >= block[2] || block[1] >= block[3]){
+                return new Rectangle();
+            }
+            int x1 = getRenderX(Math.max(secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)block[0], crop_x1));
+            int x2 = getRenderX(Math.min(secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)block[2], crop_x2));
+            int y1 = getRenderY(Math.max(secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)block[1], crop_y1));
+            int y2 = getRenderY(Math.min(secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)block[3], crop_y2));
+            Rectangle area = new Rectangle(x1, y1, x2 - x1, y2 - y1).intersection(new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+            if(area.isEmpty()){
+                return new Rectangle();
+            }
+            
+            Graphics2D reac_graphics = selection.createGraphics();
+            reac_graphics.setComposite(AlphaComposite.Clear);
+            reac_graphics.fill(area);
+            reac_graphics.setComposite(AlphaComposite.SrcOver);
+            fillCells(reac_graphics, block);
+            reac_graphics.dispose();
+            return area;
+        }
+    
+        /**
+         * Fills the active grid-sections of a block in the colour of active grid-sections.
+         * @param reac_graphics The graphics of the selection layer.
+         * @param cells The block of grid-sections as <code>{first x-index, first y-index, last x-index + 1, last y-index + 1}</code>, inside the cropped region.
+         */
+        private void fillCells(Graphics2D reac_graphics, int[] cells){
+            reac_graphics.setColor(ColourSettings.ACTIVE_COLOUR);
+            for(int w_index = cells[0]; w_index < cells[2]; w_index ++){
+                double x_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)w_index;
+                x_m = Math.max(x_m, crop_x1);
+                double x2_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)w_index + 1.0);
+                x2_m = Math.min(x2_m, crop_x2);
+                int cellwidth = getRenderX(x2_m) - getRenderX(x_m);
+                for(int h_index = cells[1]; h_index < cells[3]; h_index ++){
+                    if(switches.get(w_index, h_index)){
+                        double y_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)h_index;
+                        y_m = Math.max(y_m, crop_y1);
+                        double y2_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)h_index + 1.0);
+                        y2_m = Math.min(y2_m, crop_y2);
+                        int cellheight = getRenderY(y2_m) - getRenderY(y_m);
+                        reac_graphics.fillRect(getRenderX(x_m), getRenderY(y_m), cellwidth, cellheight);
+                    }
+                }
+            }
+        }
+    
+        /**
+         * Creates the grid layer of the reactivity mode: the lines between grid-sections at full opacity on a transparent background.
+         * The layer is drawn whether or not the grid is enabled; {@link #reac_grid} only decides whether it is composited.
+         * @return an image of the reactivity grid.
+         */
+        private BufferedImage drawGrid(){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            BufferedImage grid = emptyLayer();
+            Graphics2D reac_graphics = grid.createGraphics();
+            int[] cells = getVisibleCells();
+        
+            double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
+            double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
+            int image_width, image_height;
+            if(crop_width/width < crop_height/height){
+                image_width = (int)(crop_width/crop_height*(double)height);
+                image_height = height;
+            }
+            else{
+                image_width = width;
+                image_height = (int)(crop_height/crop_width*(double)width);
+            }
+            int x0 = (width - image_width)/2;
+            int y0 = (height - image_height)/2;
+        
+            reac_graphics.setColor(ColourSettings.GRID_COLOUR);
+            for(double w_index = cells[0] + 1; w_index < cells[2]; w_index ++){
+                double linex_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*w_index;
+                int linex_p = getRenderX(linex_m);
+                reac_graphics.drawLine(linex_p, y0, linex_p, height - y0);
+            }
+
+            for(double h_index = cells[1] + 1; h_index < cells[3]; h_index ++){
+                double liney_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*h_index;
+                int liney_p = getRenderY(liney_m);
+                reac_graphics.drawLine(x0, liney_p, width - x0, liney_p);
+            }
+            reac_graphics.dispose();
+            return grid;
+        }
+    
+        /**
+         * Creates the sampling layer: the grid-sections that will be sampled, shaded orange on a transparent background.
+         * @return an image of the grid-sections that will be sampled.
+         */
+        private BufferedImage drawSamplingLayer(){
+            BufferedImage sam = emptyLayer();
+            Graphics2D sam_graphics = sam.createGraphics();
+        
+            sam_graphics.setColor(ColourSettings.SAMPLE_COLOUR);
+            for(int xindex = sam_start_x; xindex < sam_start_x + sam_num_steps_x*sam_step_size_x; xindex += sam_step_size_x){
+                double x_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*(double)xindex;
+                x_m = Math.max(x_m, crop_x1);
+                double x2_m = secm_image.getXMin()*secm_scale_factor + reac_xresolution*((double)xindex + 1.0);
+                x2_m = Math.min(x2_m, crop_x2);
+                int cellwidth = getRenderX(x2_m) - getRenderX(x_m);
+                for(int yindex = sam_start_y; yindex < sam_start_y + sam_num_steps_y*sam_step_size_y; yindex += sam_step_size_y){
+                    double y_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*(double)yindex;
+                    y_m = Math.max(y_m, crop_y1);
+                    double y2_m = secm_image.getYMin()*secm_scale_factor + reac_yresolution*((double)yindex + 1.0);
+                    y2_m = Math.min(y2_m, crop_y2);
+                    int cellheight = getRenderY(y2_m) - getRenderY(y_m);
+                    sam_graphics.fillRect(getRenderX(x_m), getRenderY(y_m), cellwidth, cellheight);
+                }
+            }
+            sam_graphics.dispose();
+        
+            return sam;
+        }
+    
+        /**
+         * Converts an x-coordinate from the SECM image's coordinate system to the on-screen x-coordinate.
+         * @param tx the x-coordinate in metres.
+         * @return the on-screen x-coordinate in pixels where <code>0</code> corresponds to the left of the panel.
+         */
+        private int getRenderX(double tx){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            //Evaluate the scaling and offsets for the cropped image
+            double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
+            double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
+        
+            int image_width;
+        
+            if(crop_width/width < crop_height/height){
+                image_width = (int)(crop_width/crop_height*(double)height);
+            }
+            else{
+                image_width = width;
+            }
+        
+            int x0 = (width - image_width)/2;
+            int xcoord = (int)((tx - crop_x1)/secm_scale_factor / crop_width * (double)image_width) + x0;
+            return xcoord;
+        }
+    
+        /**
+         * Converts a y-coordinate from the SECM image's coordinate system to the on-screen y-coordinate.
+         * @param ty the x-coordinate in metres.
+         * @return the on-screen y-coordinate in pixels where <code>0</code> corresponds to the top of the panel.
+         */
+        private int getRenderY(double ty){
+            int width = this.getWidth();
+            int height = this.getHeight();
+            //Evaluate the scaling and offsets for the cropped image
+            double crop_width = (crop_x2 - crop_x1)/secm_scale_factor;
+            double crop_height = (crop_y2 - crop_y1)/secm_scale_factor;
+        
+            int image_height;
+        
+            if(crop_width/width < crop_height/height){
+                image_height = height;
+            }
+            else{
+                image_height = (int)(crop_height/crop_width*(double)width);
+            }
+        
+            int y0 = (height - image_height)/2;
+            int ycoord = (int)((ty - crop_y1)/secm_scale_factor / crop_height * (double)image_height) + y0;
+            return ycoord;
+        }
+    
+        /**
+         * Draws a layer over an image, keeping the opacity of the image where the layer is drawn.
+         * @param image The image to be drawn onto.
+         * @param layer The layer to be drawn.
+         * @param transparency The opacity of the layer where <code>0</code> is invisible and <code>1</code> is opaque.
+         */
+        private static void overlay(BufferedImage image, BufferedImage layer, float transparency){
+            overlay(image, layer, transparency, null);
+        }
+    
+        /**
+         * Draws part of a layer over an image, keeping the opacity of the image where the layer is drawn.
+         * @param image The image to be drawn onto.
+         * @param layer The layer to be drawn.
+         * @param transparency The opacity of the layer where <code>0</code> is invisible and <code>1</code> is opaque.
+         * @param area The part of the image to draw onto, or <code>null</code> for all of it.
+         */
+        private static void overlay(BufferedImage image, BufferedImage layer, float transparency, Rectangle area){
+            Graphics2D graphics = image.createGraphics();
+            graphics.setClip(area);
+            graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,transparency));
+            graphics.drawImage(layer, 0, 0, null);
+            graphics.dispose();
+        }
+    
+        /**
+         * Copies an image so that the copy can be drawn onto without changing the original.
+         * @param image The image to be copied.
+         * @return a new {@link BufferedImage#TYPE_INT_ARGB} image with the same pixels.
+         */
+        private static BufferedImage copyImage(BufferedImage image){
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            int[] source = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            int[] target = ((DataBufferInt)copy.getRaster().getDataBuffer()).getData();
+            System.arraycopy(source, 0, target, 0, target.length);
+            return copy;
+        }
+        
+        /**
+         * Copies part of an image onto another image of the same size.
+         * @param image The image to be copied from.
+         * @param target The image to be copied onto.
+         * @param area The part of the images to be copied.
+         */
+        private static void copyArea(BufferedImage image, BufferedImage target, Rectangle area){
+            int width = image.getWidth();
+            int[] source_pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+            int[] target_pixels = ((DataBufferInt)target.getRaster().getDataBuffer()).getData();
+            for(int y = area.y; y < area.y + area.height; y++){
+                System.arraycopy(source_pixels, y*width + area.x, target_pixels, y*width + area.x, area.width);
+            }
+        }
+        
+        /**
+         * The width of the panel in pixels.
+         */
+        private final int width;
+        /**
+         * The height of the panel in pixels.
+         */
+        private final int height;
+        /**
+         * @see Visualizer#render_mode
+         */
+        private final int render_mode;
+        /**
+         * @see Visualizer#secm_image
+         */
+        private final SECMImage secm_image;
+        /**
+         * @see Visualizer#secm_scale_factor
+         */
+        private final double secm_scale_factor;
+        /**
+         * @see Visualizer#sem_image
+         */
+        private final SEMImage sem_image;
+        /**
+         * @see Visualizer#sem_scale
+         */
+        private final double sem_scale;
+        /**
+         * @see Visualizer#sem_xoffs
+         */
+        private final double sem_xoffs;
+        /**
+         * @see Visualizer#sem_yoffs
+         */
+        private final double sem_yoffs;
+        /**
+         * @see Visualizer#sem_rotation
+         */
+        private final double sem_rotation;
+        /**
+         * @see Visualizer#sem_mirrorx
+         */
+        private final boolean sem_mirrorx;
+        /**
+         * @see Visualizer#sem_mirrory
+         */
+        private final boolean sem_mirrory;
+        /**
+         * @see Visualizer#sem_transparency
+         */
+        private final float sem_transparency;
+        /**
+         * @see Visualizer#extra_x_offset
+         */
+        private final double extra_x_offset;
+        /**
+         * @see Visualizer#extra_y_offset
+         */
+        private final double extra_y_offset;
+        /**
+         * @see Visualizer#extra_rotation
+         */
+        private final double extra_rotation;
+        /**
+         * @see Visualizer#reac_grid
+         */
+        private final boolean reac_grid;
+        /**
+         * @see Visualizer#reac_selection_transparency
+         */
+        private final float reac_selection_transparency;
+        /**
+         * @see Visualizer#reac_sem_transparency
+         */
+        private final float reac_sem_transparency;
+        /**
+         * @see Visualizer#reac_xresolution
+         */
+        private final double reac_xresolution;
+        /**
+         * @see Visualizer#reac_yresolution
+         */
+        private final double reac_yresolution;
+        /**
+         * @see Visualizer#crop_x1
+         */
+        private final double crop_x1;
+        /**
+         * @see Visualizer#crop_x2
+         */
+        private final double crop_x2;
+        /**
+         * @see Visualizer#crop_y1
+         */
+        private final double crop_y1;
+        /**
+         * @see Visualizer#crop_y2
+         */
+        private final double crop_y2;
+        /**
+         * @see Visualizer#crop_in_progress
+         */
+        private final boolean crop_in_progress;
+        /**
+         * @see Visualizer#tentative_crop_x1
+         */
+        private final int tentative_crop_x1;
+        /**
+         * @see Visualizer#tentative_crop_y1
+         */
+        private final int tentative_crop_y1;
+        /**
+         * @see Visualizer#tentative_crop_x2
+         */
+        private final int tentative_crop_x2;
+        /**
+         * @see Visualizer#tentative_crop_y2
+         */
+        private final int tentative_crop_y2;
+        /**
+         * @see Visualizer#sam_num_steps_x
+         */
+        private final int sam_num_steps_x;
+        /**
+         * @see Visualizer#sam_num_steps_y
+         */
+        private final int sam_num_steps_y;
+        /**
+         * @see Visualizer#sam_start_x
+         */
+        private final int sam_start_x;
+        /**
+         * @see Visualizer#sam_start_y
+         */
+        private final int sam_start_y;
+        /**
+         * @see Visualizer#sam_step_size_x
+         */
+        private final int sam_step_size_x;
+        /**
+         * @see Visualizer#sam_step_size_y
+         */
+        private final int sam_step_size_y;
+        /**
+         * A copy of {@link Visualizer#switches}.
+         */
+        private final BitGrid switches;
+        /**
+         * The scale of the uncropped SECM image on the panel in pixels per metre.
+         * @see Visualizer#working_scale
+         */
+        private final double working_scale;
+        /**
+         * Whether the SEM layer should be drawn as a reduced resolution preview because the SEM image is being dragged.
+         */
+        private final boolean preview;
+    }
+    
+    /**
+     * Draws frames of the visualizer on a background thread so that the event dispatch thread never waits for a frame.
+     * <p>Requests are coalesced: if several arrive while a frame is being drawn, only the last is drawn and the ones it supersedes are dropped. 
+     * Each finished frame is handed to the event dispatch thread, which shows it in {@link Visualizer#paint(java.awt.Graphics)}.
+     * The cached layers (see {@link #getLayer(ViewState, int)}) are only touched by the rendering thread.</p>
+     */
+    private final class Renderer implements Runnable{
+        
+        /**
+         * Asks for a frame to be drawn, replacing any request that has not been started yet.
+         * @param state The snapshot to draw.
+         * @param dirty The layers that have changed since the last request, as a combination of the <code>LAYER_</code> flags. 
+         * The layers of a dropped request are kept so that they are redrawn with the next one.
+         * @param cells The block of grid-sections whose switches have changed since the last request, or <code>null</code>. 
+         * Blocks of dropped requests are merged into the next one.
+         */
+        private synchronized void request(ViewState state, int dirty, int[] cells){
+            pending = state;
+            pending_dirty |= dirty;
+            pending_cells = unionCells(pending_cells, cells);
+            notifyAll();
+        }
+        
+        /**
+         * Draws the requested frames one at a time, always drawing the latest request.
+         */
+        @Override
+        public void run(){
+            while(true){
+                ViewState state;
+                int dirty;
+                int[] cells;
+                synchronized(this){
+                    while(pending == null){
+                        try{
+                            wait();
+                        }
+                        catch(InterruptedException e){
+                            return;
+                        }
+                    }
+                    state = pending;
+                    dirty = pending_dirty;
+                    cells = pending_cells;
+                    pending = null;
+                    pending_dirty = 0;
+                    pending_cells = null;
+                }
+                if(state.width < 1 || state.height < 1){
+                    continue;
+                }
+                try{
+                    Image finished = render(state, dirty, cells);
+                    Rectangle area = frame_area;
+                    SwingUtilities.invokeLater(() -> {
+                        base_image = finished;
+                        if(area == null){
+                            repaint();
+                        }
+                        else if(!area.isEmpty()){
+                            repaint(area.x, area.y, area.width, area.height);
+                        }
+                    });
+                }
+                catch(RuntimeException e){
+                    e.printStackTrace();
+                }
+            }
+        }
+        
+        /**
+         * Draws a frame, redrawing only the layers that are dirty.
+         * Changing the render mode or the size of the panel redraws every layer, and starting or finishing a preview redraws the SEM layer.
+         * <p>When nothing but a block of grid-sections has changed since the last frame of the reactivity or sampling modes, 
+         * only those grid-sections are redrawn and composited, onto a copy of the last frame. {@link #frame_area} is set to the part of the panel that changed.</p>
+         * @param state The snapshot to draw.
+         * @param dirty The layers that have changed since the last frame.
+         * @param cells The block of grid-sections that have changed since the last frame, or <code>null</code>.
+         * @return the frame.
+         */
+        private Image render(ViewState state, int dirty, int[] cells){
+            dirty_layers |= dirty;
+            if(state.render_mode != layer_mode || state.width != layer_width || state.height != layer_height){
+                layer_mode = state.render_mode;
+                layer_width = state.width;
+                layer_height = state.height;
+                dirty_layers = ALL_LAYERS;
+            }
+            if(state.preview != layer_preview){
+                layer_preview = state.preview;
+                dirty_layers |= LAYER_SEM;
+            }
+            frame_area = null;
+            if(cells != null){
+                if(canRedrawCells(state)){
+                    frame_area = state.redrawSelection(layers[Integer.numberOfTrailingZeros(LAYER_SELECTION)], cells);
+                    if(frame_area.isEmpty()){
+                        return frame;
+                    }
+                    return composeReactivity(state, state.render_mode == SAMPLING_MODE, frame_area);
+                }
+                dirty_layers |= LAYER_SELECTION;
+            }
+            frame = null;
+            switch (state.render_mode) {
+                case SEM_MODE://draw SECM and SEM
+                    if(state.secm_image.isDisplayable()){
+                        if(state.sem_image.isDisplayable()){
+                            return composeSEM(state);
+                        }
+                        return getLayer(state, LAYER_SECM);
+                    }
+                    return state.defaultImage();
+                case REACTIVITY_MODE://draw reactivity
+                    if(state.secm_image.isDisplayable()){
+                        return composeReactivity(state, false, null);
+                    }
+                    return state.defaultImage();
+                case SAMPLING_MODE://draw sampling
+                    if(state.secm_image.isDisplayable()){
+                        return composeReactivity(state, true, null);
+                    }
+                    return state.defaultImage();
+                default: //just draw SECM
+                    if(state.secm_image.isDisplayable()){
+                        return getLayer(state, LAYER_SECM);
+                    }
+                    return state.defaultImage();
+            }
+        }
+        
+        /**
+         * Determines whether a frame can be made by redrawing a block of grid-sections over the last frame.
+         * That is the case when the last frame was of the same reactivity or sampling view, none of the layers it was composited from is dirty 
+         * and nothing that changes how the layers are composited has changed.
+         * @param state The snapshot to draw.
+         * @return <code>true</code> if only the changed grid-sections need to be redrawn.
+         */
+        private boolean canRedrawCells(ViewState state){
+            int used = LAYER_SECM | LAYER_SELECTION;
+            if(state.sem_image.isDisplayable()){
+                used |= LAYER_SEM;
+            }
+            if(state.reac_grid){
+                used |= LAYER_GRID;
+            }
+            if(state.render_mode == SAMPLING_MODE){
+                used |= LAYER_SAMPLING;
+            }
+            return frame != null && (dirty_layers & used) == 0
+                    && (state.render_mode == REACTIVITY_MODE || state.render_mode == SAMPLING_MODE)
+                    && !state.crop_in_progress && !frame_state.crop_in_progress
+                    && state.reac_grid == frame_state.reac_grid
+                    && state.reac_sem_transparency == frame_state.reac_sem_transparency
+                    && state.reac_selection_transparency == frame_state.reac_selection_transparency;
+        }
+        
+        /**
+         * Returns a layer of the render mode of a snapshot, redrawing it from the snapshot first if it is dirty.
+         * <p>Every layer is the size of the panel. The SECM layer is opaque; the other layers are transparent wherever they have nothing to show 
+         * and are drawn at full opacity, with their transparency applied when they are composited.</p>
+         * @param state The snapshot to draw the layer from.
+         * @param layer One of {@link #LAYER_SECM}, {@link #LAYER_SEM}, {@link #LAYER_SELECTION}, {@link #LAYER_GRID} or {@link #LAYER_SAMPLING}.
+         * @return The cached image of the layer. It must not be drawn onto.
+         */
+        private BufferedImage getLayer(ViewState state, int layer){
+            int index = Integer.numberOfTrailingZeros(layer);
+            if(layers[index] == null || (dirty_layers & layer) != 0){
+                boolean cropped = state.render_mode == REACTIVITY_MODE || state.render_mode == SAMPLING_MODE;
+                switch (layer) {
+                    case LAYER_SECM:
+                        layers[index] = cropped ? state.drawReactivitySECM() : state.drawSECM();
+                        break;
+                    case LAYER_SEM:
+                        layers[index] = cropped ? state.drawReactivitySEM() : state.drawSEMLayer(state.preview ? PREVIEW_REDUCTION : 1, true);
+                        break;
+                    case LAYER_SELECTION:
+                        layers[index] = state.drawSelection();
+                        break;
+                    case LAYER_GRID:
+                        layers[index] = state.drawGrid();
+                        break;
+                    default:
+                        layers[index] = state.drawSamplingLayer();
+                        break;
+                }
+                dirty_layers &= ~layer;
+            }
+            return layers[index];
+        }
+    
+        /**
+         * Composites the SEM image with the set transparency over the SECM image.
+         * When the SEM image is opaque it is drawn over the background instead, as in {@link ViewState#drawSEM(float, boolean)}.
+         * @param state The snapshot to draw.
+         * @return a new image of the SEM mode.
+         */
+        private BufferedImage composeSEM(ViewState state){
+            BufferedImage sem = state.sem_transparency < 1.0f ? ViewState.copyImage(getLayer(state, LAYER_SECM)) : state.defaultImage();
+            ViewState.overlay(sem, getLayer(state, LAYER_SEM), state.sem_transparency);
+            return sem;
+        }
+    
+        /**
+         * Composites the reactivity selection with the set transparency over the SEM image with the set transparency over the cropped SECM image.
+         * The grid (if enabled) and the selection box when the crop tool is in use are drawn on top.
+         * @param state The snapshot to draw.
+         * @param sampling If <code>true</code>, the grid-sections that will be sampled are shaded orange on top of everything else.
+         * @param area The part of the panel to composite onto a copy of the last frame, or <code>null</code> to composite the whole panel.
+         * @return a new image of the reactivity or sampling mode.
+         */
+        private BufferedImage composeReactivity(ViewState state, boolean sampling, Rectangle area){
+            BufferedImage reac;
+            if(area == null){
+                reac = ViewState.copyImage(getLayer(state, LAYER_SECM));
+            }
+            else{
+                reac = ViewState.copyImage(frame);
+                ViewState.copyArea(getLayer(state, LAYER_SECM), reac, area);
+            }
+            if(state.sem_image.isDisplayable()){
+                ViewState.overlay(reac, getLayer(state, LAYER_SEM), state.reac_sem_transparency, area);
+            }
+            ViewState.overlay(reac, getLayer(state, LAYER_SELECTION), state.reac_selection_transparency, area);
+            if(state.reac_grid){
+                ViewState.overlay(reac, getLayer(state, LAYER_GRID), state.reac_selection_transparency, area);
+            }
+        
+            //render the selection box if a crop is in progress
+            if(state.crop_in_progress){
+                Graphics2D reac_graphics = reac.createGraphics();
+                reac_graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP,1.0f));
+                reac_graphics.setColor(ColourSettings.SELECTION_COLOUR);
+                reac_graphics.drawRect(state.tentative_crop_x1, state.tentative_crop_y1, state.tentative_crop_x2 - state.tentative_crop_x1, state.tentative_crop_y2 - state.tentative_crop_y1);
+                reac_graphics.dispose();
+            }
+            if(sampling){
+                Graphics2D sam_graphics = reac.createGraphics();
+                sam_graphics.setClip(area);
+                sam_graphics.drawImage(getLayer(state, LAYER_SAMPLING), 0, 0, null);
+                sam_graphics.dispose();
+            }
+            frame = reac;
+            frame_state = state;
+            return reac;
+        }
+    
+        /**
+         * The snapshot waiting to be drawn, or <code>null</code> if there is none.
+         */
+        private ViewState pending;
+        /**
+         * The layers that have changed in the requests since the last frame was started.
+         */
+        private int pending_dirty;
+        /**
+         * The block of grid-sections that have changed in the requests since the last frame was started, or <code>null</code>.
+         */
+        private int[] pending_cells;
+        /**
+         * The last frame of the reactivity or sampling modes, or <code>null</code> if the last frame was of another mode. It is not drawn onto once it has been handed over.
+         */
+        private BufferedImage frame;
+        /**
+         * The snapshot that {@link #frame} was drawn from.
+         */
+        private ViewState frame_state;
+        /**
+         * The part of the panel that changed in the last frame, or <code>null</code> if all of it may have.
+         */
+        private Rectangle frame_area;
+        /**
+         * The cached image of each layer, indexed by the position of the layer's bit (see {@link #getLayer(ViewState, int)}). 
+         * <code>null</code> for layers that have not been drawn.
+         */
+        private final BufferedImage[] layers = new BufferedImage[5];
+        /**
+         * The layers that must be redrawn before they are next used, as a combination of the <code>LAYER_</code> flags.
+         */
+        private int dirty_layers = ALL_LAYERS;
+        /**
+         * The render mode that the cached layers were drawn for.
+         */
+        private int layer_mode = -1;
+        /**
+         * The width of the panel when the cached layers were drawn.
+         */
+        private int layer_width;
+        /**
+         * The height of the panel when the cached layers were drawn.
+         */
+        private int layer_height;
+        /**
+         * Whether the cached SEM layer is a reduced resolution preview.
+         */
+        private boolean layer_preview;
+    }
 }
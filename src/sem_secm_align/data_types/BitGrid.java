@@ -0,0 +1,277 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.util.Arrays;
+
+/**
+ * A two-dimensional grid of bits, such as the active grid-sections of the reactivity grid.
+ * <p>The bits are packed into <code>long</code> words one row at a time: cell <code>(x, y)</code> is bit <code>x % 64</code> of word
+ * <code>y*{@link #getWordsPerRow()} + x/64</code>. The bits of the last word of each row that lie beyond the width of the grid are always 0,
+ * so whole words can be counted and combined without masking. Algorithms that work on 64 cells at a time can read and write the words directly
+ * with {@link #getWord(int, int)} and {@link #setWord(int, int, long)}.</p>
+ * @author Nathaniel
+ */
+public class BitGrid {
+
+    /**
+     * Creates a grid with every bit cleared.
+     * @param width The number of cells in x.
+     * @param height The number of cells in y.
+     */
+    public BitGrid(int width, int height){
+        if(width < 0 || height < 0){
+            throw new IllegalArgumentException("Negative grid size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        words_per_row = (width + 63) >>> 6;
+        words = new long[words_per_row*height];
+        last_word_mask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+    }
+
+    /**
+     * Creates a grid from an array of 0s and 1s.
+     * @param grid The cells indexed as <code>grid[x][y]</code>. Any non-zero value sets the bit.
+     * @return the grid.
+     */
+    public static BitGrid fromArray(int[][] grid){
+        BitGrid bits = new BitGrid(grid.length, grid.length == 0 ? 0 : grid[0].length);
+        for(int x = 0; x < bits.width; x++){
+            for(int y = 0; y < bits.height; y++){
+                if(grid[x][y] != 0){
+                    bits.set(x, y, true);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Unpacks this grid into an array of 0s and 1s.
+     * @return a new array indexed as <code>array[x][y]</code>.
+     */
+    public int[][] toArray(){
+        int[][] grid = new int[width][height];
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                grid[x][y] = get(x, y) ? 1 : 0;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Copies this grid.
+     * @return a new grid of the same size with the same bits set.
+     */
+    public BitGrid copy(){
+        BitGrid copy = new BitGrid(width, height);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    /**
+     * Returns the number of cells in x.
+     * @return the width of the grid.
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the number of cells in y.
+     * @return the height of the grid.
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of words that hold each row.
+     * @return <code>ceil(width/64)</code>.
+     */
+    public int getWordsPerRow(){
+        return words_per_row;
+    }
+
+    /**
+     * Determines whether a cell is set.
+     * @param x The x-index of the cell.
+     * @param y The y-index of the cell.
+     * @return <code>true</code> if the bit of the cell is set.
+     */
+    public boolean get(int x, int y){
+        checkIndex(x, y);
+        return (words[y*words_per_row + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets or clears a cell.
+     * @param x The x-index of the cell.
+     * @param y The y-index of the cell.
+     * @param value <code>true</code> to set the bit of the cell, <code>false</code> to clear it.
+     */
+    public void set(int x, int y, boolean value){
+        checkIndex(x, y);
+        int index = y*words_per_row + (x >>> 6);
+        if(value){
+            words[index] |= 1L << x;
+        }
+        else{
+            words[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Returns a word of a row.
+     * @param y The y-index of the row.
+     * @param word The index of the word in the row, where word <code>i</code> holds the cells <code>64*i</code> to <code>64*i + 63</code>.
+     * @return the word, with the cell of the lowest x-index in the least significant bit.
+     */
+    public long getWord(int y, int word){
+        return words[y*words_per_row + word];
+    }
+
+    /**
+     * Replaces a word of a row. Bits beyond the width of the grid are cleared.
+     * @param y The y-index of the row.
+     * @param word The index of the word in the row.
+     * @param value The new word, with the cell of the lowest x-index in the least significant bit.
+     */
+    public void setWord(int y, int word, long value){
+        if(word == words_per_row - 1){
+            value &= last_word_mask;
+        }
+        words[y*words_per_row + word] = value;
+    }
+
+    /**
+     * Counts the cells that are set.
+     * @return the number of set bits.
+     */
+    public int count(){
+        int count = 0;
+        for(long word : words){
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Clears every cell that is not set in another grid.
+     * @param other A grid of the same size.
+     */
+    public void and(BitGrid other){
+        checkSize(other);
+        for(int i = 0; i < words.length; i++){
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Sets every cell that is set in another grid.
+     * @param other A grid of the same size.
+     */
+    public void or(BitGrid other){
+        checkSize(other);
+        for(int i = 0; i < words.length; i++){
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Clears every cell that is set in another grid.
+     * @param other A grid of the same size.
+     */
+    public void andNot(BitGrid other){
+        checkSize(other);
+        for(int i = 0; i < words.length; i++){
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    /**
+     * Flips every cell.
+     */
+    public void not(){
+        for(int i = 0; i < words.length; i++){
+            words[i] = ~words[i];
+        }
+        if(last_word_mask != -1L){
+            for(int i = words_per_row - 1; i < words.length; i += words_per_row){
+                words[i] &= last_word_mask;
+            }
+        }
+    }
+
+    /**
+     * Determines whether another object is a grid of the same size with the same cells set.
+     * @param o The object to compare to.
+     * @return <code>true</code> if the grids are equal.
+     */
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof BitGrid)){
+            return false;
+        }
+        BitGrid other = (BitGrid)o;
+        return width == other.width && height == other.height && Arrays.equals(words, other.words);
+    }
+
+    /**
+     * Computes a hash code consistent with {@link #equals(java.lang.Object)}.
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode(){
+        return 31*(31*width + height) + Arrays.hashCode(words);
+    }
+
+    /**
+     * Checks that a cell lies inside the grid.
+     * @param x The x-index of the cell.
+     * @param y The y-index of the cell.
+     * @throws IndexOutOfBoundsException If the cell is outside the grid.
+     */
+    private void checkIndex(int x, int y){
+        if(x < 0 || y < 0 || x >= width || y >= height){
+            throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside a " + width + "x" + height + " grid");
+        }
+    }
+
+    /**
+     * Checks that another grid is the same size as this one.
+     * @param other The other grid.
+     * @throws IllegalArgumentException If the sizes differ.
+     */
+    private void checkSize(BitGrid other){
+        if(width != other.width || height != other.height){
+            throw new IllegalArgumentException("Grid sizes differ: " + width + "x" + height + " and " + other.width + "x" + other.height);
+        }
+    }
+
+    /**
+     * The number of cells in x.
+     */
+    private final int width;
+    /**
+     * The number of cells in y.
+     */
+    private final int height;
+    /**
+     * The number of words that hold each row.
+     */
+    private final int words_per_row;
+    /**
+     * The bits of the grid, one row after another.
+     */
+    private final long[] words;
+    /**
+     * The bits of the last word of each row that lie inside the grid.
+     */
+    private final long last_word_mask;
+}
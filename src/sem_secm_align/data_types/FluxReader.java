@@ -0,0 +1,504 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads SECM data files created by Flux: https://github.com/LaboratoryForBioelectrochemicalImaging/fluxproject
+ * <p>The file is mapped into memory with a {@link FileChannel} and the comma-separated <code>x,y,current</code> fields are parsed straight from the bytes,
+ * so no {@link String} is created for a line unless a number falls outside of the fast parsing path.</p>
+ * <p>Lines beginning with <code>#</code> and blank lines are ignored. Fields after the third on a line are ignored.</p>
+ * <p>Large files are split into line-aligned chunks that are parsed in parallel.</p>
+ * @author Nathaniel
+ */
+public class FluxReader {
+
+    /**
+     * Creates a reader over a region of a mapped file.
+     * @param buffer the bytes of the region.
+     * @param region_offset the position in the file of the first byte of <code>buffer</code>. Used for error messages.
+     */
+    private FluxReader(ByteBuffer buffer, long region_offset){
+        this.buffer = buffer;
+        this.region_offset = region_offset;
+        position = 0;
+        limit = buffer.limit();
+    }
+
+    /**
+     * Reads every point in a Flux file.
+     * Files of at least {@link #PARALLEL_THRESHOLD} bytes are parsed in parallel when more than one processor is available.
+     * @param filepath The path to the file.
+     * @return The points in the order they appear in the file.
+     * @throws IOException If the file is not found or cannot be read.
+     * @throws ImproperFileFormattingException If a line cannot be parsed.
+     * @see #read(java.lang.String, boolean) 
+     */
+    public static SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException{
+        boolean parallel = Runtime.getRuntime().availableProcessors() > 1 && Files.size(Paths.get(filepath)) >= PARALLEL_THRESHOLD;
+        return read(filepath, parallel);
+    }
+
+    /**
+     * Reads every point in a Flux file.
+     * @param filepath The path to the file.
+     * @param parallel If <code>true</code> the file is split into line-aligned chunks which are parsed on the common {@link ForkJoinPool}.
+     * The result is the same as for a sequential read: the points are in file order and the first malformed line in the file is reported.
+     * @return The points in the order they appear in the file.
+     * @throws IOException If the file is not found or cannot be read.
+     * @throws ImproperFileFormattingException If a line cannot be parsed.
+     */
+    public static SECMPoints read(String filepath, boolean parallel) throws IOException, ImproperFileFormattingException{
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)){
+            long size = channel.size();
+            long chunk_size = MAX_REGION_SIZE;
+            if(parallel){
+                long chunks = (long)ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+                chunk_size = Math.min(MAX_REGION_SIZE, Math.max(MIN_CHUNK_SIZE, size / chunks + 1));
+            }
+            //split the file into regions that start and end on line boundaries
+            ArrayList<Long> boundaries = new ArrayList<>();
+            long start = 0;
+            boundaries.add(start);
+            while(start < size){
+                start = lineAlignedEnd(channel, start, Math.min(size, start + chunk_size), size);
+                boundaries.add(start);
+            }
+            if(!parallel || boundaries.size() <= 2){
+                SECMPoints points = new SECMPoints((int)Math.min(size / ESTIMATED_BYTES_PER_LINE + 1, Integer.MAX_VALUE - 8));
+                for(int i = 1; i < boundaries.size(); i++){
+                    parseRegion(channel, boundaries.get(i - 1), boundaries.get(i), points);
+                }
+                return points;
+            }
+            ChunkTask[] tasks = new ChunkTask[boundaries.size() - 1];
+            for(int i = 0; i < tasks.length; i++){
+                tasks[i] = new ChunkTask(channel, boundaries.get(i), boundaries.get(i + 1));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            //merge the chunks in file order
+            long total = 0;
+            for(ChunkTask task : tasks){
+                if(task.io_failure != null){
+                    throw task.io_failure;
+                }
+                if(task.formatting_failure != null){
+                    throw task.formatting_failure;
+                }
+                total += task.points.size();
+            }
+            SECMPoints points = new SECMPoints((int)Math.min(total, Integer.MAX_VALUE - 8));
+            for(ChunkTask task : tasks){
+                points.addAll(task.points);
+                task.points = null;
+            }
+            return points;
+        }
+    }
+
+    /**
+     * Finds the end of a region of the file such that the region finishes at the end of a line.
+     * @param channel The open file.
+     * @param start The position of the first byte of the region.
+     * @param tentative_end The position at which the region would ideally end.
+     * @param size The size of the file.
+     * @return The position just after the last line feed at or before <code>tentative_end</code>, or <code>size</code> if <code>tentative_end</code> is the end of the file.
+     * @throws IOException If the file cannot be read.
+     * @throws ImproperFileFormattingException If there is no line feed between <code>start</code> and <code>tentative_end</code>.
+     */
+    static long lineAlignedEnd(FileChannel channel, long start, long tentative_end, long size) throws IOException, ImproperFileFormattingException{
+        if(tentative_end >= size){
+            return size;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long probe_end = tentative_end;
+        while(probe_end > start){
+            long probe_start = Math.max(start, probe_end - PROBE_SIZE);
+            probe.clear();
+            probe.limit((int)(probe_end - probe_start));
+            while(probe.hasRemaining()){
+                if(channel.read(probe, probe_start + probe.position()) < 0){
+                    break;
+                }
+            }
+            for(int i = probe.position() - 1; i >= 0; i--){
+                if(probe.get(i) == '\n'){
+                    return probe_start + i + 1;
+                }
+            }
+            probe_end = probe_start;
+        }
+        throw new ImproperFileFormattingException("A line starting at byte " + start + " is too long to be read.");
+    }
+
+    /**
+     * Maps a region of the file and parses the points within it.
+     * @param channel The open file.
+     * @param start The position of the first byte of the region. This must be the start of a line.
+     * @param end The position just after the last byte of the region. This must be the end of a line or of the file.
+     * @param points The buffer to which the points are added.
+     * @throws IOException If the file cannot be read.
+     * @throws ImproperFileFormattingException If a line cannot be parsed.
+     */
+    static void parseRegion(FileChannel channel, long start, long end, SECMPoints points) throws IOException, ImproperFileFormattingException{
+        if(end <= start){
+            return;
+        }
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        FluxReader reader = new FluxReader(mapped, start);
+        if(start == 0){
+            reader.skipByteOrderMark();
+        }
+        reader.parseLines(points);
+    }
+
+    /**
+     * Skips the UTF-8 byte order mark if the buffer starts with one.
+     */
+    private void skipByteOrderMark(){
+        if(limit >= 3 && buffer.get(0) == (byte)0xEF && buffer.get(1) == (byte)0xBB && buffer.get(2) == (byte)0xBF){
+            position = 3;
+        }
+    }
+
+    /**
+     * Parses every line from the current position to the end of the buffer.
+     * @param points The buffer to which the points are added.
+     * @throws ImproperFileFormattingException If a line cannot be parsed.
+     */
+    private void parseLines(SECMPoints points) throws ImproperFileFormattingException{
+        while(position < limit){
+            int line_start = position;
+            byte first = buffer.get(position);
+            if(first == '#'){//ignore "comment" lines
+                skipLine();
+                continue;
+            }
+            skipSpaces();
+            if(position >= limit || isLineEnd(buffer.get(position))){//ignore blank lines
+                skipLine();
+                continue;
+            }
+            double x = parseField(line_start);//read in the X-coordinate
+            expectComma(line_start);
+            double y = parseField(line_start);//read in the Y-coordinate
+            expectComma(line_start);
+            double cur = parseField(line_start);//read in the current
+            if(position < limit && buffer.get(position) != ',' && !isLineEnd(buffer.get(position))){
+                throw formattingError(line_start);
+            }
+            skipLine();
+            points.add(x, y, cur);
+        }
+    }
+
+    /**
+     * Parses a single number, skipping any spaces or tabs around it.
+     * Uses an exact fast path for numbers whose significant digits fit in a <code>double</code> mantissa and whose decimal exponent is small, and
+     * falls back to {@link Double#parseDouble(String)} otherwise, so results are always identical to {@link Double#parseDouble(String)}.
+     * @param line_start The position of the start of the current line. Used for error messages.
+     * @return The parsed number.
+     * @throws ImproperFileFormattingException If the field is not a number.
+     */
+    private double parseField(int line_start) throws ImproperFileFormattingException{
+        skipSpaces();
+        int field_start = position;
+        int p = position;
+        boolean negative = false;
+        if(p < limit && (buffer.get(p) == '-' || buffer.get(p) == '+')){
+            negative = buffer.get(p) == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int significant_digits = 0;
+        int exponent = 0;
+        boolean digits_found = false;
+        boolean exact = true;
+        byte b = 0;
+        //integer part
+        while(p < limit && (b = buffer.get(p)) >= '0' && b <= '9'){
+            digits_found = true;
+            if(significant_digits < MAX_FAST_DIGITS){
+                mantissa = mantissa*10 + (b - '0');
+                if(mantissa != 0){
+                    significant_digits ++;
+                }
+            }
+            else{
+                exponent ++;
+                exact &= b == '0';
+            }
+            p++;
+        }
+        //fractional part
+        if(p < limit && buffer.get(p) == '.'){
+            p++;
+            while(p < limit && (b = buffer.get(p)) >= '0' && b <= '9'){
+                digits_found = true;
+                if(significant_digits < MAX_FAST_DIGITS){
+                    mantissa = mantissa*10 + (b - '0');
+                    exponent --;
+                    if(mantissa != 0){
+                        significant_digits ++;
+                    }
+                }
+                else{
+                    exact &= b == '0';
+                }
+                p++;
+            }
+        }
+        //exponent
+        if(digits_found && p < limit && ((b = buffer.get(p)) == 'e' || b == 'E')){
+            p++;
+            boolean negative_exponent = false;
+            if(p < limit && (buffer.get(p) == '-' || buffer.get(p) == '+')){
+                negative_exponent = buffer.get(p) == '-';
+                p++;
+            }
+            int explicit_exponent = 0;
+            boolean exponent_digits_found = false;
+            while(p < limit && (b = buffer.get(p)) >= '0' && b <= '9'){
+                exponent_digits_found = true;
+                if(explicit_exponent < 100000){
+                    explicit_exponent = explicit_exponent*10 + (b - '0');
+                }
+                p++;
+            }
+            if(!exponent_digits_found){
+                digits_found = false;
+            }
+            exponent += negative_exponent ? -explicit_exponent : explicit_exponent;
+        }
+        int field_end = p;
+        //trailing spaces
+        while(p < limit && ((b = buffer.get(p)) == ' ' || b == '\t')){
+            p++;
+        }
+        boolean terminated = p >= limit || (b = buffer.get(p)) == ',' || isLineEnd(b);
+        if(digits_found && terminated && exact && mantissa <= MAX_EXACT_MANTISSA && exponent >= -MAX_EXACT_POWER && exponent <= MAX_EXACT_POWER){
+            position = p;
+            double value = (double)mantissa;
+            if(exponent < 0){
+                value /= POWERS_OF_TEN[-exponent];
+            }
+            else{
+                value *= POWERS_OF_TEN[exponent];
+            }
+            return negative ? -value : value;
+        }
+        //slow path: anything the fast path does not handle exactly (long mantissas, large exponents, NaN, Infinity, hexadecimal...)
+        while(field_end < limit && (b = buffer.get(field_end)) != ',' && !isLineEnd(b)){
+            field_end ++;
+        }
+        byte[] field = new byte[field_end - field_start];
+        for(int i = 0; i < field.length; i++){
+            field[i] = buffer.get(field_start + i);
+        }
+        try{
+            double value = Double.parseDouble(new String(field, StandardCharsets.US_ASCII));
+            position = field_end;
+            return value;
+        }
+        catch(NumberFormatException e){
+            throw formattingError(line_start);
+        }
+    }
+
+    /**
+     * Consumes a comma separating two fields, along with any spaces or tabs before it.
+     * @param line_start The position of the start of the current line. Used for error messages.
+     * @throws ImproperFileFormattingException If the next character is not a comma.
+     */
+    private void expectComma(int line_start) throws ImproperFileFormattingException{
+        skipSpaces();
+        if(position >= limit || buffer.get(position) != ','){
+            throw formattingError(line_start);
+        }
+        position ++;
+    }
+
+    /**
+     * Advances past any spaces or tabs.
+     */
+    private void skipSpaces(){
+        byte b;
+        while(position < limit && ((b = buffer.get(position)) == ' ' || b == '\t')){
+            position ++;
+        }
+    }
+
+    /**
+     * Advances to the start of the next line.
+     */
+    private void skipLine(){
+        while(position < limit && buffer.get(position) != '\n'){
+            position ++;
+        }
+        position ++;
+    }
+
+    /**
+     * Creates an exception describing the line that could not be parsed.
+     * @param line_start The position of the start of the line in the buffer.
+     * @return An exception holding the line number and text of the offending line.
+     */
+    private ImproperFileFormattingException formattingError(int line_start){
+        int line_end = line_start;
+        while(line_end < limit && !isLineEnd(buffer.get(line_end))){
+            line_end ++;
+        }
+        byte[] line = new byte[Math.min(line_end - line_start, 200)];
+        for(int i = 0; i < line.length; i++){
+            line[i] = buffer.get(line_start + i);
+        }
+        return new ImproperFileFormattingException("Could not read the line starting at byte " + (region_offset + line_start) + ": " + new String(line, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Determines if a byte ends a line.
+     * @param b the byte.
+     * @return <code>true</code> for a carriage return or line feed.
+     */
+    private static boolean isLineEnd(byte b){
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Parses one line-aligned chunk of a file for {@link #read(java.lang.String, boolean)}.
+     * Failures are held rather than thrown so that they can be reported in file order once every chunk has finished.
+     */
+    private static class ChunkTask extends RecursiveAction{
+
+        /**
+         * Creates a task for a chunk of the file.
+         * @param channel The open file.
+         * @param start The position of the first byte of the chunk.
+         * @param end The position just after the last byte of the chunk.
+         */
+        ChunkTask(FileChannel channel, long start, long end){
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute(){
+            points = new SECMPoints((int)Math.min((end - start) / ESTIMATED_BYTES_PER_LINE + 1, Integer.MAX_VALUE - 8));
+            try{
+                parseRegion(channel, start, end, points);
+            }
+            catch(IOException e){
+                io_failure = e;
+            }
+            catch(ImproperFileFormattingException e){
+                formatting_failure = e;
+            }
+        }
+
+        /**
+         * The open file.
+         */
+        private final FileChannel channel;
+        /**
+         * The position of the first byte of the chunk.
+         */
+        private final long start;
+        /**
+         * The position just after the last byte of the chunk.
+         */
+        private final long end;
+        /**
+         * The points parsed from the chunk.
+         */
+        private SECMPoints points;
+        /**
+         * Holds the exception if the chunk could not be read.
+         */
+        private IOException io_failure;
+        /**
+         * Holds the exception if a line in the chunk could not be parsed.
+         */
+        private ImproperFileFormattingException formatting_failure;
+
+        /**
+         * Tasks are never serialized, but {@link RecursiveAction} is {@link java.io.Serializable}.
+         */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * The bytes being parsed.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The position in the file of the first byte of {@link #buffer}.
+     */
+    private final long region_offset;
+    /**
+     * The position of the next byte to be read from {@link #buffer}.
+     */
+    private int position;
+    /**
+     * The number of bytes in {@link #buffer}.
+     */
+    private final int limit;
+
+    /**
+     * The largest region of a file that is mapped at once.
+     */
+    private static final long MAX_REGION_SIZE = 1L << 30;
+    /**
+     * The size of file above which {@link #read(java.lang.String)} parses in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 16L << 20;
+    /**
+     * The smallest chunk handed to a single task when parsing in parallel.
+     */
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    /**
+     * The number of chunks per worker thread when parsing in parallel, so that uneven chunks still balance.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * The number of bytes read at a time when searching for the end of a line.
+     */
+    private static final int PROBE_SIZE = 4096;
+    /**
+     * The typical length of a line. Used to size the point buffer.
+     */
+    private static final int ESTIMATED_BYTES_PER_LINE = 40;
+    /**
+     * The number of significant digits held in the mantissa by the fast path. Any integer with this many digits fits in a <code>long</code>.
+     */
+    private static final int MAX_FAST_DIGITS = 18;
+    /**
+     * The largest mantissa that is exactly representable as a <code>double</code>.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /**
+     * The largest power of ten that is exactly representable as a <code>double</code>.
+     */
+    private static final int MAX_EXACT_POWER = 22;
+    /**
+     * Exact powers of ten from <code>1e0</code> to <code>1e22</code>.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+}
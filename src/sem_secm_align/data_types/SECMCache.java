@@ -0,0 +1,257 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary sidecar file holding an already parsed {@link SECMImage} so that the source file does not need to be parsed again.
+ * <p>The sidecar is stored next to the source file with the {@link #EXTENSION} extension appended. It holds:</p>
+ * <ul>
+ * <li>a header with a magic number, the format version and the size and modification time of the source file,</li>
+ * <li>the number of x- and y-coordinates,</li>
+ * <li>the minimum, maximum and amplitude of the current,</li>
+ * <li>the x- and y-coordinates,</li>
+ * <li>the scaled data grid, row by row.</li>
+ * </ul>
+ * <p>All values are little-endian. The cache is ignored whenever the size or modification time of the source file no longer match.</p>
+ * @author Nathaniel
+ */
+class SECMCache {
+
+    /**
+     * Creates a cache entry.
+     * @param x_coordinates The x-coordinates of the image.
+     * @param y_coordinates The y-coordinates of the image.
+     * @param current_minimum The minimum current.
+     * @param current_maximum The maximum current.
+     * @param current_amplitude The current amplitude used for scaling.
+     * @param data The scaled data grid stored row-major, with a stride equal to the number of x-coordinates.
+     */
+    SECMCache(double[] x_coordinates, double[] y_coordinates, double current_minimum, double current_maximum, double current_amplitude, double[] data){
+        this.x_coordinates = x_coordinates;
+        this.y_coordinates = y_coordinates;
+        this.current_minimum = current_minimum;
+        this.current_maximum = current_maximum;
+        this.current_amplitude = current_amplitude;
+        this.data = data;
+    }
+
+    /**
+     * Reads the cache for a source file.
+     * <p>The fixed-size header is read and checked first, so nothing more is read from a cache that is out of date. 
+     * The file is read with plain channel reads rather than mapped, since a mapping cannot be released on demand 
+     * and an open mapping stops an out of date cache from being replaced on some platforms.</p>
+     * @param source_path The path to the source SECM file.
+     * @return The cached image data, or <code>null</code> if there is no cache, if it is out of date or if it cannot be read.
+     */
+    static SECMCache read(String source_path){
+        Path source = Paths.get(source_path);
+        Path cache = cachePath(source_path);
+        if(!Files.isRegularFile(cache)){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size < HEADER_SIZE){
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer);
+            buffer.flip();
+            if(buffer.getLong() != MAGIC || buffer.getInt() != VERSION){
+                return null;
+            }
+            if(buffer.getLong() != Files.size(source) || buffer.getLong() != Files.getLastModifiedTime(source).toMillis()){
+                return null;
+            }
+            int nx = buffer.getInt();
+            int ny = buffer.getInt();
+            if(nx < 1 || ny < 1 || size != HEADER_SIZE + 8L*(nx + ny + (long)nx*ny)){
+                return null;
+            }
+            double minimum = buffer.getDouble();
+            double maximum = buffer.getDouble();
+            double amplitude = buffer.getDouble();
+            double[] xs = new double[nx];
+            double[] ys = new double[ny];
+            double[] grid = new double[nx*ny];
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readDoubles(channel, block, xs);
+            readDoubles(channel, block, ys);
+            readDoubles(channel, block, grid);
+            return new SECMCache(xs, ys, minimum, maximum, amplitude, grid);
+        }
+        catch(IOException | RuntimeException e){
+            return null;
+        }
+    }
+
+    /**
+     * Writes this cache entry next to a source file.
+     * The entry is written to a temporary file which then replaces any existing cache, so a partially written cache is never read.
+     * Failures are ignored, since the cache is only an optimisation (the source may be on read-only media, for instance).
+     * @param source_path The path to the source SECM file.
+     */
+    void write(String source_path){
+        Path source = Paths.get(source_path);
+        Path cache = cachePath(source_path);
+        Path temporary = cache.resolveSibling(cache.getFileName() + ".tmp");
+        int nx = x_coordinates.length;
+        int ny = y_coordinates.length;
+        try{
+            long source_size = Files.size(source);
+            long source_modified = Files.getLastModifiedTime(source).toMillis();
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(source_size);
+                header.putLong(source_modified);
+                header.putInt(nx);
+                header.putInt(ny);
+                header.putDouble(current_minimum);
+                header.putDouble(current_maximum);
+                header.putDouble(current_amplitude);
+                header.flip();
+                writeFully(channel, header);
+                writeFully(channel, toBytes(x_coordinates));
+                writeFully(channel, toBytes(y_coordinates));
+                writeFully(channel, toBytes(data));
+            }
+            Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException | RuntimeException e){
+            try{
+                Files.deleteIfExists(temporary);
+            }
+            catch(IOException ignored){
+
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the cache file for a source file.
+     * @param source_path The path to the source SECM file.
+     * @return The path to the cache file.
+     */
+    static Path cachePath(String source_path){
+        return Paths.get(source_path + EXTENSION);
+    }
+
+    /**
+     * Converts an array into little-endian bytes.
+     * @param values The values to be converted.
+     * @return A buffer ready to be written.
+     */
+    private static ByteBuffer toBytes(double[] values){
+        ByteBuffer bytes = ByteBuffer.allocate(8*values.length).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asDoubleBuffer().put(values);
+        return bytes;
+    }
+
+    /**
+     * Fills a buffer from the current position of a channel.
+     * @param channel The channel to be read from.
+     * @param buffer The buffer to be filled.
+     * @throws IOException If the read fails or the channel ends before the buffer is full.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer) < 0){
+                throw new EOFException("The SECM cache ended unexpectedly.");
+            }
+        }
+    }
+
+    /**
+     * Reads little-endian values from the current position of a channel.
+     * @param channel The channel to be read from.
+     * @param block A little-endian buffer, a multiple of 8 bytes long, through which the bytes are read.
+     * @param values Receives the values.
+     * @throws IOException If the read fails or the channel ends before every value is read.
+     */
+    private static void readDoubles(FileChannel channel, ByteBuffer block, double[] values) throws IOException{
+        int read = 0;
+        while(read < values.length){
+            int count = Math.min(values.length - read, block.capacity()/8);
+            block.clear();
+            block.limit(8*count);
+            readFully(channel, block);
+            block.flip();
+            block.asDoubleBuffer().get(values, read, count);
+            read += count;
+        }
+    }
+
+    /**
+     * Writes the whole of a buffer to a channel.
+     * @param channel The channel to be written to.
+     * @param buffer The bytes to be written.
+     * @throws IOException If the write fails.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * The x-coordinates of the image.
+     */
+    final double[] x_coordinates;
+    /**
+     * The y-coordinates of the image.
+     */
+    final double[] y_coordinates;
+    /**
+     * The minimum current.
+     */
+    final double current_minimum;
+    /**
+     * The maximum current.
+     */
+    final double current_maximum;
+    /**
+     * The difference between the maximum and minimum current used for scaling.
+     */
+    final double current_amplitude;
+    /**
+     * The scaled data grid stored row-major, with a stride equal to the number of x-coordinates.
+     */
+    final double[] data;
+
+    /**
+     * The extension appended to the source file's name to give the name of the cache file.
+     */
+    static final String EXTENSION = ".secmcache";
+    /**
+     * Identifies a cache file: the bytes "SECMCACH" read as a little-endian long.
+     */
+    private static final long MAGIC = 0x484341434D434553L;
+    /**
+     * The version of the cache format. Caches with a different version are ignored.
+     */
+    private static final int VERSION = 2;
+    /**
+     * The number of bytes before the coordinate arrays.
+     */
+    private static final int HEADER_SIZE = 8 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 8;
+    /**
+     * The number of bytes read from the cache at a time after the header.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+}
@@ -1,15 +1,14 @@
 /*
  * Created: 2022-03-30
- * Updated: 2022-06-23
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.data_types;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Scanner;
+import java.io.IOException;
+import java.util.Arrays;
+import sem_secm_align.data_types.loaders.SECMLoader;
+import sem_secm_align.data_types.loaders.SECMLoaders;
 import sem_secm_align.settings.Constants;
 import sem_secm_align.utility.Bicubic;
 import sem_secm_align.utility.Search;
@@ -28,34 +27,64 @@ public class SECMImage {
     @Deprecated
     public SECMImage(){
         displayable = false;
-        current_minimum = 0.0;
-        current_maximum = 1.0;
-        data = new double[][]{{0,0.25},{0.5,0.75}};
-        x_coordinates = new double[]{1,2};
-        y_coordinates = new double[]{1,2};
+        setDummyData();
     }
     
     /**
      * Loads an SECM image in from a file. If the loading fails, this instance will be initialized to the dummy SECM image from {@link SECMImage()} and {@link #isDisplayable()} will return <code>false</code>.
+     * <p>Once a file has been parsed, a binary copy is written alongside it (see {@link SECMCache}) and later loads of the same, unmodified file are read from that copy instead.</p>
      * @param filepath The path to the SECM image data.
      */
     public SECMImage(String filepath){
+        this(filepath, false);
+    }
+    
+    /**
+     * Loads an SECM image in from a file. If the loading fails, this instance will be initialized to the dummy SECM image from {@link SECMImage()} and {@link #isDisplayable()} will return <code>false</code>.
+     * <p>Once a file has been parsed, a binary copy is written alongside it (see {@link SECMCache}) and later loads of the same, unmodified file are read from that copy instead.</p>
+     * @param filepath The path to the SECM image data.
+     * @param single_precision If <code>true</code> the scaled data is held as <code>float</code> values, halving the memory used by very large images.
+     */
+    public SECMImage(String filepath, boolean single_precision){
         boolean readcorrectly;
         try {
-            readFileFlux(filepath);
+            SECMCache cache = SECMCache.read(filepath);
+            if(cache != null){
+                setCache(cache);
+            }
+            else{
+                readFile(filepath);
+                getCache().write(filepath);
+            }
+            if(single_precision){
+                toSinglePrecision();
+            }
             readcorrectly = true;
-        } catch (FileNotFoundException | ImproperFileFormattingException ex) {
+        } catch (IOException | ImproperFileFormattingException ex) {
             ex.printStackTrace();
             readcorrectly = false;
-            current_minimum = 0.0;
-            current_maximum = 1.0;
-            data = new double[][]{{0,0.25},{0.5,0.75}};
-            x_coordinates = new double[]{1,2};
-            y_coordinates = new double[]{1,2};
+            setDummyData();
         }
         displayable = readcorrectly;
     }
     
+    /**
+     * Initializes this instance to the 2x2 dummy SECM image.
+     */
+    private void setDummyData(){
+        current_minimum = 0.0;
+        current_maximum = 1.0;
+        current_amplitude = 1.0;
+        data = new double[]{0,0.5,0.25,0.75};
+        data_single = null;
+        data_view = null;
+        x_coordinates = new double[]{1,2};
+        y_coordinates = new double[]{1,2};
+        stride = 2;
+        detectUniformSpacing();
+        buildBicubicCache();
+    }
+    
     /**
      * Determines if the SECM image has all of the necessary information to be displayed.
      * @return true if the SECM image has all of the necessary information to be displayed, false if otherwise.
@@ -66,10 +95,75 @@ public class SECMImage {
     
     /**
      * Returns the scaled data for this SECM image All values will be between <code>0</code> and <code>1</code> inclusively.
-     * @return The data for the SECM image scaled from <code>0</code> to <code>1</code>.
+     * <p>The data is held internally in a flat array (see {@link #getScaledData()}). 
+     * This view is built the first time it is requested and is kept for later calls, so it should not be modified.</p>
+     * @return The data for the SECM image scaled from <code>0</code> to <code>1</code> indexed as <code>data[x][y]</code>.
      */
     public double[][] getData(){
-        return data;
+        double[][] view = data_view;
+        if(view == null){
+            view = new double[x_coordinates.length][y_coordinates.length];
+            for(int y = 0; y < y_coordinates.length; y++){
+                for(int x = 0; x < x_coordinates.length; x++){
+                    view[x][y] = value(x, y);
+                }
+            }
+            data_view = view;
+        }
+        return view;
+    }
+    
+    /**
+     * Returns a copy of the scaled data for this SECM image as a single row-major array. 
+     * The value at the <code>x</code><sup>th</sup> x-coordinate and <code>y</code><sup>th</sup> y-coordinate is at index <code>y*{@link #getXCount()} + x</code>.
+     * @return The data for the SECM image scaled from <code>0</code> to <code>1</code>.
+     */
+    public double[] getScaledData(){
+        if(data != null){
+            return data.clone();
+        }
+        double[] copy = new double[data_single.length];
+        for(int i = 0; i < copy.length; i++){
+            copy[i] = data_single[i];
+        }
+        return copy;
+    }
+    
+    /**
+     * Returns the number of distinct x-coordinates in this image. This is also the stride of a row in {@link #getScaledData()}.
+     * @return the number of x-coordinates.
+     */
+    public int getXCount(){
+        return x_coordinates.length;
+    }
+    
+    /**
+     * Returns the number of distinct y-coordinates in this image.
+     * @return the number of y-coordinates.
+     */
+    public int getYCount(){
+        return y_coordinates.length;
+    }
+    
+    /**
+     * Determines if this image holds its data as <code>float</code> values.
+     * @return <code>true</code> if the data is held in single precision.
+     */
+    public boolean isSinglePrecision(){
+        return data == null;
+    }
+    
+    /**
+     * Fetches a single value from the scaled data.
+     * @param x_index The index of the x-coordinate.
+     * @param y_index The index of the y-coordinate.
+     * @return The scaled current at <code>(x_coordinates[x_index], y_coordinates[y_index])</code>.
+     */
+    private double value(int x_index, int y_index){
+        if(data != null){
+            return data[y_index*stride + x_index];
+        }
+        return data_single[y_index*stride + x_index];
     }
     
     /**
@@ -105,49 +199,157 @@ public class SECMImage {
     }
     
     /**
-     * Uses nearest-neighbor interpolation to evaluate the current at a given <code>(x,y)</code>.
-     * @param x The x-coordinate of interest
-     * @param y The y-coordinate of interest
-     * @return The scaled current at <code>(x,y)</code> according to nearest-neighbor interpolation. Value will be between 0 and 1 inclusively.
+     * Finds the index of the largest x-coordinate that is strictly less than <code>x</code>.
+     * Equivalent to {@link Search#FindSmaller(double, double[])} on the x-coordinates, but computed arithmetically when the x-coordinates are uniformly spaced.
+     * @param x The x-coordinate of interest.
+     * @return -1 if all x-coordinates are greater than or equal to <code>x</code>. Otherwise the highest index for which <code>x_coordinates[index] &lt; x</code>.
      */
-    private double getScaledCurrentNN(double x, double y){
-        //find bounds
-        int x_lower = Search.FindSmaller(x, x_coordinates);
-        int x_upper = x_lower + 1;
-        int y_lower = Search.FindSmaller(y, y_coordinates);
-        int y_upper = y_lower + 1;
-        
-        int x_index;
-        int y_index;
-        //find x-index
-        if(x_lower == -1){
-            x_index = 0;
+    private int findSmallerX(double x){
+        if(x_uniform){
+            return findSmallerUniform(x, x_coordinates, x_inverse_step);
+        }
+        return Search.FindSmaller(x, x_coordinates);
+    }
+    
+    /**
+     * Finds the index of the largest y-coordinate that is strictly less than <code>y</code>.
+     * Equivalent to {@link Search#FindSmaller(double, double[])} on the y-coordinates, but computed arithmetically when the y-coordinates are uniformly spaced.
+     * @param y The y-coordinate of interest.
+     * @return -1 if all y-coordinates are greater than or equal to <code>y</code>. Otherwise the highest index for which <code>y_coordinates[index] &lt; y</code>.
+     */
+    private int findSmallerY(double y){
+        if(y_uniform){
+            return findSmallerUniform(y, y_coordinates, y_inverse_step);
         }
-        else if(x_lower == x_coordinates.length - 1){
-            x_index = x_coordinates.length - 1;
+        return Search.FindSmaller(y, y_coordinates);
+    }
+    
+    /**
+     * Computes the index of the largest coordinate that is strictly less than <code>key</code> for uniformly spaced coordinates.
+     * The index is estimated from the spacing and then corrected against the actual coordinates, so the result always matches {@link Search#FindSmaller(double, double[])}.
+     * @param key The coordinate of interest.
+     * @param coordinates The uniformly spaced coordinates sorted from lowest to highest.
+     * @param inverse_step The reciprocal of the spacing between coordinates.
+     * @return -1 if all coordinates are greater than or equal to <code>key</code>. Otherwise the highest index for which <code>coordinates[index] &lt; key</code>.
+     */
+    private static int findSmallerUniform(double key, double[] coordinates, double inverse_step){
+        if(Double.isNaN(key)){
+            return Search.FindSmaller(key, coordinates);
+        }
+        int last = coordinates.length - 1;
+        double estimate = Math.ceil((key - coordinates[0])*inverse_step) - 1.0;
+        int index;
+        if(estimate < -1.0){
+            index = -1;
         }
-        else if(Math.abs(x - x_coordinates[x_lower]) < Math.abs(x - x_coordinates[x_upper])){
-            x_index = x_lower;
+        else if(estimate > last){
+            index = last;
         }
         else{
-            x_index = x_upper;
+            index = (int)estimate;
         }
-        
-        //find y-index
-        if(y_lower == -1){
-            y_index = 0;
+        //correct for rounding and for small deviations from uniform spacing
+        while(index < last && coordinates[index + 1] < key){
+            index ++;
+        }
+        while(index >= 0 && coordinates[index] >= key){
+            index --;
+        }
+        return index;
+    }
+    
+    /**
+     * Finds the index of the largest coordinate that is strictly less than each of a list of keys.
+     * Uniformly spaced coordinates are handled arithmetically. Otherwise a {@link Search.Cursor} is used, 
+     * which is close to constant time per key when the keys are in order, as they are for the rows and columns of a rendered image.
+     * @param keys The coordinates of interest.
+     * @param coordinates The coordinates sorted from lowest to highest.
+     * @param uniform Whether the coordinates are uniformly spaced.
+     * @param inverse_step The reciprocal of the spacing between coordinates if they are uniformly spaced.
+     * @return The result of {@link Search#FindSmaller(double, double[])} for each key.
+     */
+    private static int[] findSmallerAll(double[] keys, double[] coordinates, boolean uniform, double inverse_step){
+        int[] indices = new int[keys.length];
+        if(uniform){
+            for(int i = 0; i < keys.length; i++){
+                indices[i] = findSmallerUniform(keys[i], coordinates, inverse_step);
+            }
         }
-        else if(y_lower == y_coordinates.length - 1){
-            y_index = y_coordinates.length - 1;
+        else{
+            Search.Cursor cursor = new Search.Cursor(coordinates);
+            for(int i = 0; i < keys.length; i++){
+                indices[i] = cursor.findSmaller(keys[i]);
+            }
         }
-        else if(Math.abs(y - y_coordinates[y_lower]) < Math.abs(y - y_coordinates[y_upper])){
-            y_index = y_lower;
+        return indices;
+    }
+    
+    /**
+     * Determines whether the x- and y-coordinates are uniformly spaced and, if so, records their spacing so that {@link #findSmallerX(double)} and {@link #findSmallerY(double)} can avoid searching.
+     * Coordinates are considered uniform if every coordinate lies within {@link Constants#RELATIVE_ERR_CUTOFF} of a spacing of its ideal position.
+     */
+    private void detectUniformSpacing(){
+        x_inverse_step = inverseUniformStep(x_coordinates);
+        x_uniform = x_inverse_step > 0;
+        y_inverse_step = inverseUniformStep(y_coordinates);
+        y_uniform = y_inverse_step > 0;
+    }
+    
+    /**
+     * Computes the reciprocal of the spacing of uniformly spaced coordinates.
+     * @param coordinates The coordinates sorted from lowest to highest.
+     * @return The reciprocal of the spacing, or <code>0</code> if the coordinates are not uniformly spaced.
+     */
+    private static double inverseUniformStep(double[] coordinates){
+        int n = coordinates.length;
+        if(n < 2){
+            return 0;
+        }
+        double step = (coordinates[n - 1] - coordinates[0])/(n - 1);
+        if(!(step > 0) || !Double.isFinite(step)){
+            return 0;
+        }
+        double tolerance = step*Constants.RELATIVE_ERR_CUTOFF;
+        for(int i = 1; i < n - 1; i++){
+            if(Math.abs(coordinates[i] - coordinates[0] - i*step) > tolerance){
+                return 0;
+            }
+        }
+        return 1.0/step;
+    }
+    
+    /**
+     * Uses nearest-neighbor interpolation to evaluate the current at a given <code>(x,y)</code>.
+     * @param x The x-coordinate of interest
+     * @param y The y-coordinate of interest
+     * @return The scaled current at <code>(x,y)</code> according to nearest-neighbor interpolation. Value will be between 0 and 1 inclusively.
+     */
+    private double getScaledCurrentNN(double x, double y){
+        int x_index = nearestNode(x, findSmallerX(x), x_coordinates);
+        int y_index = nearestNode(y, findSmallerY(y), y_coordinates);
+        return value(x_index, y_index);
+    }
+    
+    /**
+     * Finds the coordinate nearest to <code>key</code>, given the index of the largest coordinate less than <code>key</code>.
+     * @param key The coordinate of interest.
+     * @param lower The index of the largest coordinate that is strictly less than <code>key</code>, or -1 if there is none.
+     * @param coordinates The coordinates sorted from lowest to highest.
+     * @return The index of the nearest coordinate. Ties go to the upper coordinate.
+     */
+    private static int nearestNode(double key, int lower, double[] coordinates){
+        if(lower == -1){
+            return 0;
+        }
+        else if(lower == coordinates.length - 1){
+            return coordinates.length - 1;
+        }
+        else if(Math.abs(key - coordinates[lower]) < Math.abs(key - coordinates[lower + 1])){
+            return lower;
         }
         else{
-            y_index = y_upper;
+            return lower + 1;
         }
-        
-        return data[x_index][y_index];
     }
     
     /**
@@ -158,9 +360,9 @@ public class SECMImage {
      */
     private double getScaledCurrentBilinear(double x, double y){
         //find bounds
-        int x_lower = Search.FindSmaller(x, x_coordinates);
+        int x_lower = findSmallerX(x);
         int x_upper = x_lower + 1;
-        int y_lower = Search.FindSmaller(y, y_coordinates);
+        int y_lower = findSmallerY(y);
         int y_upper = y_lower + 1;
         
         //limit bounds
@@ -177,9 +379,23 @@ public class SECMImage {
             y_upper = y_coordinates.length - 1;
         }
         
+        return bilinear(x, x_lower, x_upper, y, y_lower, y_upper);
+    }
+    
+    /**
+     * Interpolates bilinearly between the data at two x-indices and two y-indices.
+     * @param x The x-coordinate of interest
+     * @param x_lower The index of the lower x-node.
+     * @param x_upper The index of the upper x-node. Equal to <code>x_lower</code> if <code>x</code> lies outside of the data.
+     * @param y The y-coordinate of interest
+     * @param y_lower The index of the lower y-node.
+     * @param y_upper The index of the upper y-node. Equal to <code>y_lower</code> if <code>y</code> lies outside of the data.
+     * @return The scaled current at <code>(x,y)</code> according to bilinear interpolation.
+     */
+    private double bilinear(double x, int x_lower, int x_upper, double y, int y_lower, int y_upper){
         //begin finding the current along x at y_lower
-        double current_x_lower = data[x_lower][y_lower];
-        double current_x_upper = data[x_upper][y_lower];
+        double current_x_lower = value(x_lower, y_lower);
+        double current_x_upper = value(x_upper, y_lower);
         double slope;
         if(x_upper != x_lower){
             slope = (current_x_upper - current_x_lower)/(x_coordinates[x_upper] - x_coordinates[x_lower]);
@@ -190,8 +406,8 @@ public class SECMImage {
         double current_y_lower = slope*(x - x_coordinates[x_lower]) + current_x_lower;
         //if necessary find current along y_upper
         if(y_upper != y_lower){
-            current_x_lower = data[x_lower][y_upper];
-            current_x_upper = data[x_upper][y_upper];
+            current_x_lower = value(x_lower, y_upper);
+            current_x_upper = value(x_upper, y_upper);
             if(x_upper != x_lower){
                 slope = (current_x_upper - current_x_lower)/(x_coordinates[x_upper] - x_coordinates[x_lower]);
             }
@@ -210,6 +426,8 @@ public class SECMImage {
     
     /**
      * Uses bicubic interpolation to evaluate the current at a given <code>(x,y)</code>.
+     * The interpolation matrices for every cell are computed once per image (see {@link #buildBicubicCache()}), 
+     * so a lookup only has to find the cell and evaluate a 16-term weighted sum.
      * @param x The x-coordinate of interest
      * @param y The y-coordinate of interest
      * @return The scaled current at <code>(x,y)</code> according to bicubic interpolation. Value will be between 0 and 1 inclusively.
@@ -219,156 +437,157 @@ public class SECMImage {
         if(x_coordinates.length < 5 || y_coordinates.length < 5){
             throw new BadDomainSizeException("Insufficient data for bicubic interpolation.");
         }
-        //find bounds
-        int x_index_l = Search.FindSmaller(x, x_coordinates);
-        int x_index_ll = x_index_l - 1;
-        int x_index_u = x_index_l + 1;
-        int x_index_uu = x_index_l + 2;
-        int y_index_l = Search.FindSmaller(y, y_coordinates);
-        int y_index_ll = y_index_l - 1;
-        int y_index_u = y_index_l + 1;
-        int y_index_uu = y_index_l + 2;
-        
-        //handle out of bounds coordinates
-        double x_ll;
-        double x_l;
-        double x_u;
-        double x_uu;
-        double y_ll;
-        double y_l;
-        double y_u;
-        double y_uu;
-        
-        if(x_index_ll >= 0 && x_index_uu < x_coordinates.length){
-            x_ll = x_coordinates[x_index_ll];
-            x_l = x_coordinates[x_index_l];
-            x_u = x_coordinates[x_index_u];
-            x_uu = x_coordinates[x_index_uu];
-        }
-        else if(x_index_l < 0){
-            x_index_l = 0;
-            x_index_ll = 0;
-            x_u = x_coordinates[x_index_u];
-            x_uu = x_coordinates[x_index_uu];
-            double diff = x_uu - x_u;
-            x_l = x_u - diff;
-            x_ll = x_l - diff;
-        }
-        else if(x_index_ll < 0){
-            x_index_ll = 0;
-            x_l = x_coordinates[x_index_l];
-            x_u = x_coordinates[x_index_u];
-            x_uu = x_coordinates[x_index_uu];
-            double diff = x_u - x_l;
-            x_ll = x_l - diff;
-        }
-        else if(x_index_u >= x_coordinates.length){
-            x_index_u = x_coordinates.length - 1;
-            x_index_uu = x_coordinates.length - 1;
-            x_ll = x_coordinates[x_index_ll];
-            x_l = x_coordinates[x_index_l];
-            double diff = x_l - x_ll;
-            x_u = x_l + diff;
-            x_uu = x_u + diff;
-        }
-        else{
-            x_index_uu = x_coordinates.length - 1;
-            x_ll = x_coordinates[x_index_ll];
-            x_l = x_coordinates[x_index_l];
-            x_u = x_coordinates[x_index_u];
-            double diff = x_u - x_l;
-            x_uu = x_u + diff;
+        int x_cell = findSmallerX(x) + 1;
+        int y_cell = findSmallerY(y) + 1;
+        int xb = 16*x_cell;
+        int yb = 16*y_cell;
+        if(Double.isNaN(bicubic_x_inverse[xb]) || Double.isNaN(bicubic_y_inverse[yb])){
+            throw new SingularMatrixException("The interpolation matrix cannot be inverted. Ensure ll, l, u, uu are all unique.");
         }
-        
-        double[][] xinv = Bicubic.cInverse(x_ll, x_l, x_u, x_uu);
-        
-        if(y_index_ll >= 0 && y_index_uu < y_coordinates.length){
-            y_ll = y_coordinates[y_index_ll];
-            y_l = y_coordinates[y_index_l];
-            y_u = y_coordinates[y_index_u];
-            y_uu = y_coordinates[y_index_uu];
-        }
-        else if(y_index_l < 0){
-            y_index_l = 0;
-            y_index_ll = 0;
-            y_u = y_coordinates[y_index_u];
-            y_uu = y_coordinates[y_index_uu];
-            double diff = y_uu - y_u;
-            y_l = y_u - diff;
-            y_ll = y_l - diff;
-        }
-        else if(y_index_ll < 0){
-            y_index_ll = 0;
-            y_l = y_coordinates[y_index_l];
-            y_u = y_coordinates[y_index_u];
-            y_uu = y_coordinates[y_index_uu];
-            double diff = y_u - y_l;
-            y_ll = y_l - diff;
-        }
-        else if(y_index_u >= y_coordinates.length){
-            y_index_u = y_coordinates.length - 1;
-            y_index_uu = y_coordinates.length - 1;
-            y_ll = y_coordinates[y_index_ll];
-            y_l = y_coordinates[y_index_l];
-            double diff = y_l - y_ll;
-            y_u = y_l + diff;
-            y_uu = y_u + diff;
+        //weights of the four x-nodes and of the four y-nodes
+        double wx0 = bicubicWeight(bicubic_x_inverse, xb, 0, x);
+        double wx1 = bicubicWeight(bicubic_x_inverse, xb, 1, x);
+        double wx2 = bicubicWeight(bicubic_x_inverse, xb, 2, x);
+        double wx3 = bicubicWeight(bicubic_x_inverse, xb, 3, x);
+        double wy0 = bicubicWeight(bicubic_y_inverse, yb, 0, y);
+        double wy1 = bicubicWeight(bicubic_y_inverse, yb, 1, y);
+        double wy2 = bicubicWeight(bicubic_y_inverse, yb, 2, y);
+        double wy3 = bicubicWeight(bicubic_y_inverse, yb, 3, y);
+        int xn = 4*x_cell;
+        int yn = 4*y_cell;
+        int x_ll = bicubic_x_indices[xn];
+        int x_l = bicubic_x_indices[xn + 1];
+        int x_u = bicubic_x_indices[xn + 2];
+        int x_uu = bicubic_x_indices[xn + 3];
+        double i_xy = 0;
+        for(int j = 0; j < 4; j++){
+            int row = bicubic_y_indices[yn + j];
+            double i_row = wx0*value(x_ll, row) + wx1*value(x_l, row) + wx2*value(x_u, row) + wx3*value(x_uu, row);
+            i_xy += (j == 0 ? wy0 : j == 1 ? wy1 : j == 2 ? wy2 : wy3)*i_row;
         }
-        else{
-            y_index_uu = y_coordinates.length - 1;
-            y_ll = y_coordinates[y_index_ll];
-            y_l = y_coordinates[y_index_l];
-            y_u = y_coordinates[y_index_u];
-            double diff = y_u - y_l;
-            y_uu = y_u + diff;
-        }
-        
-        double[][] yinv = Bicubic.cInverse(y_ll, y_l, y_u, y_uu);
-        
-        //current along x at y_uu
-        //get a*x**3 + b*x**2 + c*x + d parameters by operating xinv on the currents
-        double a = xinv[0][0]*data[x_index_ll][y_index_uu] + xinv[0][1]*data[x_index_l][y_index_uu] + xinv[0][2]*data[x_index_u][y_index_uu] + xinv[0][3]*data[x_index_uu][y_index_uu];
-        double b = xinv[1][0]*data[x_index_ll][y_index_uu] + xinv[1][1]*data[x_index_l][y_index_uu] + xinv[1][2]*data[x_index_u][y_index_uu] + xinv[1][3]*data[x_index_uu][y_index_uu];
-        double c = xinv[2][0]*data[x_index_ll][y_index_uu] + xinv[2][1]*data[x_index_l][y_index_uu] + xinv[2][2]*data[x_index_u][y_index_uu] + xinv[2][3]*data[x_index_uu][y_index_uu];
-        double d = xinv[3][0]*data[x_index_ll][y_index_uu] + xinv[3][1]*data[x_index_l][y_index_uu] + xinv[3][2]*data[x_index_u][y_index_uu] + xinv[3][3]*data[x_index_uu][y_index_uu];
-        double i_yuu = a*Math.pow(x, 3) + b*x*x + c*x + d;
-        
-        //current along x at y_u
-        //get a*x**3 + b*x**2 + c*x + d parameters by operating xinv on the currents
-        a = xinv[0][0]*data[x_index_ll][y_index_u] + xinv[0][1]*data[x_index_l][y_index_u] + xinv[0][2]*data[x_index_u][y_index_u] + xinv[0][3]*data[x_index_uu][y_index_u];
-        b = xinv[1][0]*data[x_index_ll][y_index_u] + xinv[1][1]*data[x_index_l][y_index_u] + xinv[1][2]*data[x_index_u][y_index_u] + xinv[1][3]*data[x_index_uu][y_index_u];
-        c = xinv[2][0]*data[x_index_ll][y_index_u] + xinv[2][1]*data[x_index_l][y_index_u] + xinv[2][2]*data[x_index_u][y_index_u] + xinv[2][3]*data[x_index_uu][y_index_u];
-        d = xinv[3][0]*data[x_index_ll][y_index_u] + xinv[3][1]*data[x_index_l][y_index_u] + xinv[3][2]*data[x_index_u][y_index_u] + xinv[3][3]*data[x_index_uu][y_index_u];
-        double i_yu = a*Math.pow(x, 3) + b*x*x + c*x + d;
-        
-        //current along x at y_l
-        //get a*x**3 + b*x**2 + c*x + d parameters by operating xinv on the currents
-        a = xinv[0][0]*data[x_index_ll][y_index_l] + xinv[0][1]*data[x_index_l][y_index_l] + xinv[0][2]*data[x_index_u][y_index_l] + xinv[0][3]*data[x_index_uu][y_index_l];
-        b = xinv[1][0]*data[x_index_ll][y_index_l] + xinv[1][1]*data[x_index_l][y_index_l] + xinv[1][2]*data[x_index_u][y_index_l] + xinv[1][3]*data[x_index_uu][y_index_l];
-        c = xinv[2][0]*data[x_index_ll][y_index_l] + xinv[2][1]*data[x_index_l][y_index_l] + xinv[2][2]*data[x_index_u][y_index_l] + xinv[2][3]*data[x_index_uu][y_index_l];
-        d = xinv[3][0]*data[x_index_ll][y_index_l] + xinv[3][1]*data[x_index_l][y_index_l] + xinv[3][2]*data[x_index_u][y_index_l] + xinv[3][3]*data[x_index_uu][y_index_l];
-        double i_yl = a*Math.pow(x, 3) + b*x*x + c*x + d;
-        
-        //current along x at y_l
-        //get a*x**3 + b*x**2 + c*x + d parameters by operating xinv on the currents
-        a = xinv[0][0]*data[x_index_ll][y_index_ll] + xinv[0][1]*data[x_index_l][y_index_ll] + xinv[0][2]*data[x_index_u][y_index_ll] + xinv[0][3]*data[x_index_uu][y_index_ll];
-        b = xinv[1][0]*data[x_index_ll][y_index_ll] + xinv[1][1]*data[x_index_l][y_index_ll] + xinv[1][2]*data[x_index_u][y_index_ll] + xinv[1][3]*data[x_index_uu][y_index_ll];
-        c = xinv[2][0]*data[x_index_ll][y_index_ll] + xinv[2][1]*data[x_index_l][y_index_ll] + xinv[2][2]*data[x_index_u][y_index_ll] + xinv[2][3]*data[x_index_uu][y_index_ll];
-        d = xinv[3][0]*data[x_index_ll][y_index_ll] + xinv[3][1]*data[x_index_l][y_index_ll] + xinv[3][2]*data[x_index_u][y_index_ll] + xinv[3][3]*data[x_index_uu][y_index_ll];
-        double i_yll = a*Math.pow(x, 3) + b*x*x + c*x + d;
-        
-        //current at x and y
-        a = yinv[0][0]*i_yll + yinv[0][1]*i_yl + yinv[0][2]*i_yu + yinv[0][3]*i_yuu;
-        b = yinv[1][0]*i_yll + yinv[1][1]*i_yl + yinv[1][2]*i_yu + yinv[1][3]*i_yuu;
-        c = yinv[2][0]*i_yll + yinv[2][1]*i_yl + yinv[2][2]*i_yu + yinv[2][3]*i_yuu;
-        d = yinv[3][0]*i_yll + yinv[3][1]*i_yl + yinv[3][2]*i_yu + yinv[3][3]*i_yuu;
-        double i_xy = a*Math.pow(y, 3) + b*y*y + c*y + d;
         //regularize i_xy
         i_xy = Math.max(0.0, i_xy);
         i_xy = Math.min(1.0, i_xy);
         return i_xy;
     }
     
+    /**
+     * Evaluates the weight of one interpolation node: the cubic that is 1 at that node and 0 at the other three, evaluated at <code>t</code>.
+     * @param inverses the inverse interpolation matrices of an axis, as filled in by {@link #bicubicAxis(double[], int[], double[])}.
+     * @param base the position of the first entry of the cell's matrix, <code>16*cell</code>.
+     * @param node the node, from <code>0</code> (ll) to <code>3</code> (uu).
+     * @param t the coordinate of interest.
+     * @return the weight of the node at <code>t</code>.
+     */
+    private static double bicubicWeight(double[] inverses, int base, int node, double t){
+        return ((inverses[base + node]*t + inverses[base + 4 + node])*t + inverses[base + 8 + node])*t + inverses[base + 12 + node];
+    }
+    
+    /**
+     * Computes the bicubic interpolation nodes and inverse interpolation matrices for every cell along both axes.
+     * Called whenever the coordinates are set, so that lookups from any thread only read the finished tables.
+     * If either axis has fewer than 5 coordinates bicubic interpolation is unavailable and the tables are cleared.
+     * @see #bicubicAxis(double[], int[], double[]) 
+     */
+    private void buildBicubicCache(){
+        if(x_coordinates.length < 5 || y_coordinates.length < 5){
+            bicubic_x_indices = null;
+            bicubic_y_indices = null;
+            bicubic_x_inverse = null;
+            bicubic_y_inverse = null;
+            return;
+        }
+        int[] xi = new int[4*(x_coordinates.length + 1)];
+        double[] xinv = new double[16*(x_coordinates.length + 1)];
+        bicubicAxis(x_coordinates, xi, xinv);
+        int[] yi = new int[4*(y_coordinates.length + 1)];
+        double[] yinv = new double[16*(y_coordinates.length + 1)];
+        bicubicAxis(y_coordinates, yi, yinv);
+        bicubic_x_indices = xi;
+        bicubic_y_indices = yi;
+        bicubic_y_inverse = yinv;
+        bicubic_x_inverse = xinv;
+    }
+    
+    /**
+     * Computes the bicubic interpolation nodes and inverse interpolation matrices for every cell along one axis.
+     * <p>Cell <code>c</code> holds the points between <code>coordinates[c - 1]</code> and <code>coordinates[c]</code>, where cell <code>0</code> lies below the first coordinate and cell <code>coordinates.length</code> lies above the last.
+     * Nodes that fall outside of the data are extrapolated using the spacing of the nearest pair of coordinates, and their data indices are clamped to the edge.</p>
+     * @param coordinates The coordinates along the axis, sorted from lowest to highest. There must be at least 4.
+     * @param indices Receives the data indices of the four nodes <code>ll, l, u, uu</code> of cell <code>c</code> at <code>4*c</code> to <code>4*c + 3</code>.
+     * @param inverses Receives the inverse interpolation matrix of cell <code>c</code>, as computed by {@link Bicubic#cInverse(double, double, double, double)}, 
+     * at <code>16*c + 4*row + column</code>. Filled with {@link Double#NaN} if the matrix is singular.
+     */
+    private static void bicubicAxis(double[] coordinates, int[] indices, double[] inverses){
+        int n = coordinates.length;
+        for(int cell = 0; cell <= n; cell++){
+            int index_l = cell - 1;
+            int index_ll = index_l - 1;
+            int index_u = index_l + 1;
+            int index_uu = index_l + 2;
+            double ll;
+            double l;
+            double u;
+            double uu;
+            //handle out of bounds coordinates
+            if(index_ll >= 0 && index_uu < n){
+                ll = coordinates[index_ll];
+                l = coordinates[index_l];
+                u = coordinates[index_u];
+                uu = coordinates[index_uu];
+            }
+            else if(index_l < 0){
+                index_l = 0;
+                index_ll = 0;
+                u = coordinates[index_u];
+                uu = coordinates[index_uu];
+                double diff = uu - u;
+                l = u - diff;
+                ll = l - diff;
+            }
+            else if(index_ll < 0){
+                index_ll = 0;
+                l = coordinates[index_l];
+                u = coordinates[index_u];
+                uu = coordinates[index_uu];
+                double diff = u - l;
+                ll = l - diff;
+            }
+            else if(index_u >= n){
+                index_u = n - 1;
+                index_uu = n - 1;
+                ll = coordinates[index_ll];
+                l = coordinates[index_l];
+                double diff = l - ll;
+                u = l + diff;
+                uu = u + diff;
+            }
+            else{
+                index_uu = n - 1;
+                ll = coordinates[index_ll];
+                l = coordinates[index_l];
+                u = coordinates[index_u];
+                double diff = u - l;
+                uu = u + diff;
+            }
+            indices[4*cell] = index_ll;
+            indices[4*cell + 1] = index_l;
+            indices[4*cell + 2] = index_u;
+            indices[4*cell + 3] = index_uu;
+            try{
+                double[][] inv = Bicubic.cInverse(ll, l, u, uu);
+                for(int row = 0; row < 4; row++){
+                    for(int column = 0; column < 4; column++){
+                        inverses[16*cell + 4*row + column] = inv[row][column];
+                    }
+                }
+            }
+            catch(SingularMatrixException e){
+                Arrays.fill(inverses, 16*cell, 16*cell + 16, Double.NaN);
+            }
+        }
+    }
+    
     /**
      * Fetches the current at the given <code>(x,y)</code> coordinate using the specified interpolation method to evaluate the current.
      * @param x the x-coordinate of the SECM image expressed in the same units as the raw data that was read initially.
@@ -386,6 +605,223 @@ public class SECMImage {
         return getScaledCurrent(x, y, interpolation_mode)*current_amplitude + current_minimum;
     }
     
+    /**
+     * Fetches the scaled current at each of a list of <code>(x,y)</code> coordinates using the specified interpolation method.
+     * Equivalent to calling {@link #getScaledCurrent(double, double, int)} for every point, but the interpolation method is only resolved once.
+     * @param x the x-coordinates of the points of interest expressed in the same units as the raw data that was read initially.
+     * @param y the y-coordinates of the points of interest. Must be at least as long as <code>x</code>.
+     * @param out receives the scaled current at <code>(x[i],y[i])</code> at index <code>i</code>. Must be at least as long as <code>x</code>.
+     * @param interpolation_mode the interpolation method to be used. See {@link #getScaledCurrent(double, double, int)}.
+     */
+    public void getScaledCurrents(double[] x, double[] y, double[] out, int interpolation_mode){
+        int count = x.length;
+        switch (interpolation_mode) {
+            case INTERPOLATION_NN:
+                for(int i = 0; i < count; i++){
+                    out[i] = getScaledCurrentNN(x[i], y[i]);
+                }
+                break;
+            case INTERPOLATION_BILINEAR:
+                for(int i = 0; i < count; i++){
+                    out[i] = getScaledCurrentBilinear(x[i], y[i]);
+                }
+                break;
+            case INTERPOLATION_BICUBIC:
+                for(int i = 0; i < count; i++){
+                    try{
+                        out[i] = getScaledCurrentBicubic(x[i], y[i]);
+                    }
+                    catch(BadDomainSizeException e){
+                        Arrays.fill(out, 0, count, Double.NaN);
+                        return;
+                    }
+                    catch(SingularMatrixException e){
+                        out[i] = Double.NaN;
+                    }
+                }
+                break;
+            default:
+                Arrays.fill(out, 0, count, Double.NaN);
+                break;
+        }
+    }
+    
+    /**
+     * Fetches the current at each of a list of <code>(x,y)</code> coordinates using the specified interpolation method.
+     * Equivalent to calling {@link #getCurrent(double, double, int)} for every point.
+     * @param x the x-coordinates of the points of interest expressed in the same units as the raw data that was read initially.
+     * @param y the y-coordinates of the points of interest. Must be at least as long as <code>x</code>.
+     * @param out receives the current at <code>(x[i],y[i])</code> at index <code>i</code>. Must be at least as long as <code>x</code>.
+     * @param interpolation_mode the interpolation method to be used. See {@link #getCurrent(double, double, int)}.
+     */
+    public void getCurrents(double[] x, double[] y, double[] out, int interpolation_mode){
+        getScaledCurrents(x, y, out, interpolation_mode);
+        unscale(out, x.length);
+    }
+    
+    /**
+     * Fetches the scaled current at every point of a rectilinear grid using the specified interpolation method.
+     * Equivalent to calling {@link #getScaledCurrent(double, double, int)} for every <code>(x[i],y[j])</code>, 
+     * but the interpolation indices and weights of each column and each row are computed only once.
+     * @param x the x-coordinates of the columns of the grid expressed in the same units as the raw data that was read initially.
+     * @param y the y-coordinates of the rows of the grid.
+     * @param out receives the scaled current at <code>(x[i],y[j])</code> at index <code>j*x.length + i</code>. Must hold at least <code>x.length*y.length</code> values.
+     * @param interpolation_mode the interpolation method to be used. See {@link #getScaledCurrent(double, double, int)}.
+     */
+    public void getScaledCurrentGrid(double[] x, double[] y, double[] out, int interpolation_mode){
+        switch (interpolation_mode) {
+            case INTERPOLATION_NN:
+                getScaledCurrentGridNN(x, y, out);
+                break;
+            case INTERPOLATION_BILINEAR:
+                getScaledCurrentGridBilinear(x, y, out);
+                break;
+            case INTERPOLATION_BICUBIC:
+                getScaledCurrentGridBicubic(x, y, out);
+                break;
+            default:
+                Arrays.fill(out, 0, x.length*y.length, Double.NaN);
+                break;
+        }
+    }
+    
+    /**
+     * Fetches the current at every point of a rectilinear grid using the specified interpolation method.
+     * Equivalent to calling {@link #getCurrent(double, double, int)} for every <code>(x[i],y[j])</code>.
+     * @param x the x-coordinates of the columns of the grid expressed in the same units as the raw data that was read initially.
+     * @param y the y-coordinates of the rows of the grid.
+     * @param out receives the current at <code>(x[i],y[j])</code> at index <code>j*x.length + i</code>. Must hold at least <code>x.length*y.length</code> values.
+     * @param interpolation_mode the interpolation method to be used. See {@link #getCurrent(double, double, int)}.
+     * @see #getScaledCurrentGrid(double[], double[], double[], int) 
+     */
+    public void getCurrentGrid(double[] x, double[] y, double[] out, int interpolation_mode){
+        getScaledCurrentGrid(x, y, out, interpolation_mode);
+        unscale(out, x.length*y.length);
+    }
+    
+    /**
+     * Converts scaled currents back to the scale of the original data in place.
+     * @param values the scaled currents.
+     * @param count the number of values to convert.
+     */
+    private void unscale(double[] values, int count){
+        for(int i = 0; i < count; i++){
+            values[i] = values[i]*current_amplitude + current_minimum;
+        }
+    }
+    
+    /**
+     * Evaluates nearest-neighbor interpolation on a rectilinear grid.
+     * @param x the x-coordinates of the columns of the grid.
+     * @param y the y-coordinates of the rows of the grid.
+     * @param out receives the scaled currents row by row.
+     * @see #getScaledCurrentNN(double, double) 
+     */
+    private void getScaledCurrentGridNN(double[] x, double[] y, double[] out){
+        int[] x_index = findSmallerAll(x, x_coordinates, x_uniform, x_inverse_step);
+        for(int i = 0; i < x.length; i++){
+            x_index[i] = nearestNode(x[i], x_index[i], x_coordinates);
+        }
+        int[] y_lower = findSmallerAll(y, y_coordinates, y_uniform, y_inverse_step);
+        for(int j = 0; j < y.length; j++){
+            int y_index = nearestNode(y[j], y_lower[j], y_coordinates);
+            int row = j*x.length;
+            for(int i = 0; i < x.length; i++){
+                out[row + i] = value(x_index[i], y_index);
+            }
+        }
+    }
+    
+    /**
+     * Evaluates bilinear interpolation on a rectilinear grid.
+     * @param x the x-coordinates of the columns of the grid.
+     * @param y the y-coordinates of the rows of the grid.
+     * @param out receives the scaled currents row by row.
+     * @see #getScaledCurrentBilinear(double, double) 
+     */
+    private void getScaledCurrentGridBilinear(double[] x, double[] y, double[] out){
+        int[] x_lower = findSmallerAll(x, x_coordinates, x_uniform, x_inverse_step);
+        int[] x_upper = new int[x.length];
+        for(int i = 0; i < x.length; i++){
+            int lower = x_lower[i];
+            x_lower[i] = Math.max(lower, 0);
+            x_upper[i] = Math.min(lower + 1, x_coordinates.length - 1);
+        }
+        int[] y_smaller = findSmallerAll(y, y_coordinates, y_uniform, y_inverse_step);
+        for(int j = 0; j < y.length; j++){
+            int lower = y_smaller[j];
+            int y_lower = Math.max(lower, 0);
+            int y_upper = Math.min(lower + 1, y_coordinates.length - 1);
+            int row = j*x.length;
+            for(int i = 0; i < x.length; i++){
+                out[row + i] = bilinear(x[i], x_lower[i], x_upper[i], y[j], y_lower, y_upper);
+            }
+        }
+    }
+    
+    /**
+     * Evaluates bicubic interpolation on a rectilinear grid.
+     * Points in a cell whose interpolation matrix is singular are set to {@link Double#NaN}, as is the whole grid if the image is too small.
+     * @param x the x-coordinates of the columns of the grid.
+     * @param y the y-coordinates of the rows of the grid.
+     * @param out receives the scaled currents row by row.
+     * @see #getScaledCurrentBicubic(double, double) 
+     */
+    private void getScaledCurrentGridBicubic(double[] x, double[] y, double[] out){
+        if(x_coordinates.length < 5 || y_coordinates.length < 5){
+            Arrays.fill(out, 0, x.length*y.length, Double.NaN);
+            return;
+        }
+        //nodes and weights of each column
+        int[] x_smaller = findSmallerAll(x, x_coordinates, x_uniform, x_inverse_step);
+        int[] x_nodes = new int[4*x.length];
+        double[] x_weights = new double[4*x.length];
+        for(int i = 0; i < x.length; i++){
+            int cell = x_smaller[i] + 1;
+            for(int k = 0; k < 4; k++){
+                x_nodes[4*i + k] = bicubic_x_indices[4*cell + k];
+                x_weights[4*i + k] = bicubicWeight(bicubic_x_inverse, 16*cell, k, x[i]);
+            }
+        }
+        int[] y_smaller = findSmallerAll(y, y_coordinates, y_uniform, y_inverse_step);
+        for(int j = 0; j < y.length; j++){
+            int cell = y_smaller[j] + 1;
+            double wy0 = bicubicWeight(bicubic_y_inverse, 16*cell, 0, y[j]);
+            double wy1 = bicubicWeight(bicubic_y_inverse, 16*cell, 1, y[j]);
+            double wy2 = bicubicWeight(bicubic_y_inverse, 16*cell, 2, y[j]);
+            double wy3 = bicubicWeight(bicubic_y_inverse, 16*cell, 3, y[j]);
+            int row_ll = bicubic_y_indices[4*cell];
+            int row_l = bicubic_y_indices[4*cell + 1];
+            int row_u = bicubic_y_indices[4*cell + 2];
+            int row_uu = bicubic_y_indices[4*cell + 3];
+            int row = j*x.length;
+            for(int i = 0; i < x.length; i++){
+                int n = 4*i;
+                //sum in the same order as getScaledCurrentBicubic so that both give identical results
+                double i_xy = 0;
+                i_xy += wy0*bicubicRow(x_nodes, x_weights, n, row_ll);
+                i_xy += wy1*bicubicRow(x_nodes, x_weights, n, row_l);
+                i_xy += wy2*bicubicRow(x_nodes, x_weights, n, row_u);
+                i_xy += wy3*bicubicRow(x_nodes, x_weights, n, row_uu);
+                //regularize i_xy; a singular cell has NaN weights and stays NaN
+                out[row + i] = Math.min(1.0, Math.max(0.0, i_xy));
+            }
+        }
+    }
+    
+    /**
+     * Evaluates the interpolating cubic of one row of the data at a precomputed x-position.
+     * @param nodes the x-indices of the four interpolation nodes, starting at <code>offset</code>.
+     * @param weights the weights of the four interpolation nodes, starting at <code>offset</code>.
+     * @param offset the position of the first node in <code>nodes</code> and <code>weights</code>.
+     * @param y_index the index of the row.
+     * @return the weighted sum of the four nodes along the row.
+     */
+    private double bicubicRow(int[] nodes, double[] weights, int offset, int y_index){
+        return weights[offset]*value(nodes[offset], y_index) + weights[offset + 1]*value(nodes[offset + 1], y_index) 
+                + weights[offset + 2]*value(nodes[offset + 2], y_index) + weights[offset + 3]*value(nodes[offset + 3], y_index);
+    }
+    
     /**
      * Fetches the smallest x-coordinate represented by the SECM image's raw data.
      * @return the smallest x-coordinate of this image.
@@ -419,109 +855,148 @@ public class SECMImage {
     }
     
     /**
-     * Reads SECM data in from a file created by Flux: https://github.com/LaboratoryForBioelectrochemicalImaging/fluxproject
-     * <p>Formatted as x,y,current.</p>
-     * <p>Lines beginning with <code>#</code> are ignored.</p>
+     * Packages the parsed data of this image so that it can be written to a {@link SECMCache}.
+     * @return The cache entry for this image.
+     */
+    private SECMCache getCache(){
+        return new SECMCache(x_coordinates, y_coordinates, current_minimum, current_maximum, current_amplitude, data);
+    }
+    
+    /**
+     * Initializes this image from a {@link SECMCache} entry.
+     * @param cache The cached data.
+     */
+    private void setCache(SECMCache cache){
+        x_coordinates = cache.x_coordinates;
+        y_coordinates = cache.y_coordinates;
+        current_minimum = cache.current_minimum;
+        current_maximum = cache.current_maximum;
+        current_amplitude = cache.current_amplitude;
+        data = cache.data;
+        data_single = null;
+        data_view = null;
+        stride = x_coordinates.length;
+        detectUniformSpacing();
+        buildBicubicCache();
+    }
+    
+    /**
+     * Converts the scaled data to single precision, releasing the double precision copy.
+     */
+    private void toSinglePrecision(){
+        float[] converted = new float[data.length];
+        for(int i = 0; i < converted.length; i++){
+            converted[i] = (float)data[i];
+        }
+        data_single = converted;
+        data = null;
+    }
+    
+    /**
+     * Reads SECM data in from a file.
+     * <p>The format of the file is detected by {@link SECMLoaders} and the points are read by the matching {@link SECMLoader}: 
+     * Flux files (see {@link FluxReader}), column-based ASCII files such as HEKA <code>.asc</code> exports or MATLAB level 5 MAT-files.
+     * The points are then arranged into a grid by {@link #setPoints(SECMPoints)}.</p>
      * @param filepath The path to the file.
-     * @throws FileNotFoundException If the file is not found.
-     * @throws ImproperFileFormattingException If the data in the file is not rectilinear.
-     */
-    private void readFileFlux(String filepath) throws FileNotFoundException, ImproperFileFormattingException{
-        File f = new File(filepath);
-        Scanner scan = new Scanner(f);
-        ArrayList<Double> xs = new ArrayList();
-        ArrayList<Double> ys = new ArrayList();
-        while(scan.hasNextLine()){//scan through the file
-            String readline = scan.nextLine();
-            if(!readline.startsWith("#")){//ignore "comment" lines
-                String[] readsplit = readline.split(",");
-                double x = Double.parseDouble(readsplit[0]);//read in the X-coordinate
-                double y = Double.parseDouble(readsplit[1]);//read in the Y-coordinate
-                double cur = Double.parseDouble(readsplit[2]);//read in the current
-                current_minimum = cur;
-                current_maximum = cur;
-                boolean xexists = false;
-                for(int i = 0; i< xs.size(); i++){
-                    double relative = Math.abs((x - xs.get(i))/xs.get(i));
-                    if(xs.get(i) == 0){
-                        relative = Math.abs(x - xs.get(i));
-                    }
-
-                    if(relative < Constants.RELATIVE_ERR_CUTOFF){//see if the x already exists
-                        xexists = true;
-                        break;//if the x already exists, we do not need to iterate any further in the array
-                    }
-                }
-                if(!xexists){
-                    xs.add(x);//add the new x to the list if it is not already
-                }
-                boolean yexists = false;
-                for(int i = 0; i< ys.size(); i++){
-                    double relative = Math.abs((y - ys.get(i))/ys.get(i));
-                    if(ys.get(i) == 0){
-                        relative = Math.abs(y - ys.get(i));
-                    }
-                    if(relative < Constants.RELATIVE_ERR_CUTOFF){//see if the y already exists
-                        yexists = true;
-                        break;//if the y already exists, we do not need to iterate any further in the array
-                    }
-                }
-                if(!yexists){
-                    ys.add(y);//add the new y to the list if it is not already
-                }
-            }
+     * @throws IOException If the file is not found or cannot be read.
+     * @throws ImproperFileFormattingException If the contents of the file cannot be read or if the data in the file is not rectilinear.
+     */
+    private void readFile(String filepath) throws IOException, ImproperFileFormattingException{
+        setPoints(SECMLoaders.read(filepath));
+    }
+    
+    /**
+     * Arranges a set of raw points into the coordinate arrays and the scaled data grid of this image.
+     * The distinct coordinates are found by sorting the x and y values and merging those that fall within {@link Constants#RELATIVE_ERR_CUTOFF} of one another.
+     * @param points The raw <code>(x, y, current)</code> points.
+     * @throws ImproperFileFormattingException If the number of points does not match the dimensions of the grid.
+     */
+    private void setPoints(SECMPoints points) throws ImproperFileFormattingException{
+        int count = points.size();
+        if(count == 0){
+            throw new ImproperFileFormattingException("The file does not contain any data.");
         }
-        //sort the x&y coordinates and create arrays out of them
-        Collections.sort(xs);
-        Collections.sort(ys);
-        x_coordinates = new double[xs.size()];
-        y_coordinates = new double[ys.size()];
-        for(int i = 0; i < x_coordinates.length; i++){
-            x_coordinates[i] = xs.get(i);
-        }
-        for(int i = 0; i < y_coordinates.length; i++){
-            y_coordinates[i] = ys.get(i);
-        }
-        int counter = 0;
-        //second pass over the file
-        data = new double[x_coordinates.length][y_coordinates.length]; // This holds the relative current at each point x,y
-        scan.close();
-        scan = new Scanner(f);
-        while(scan.hasNextLine()){//scan through the file
-            String readline = scan.nextLine();
-            if(!readline.startsWith("#")){//ignore "comment" lines
-                String[] readsplit = readline.split(",");
-                double x = Double.parseDouble(readsplit[0]);//read in the X-coordinate
-                double y = Double.parseDouble(readsplit[1]);//read in the Y-coordinate
-                double cur = Double.parseDouble(readsplit[2]);//read in the current
-                int xaddr = Search.FindSmaller(x, x_coordinates) + 1;//determine the x-address
-                int yaddr = Search.FindSmaller(y, y_coordinates) + 1;//determine the y-address
-                counter ++;
-                data[xaddr][yaddr] = cur;
-                if(Double.isFinite(cur)){
-                    if(cur < current_minimum){
-                        current_minimum = cur;
-                    }
-                    if(cur > current_maximum){
-                        current_maximum = cur;
-                    }
-                }
-            }
+        x_coordinates = distinctCoordinates(points.copyXValues());
+        y_coordinates = distinctCoordinates(points.copyYValues());
+        detectUniformSpacing();
+        buildBicubicCache();
+        if(points.hasFiniteCurrent()){
+            current_minimum = points.getCurrentMinimum();
+            current_maximum = points.getCurrentMaximum();
+        }
+        else{
+            current_minimum = 0.0;
+            current_maximum = 0.0;
         }
         current_amplitude = current_maximum - current_minimum;
         if(current_amplitude == 0 || !Double.isFinite(current_amplitude)){
             current_amplitude = 1;
         }
-        for(int i = 0; i < data.length; i++){
-            for(int ii = 0; ii < data[0].length; ii++){
-                data[i][ii] = (data[i][ii] - current_minimum)/current_amplitude;
+        if(count != x_coordinates.length*y_coordinates.length){
+            throw new ImproperFileFormattingException("Number of points in file does not match file dimensions.\nExpected: " + x_coordinates.length*y_coordinates.length + " Found: " + count);
+        }
+        stride = x_coordinates.length;
+        data = new double[x_coordinates.length*y_coordinates.length]; // This holds the relative current at each point x,y
+        data_single = null;
+        data_view = null;
+        for(int i = 0; i < count; i++){
+            int xaddr = nearestIndex(points.getX(i), x_coordinates);//determine the x-address
+            int yaddr = nearestIndex(points.getY(i), y_coordinates);//determine the y-address
+            data[yaddr*stride + xaddr] = (points.getCurrent(i) - current_minimum)/current_amplitude;
+        }
+    }
+    
+    /**
+     * Finds the distinct values in an array of coordinates.
+     * Values are sorted (in parallel for large arrays) and then merged when they fall within {@link Constants#RELATIVE_ERR_CUTOFF} of the first value of their group.
+     * @param values The coordinates. This array is sorted in place.
+     * @return The distinct coordinates sorted from lowest to highest.
+     */
+    private static double[] distinctCoordinates(double[] values){
+        Arrays.parallelSort(values);
+        int distinct = 0;
+        for(int i = 0; i < values.length; i++){
+            if(distinct == 0 || !sameCoordinate(values[i], values[distinct - 1])){
+                values[distinct] = values[i];
+                distinct ++;
             }
         }
-        scan.close();
-        if(counter != x_coordinates.length*y_coordinates.length){
-            throw new ImproperFileFormattingException("Number of points in file does not match file dimensions.\nExpected: " + x_coordinates.length*y_coordinates.length + " Found: " + counter);
+        return Arrays.copyOf(values, distinct);
+    }
+    
+    /**
+     * Determines if two coordinates should be considered the same, within {@link Constants#RELATIVE_ERR_CUTOFF}.
+     * @param value The coordinate being tested.
+     * @param reference The coordinate that is already known.
+     * @return <code>true</code> if <code>value</code> is within the relative error cutoff of <code>reference</code>.
+     * If <code>reference</code> is zero, the absolute difference is used instead.
+     */
+    private static boolean sameCoordinate(double value, double reference){
+        double relative = Math.abs((value - reference)/reference);
+        if(reference == 0){
+            relative = Math.abs(value - reference);
         }
-        
+        return relative < Constants.RELATIVE_ERR_CUTOFF;
+    }
+    
+    /**
+     * Finds the index of the coordinate that is closest to <code>value</code>.
+     * @param value The coordinate of interest.
+     * @param coordinates The coordinates sorted from lowest to highest.
+     * @return The index of the closest coordinate.
+     */
+    private static int nearestIndex(double value, double[] coordinates){
+        int upper = Search.FindSmaller(value, coordinates) + 1;
+        if(upper == 0){
+            return 0;
+        }
+        if(upper == coordinates.length){
+            return coordinates.length - 1;
+        }
+        if(value - coordinates[upper - 1] < coordinates[upper] - value){
+            return upper - 1;
+        }
+        return upper;
     }
     
     /**
@@ -537,9 +1012,23 @@ public class SECMImage {
      */
     private double current_amplitude;
     /**
-     * The scaled SECM data
+     * The scaled SECM data stored row-major: the value at <code>(x_coordinates[x], y_coordinates[y])</code> is at <code>data[y*stride + x]</code>.
+     * This is <code>null</code> when the image is held in single precision.
+     */
+    private double[] data;
+    /**
+     * The scaled SECM data in single precision, laid out in the same way as {@link #data}.
+     * This is <code>null</code> unless the image is held in single precision.
+     */
+    private float[] data_single;
+    /**
+     * The number of values in a row of {@link #data} or {@link #data_single}. Equal to the number of x-coordinates.
      */
-    private double[][] data;
+    private int stride;
+    /**
+     * The <code>[x][y]</code> view of the data returned by {@link #getData()}. Built on first use.
+     */
+    private double[][] data_view;
     /**
      * Holds whether or not the SECM image can be displayed
      */
@@ -552,6 +1041,44 @@ public class SECMImage {
      * The y-coordinates of the data points of this image
      */
     private double[] y_coordinates;
+    /**
+     * The data indices of the bicubic interpolation nodes of each x-cell. Built whenever the coordinates are set.
+     * @see #bicubicAxis(double[], int[], double[]) 
+     */
+    private int[] bicubic_x_indices;
+    /**
+     * The inverse bicubic interpolation matrices of each x-cell. Built whenever the coordinates are set.
+     * @see #bicubicAxis(double[], int[], double[]) 
+     */
+    private double[] bicubic_x_inverse;
+    /**
+     * The data indices of the bicubic interpolation nodes of each y-cell. Built whenever the coordinates are set.
+     * @see #bicubicAxis(double[], int[], double[]) 
+     */
+    private int[] bicubic_y_indices;
+    /**
+     * The inverse bicubic interpolation matrices of each y-cell. Built whenever the coordinates are set.
+     * @see #bicubicAxis(double[], int[], double[]) 
+     */
+    private double[] bicubic_y_inverse;
+    /**
+     * Whether the x-coordinates are uniformly spaced.
+     * @see #detectUniformSpacing()
+     */
+    private boolean x_uniform;
+    /**
+     * The reciprocal of the spacing between x-coordinates when they are uniformly spaced.
+     */
+    private double x_inverse_step;
+    /**
+     * Whether the y-coordinates are uniformly spaced.
+     * @see #detectUniformSpacing()
+     */
+    private boolean y_uniform;
+    /**
+     * The reciprocal of the spacing between y-coordinates when they are uniformly spaced.
+     */
+    private double y_inverse_step;
     
     //Statics
     /**
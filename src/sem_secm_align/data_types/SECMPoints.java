@@ -0,0 +1,194 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of raw <code>(x, y, current)</code> triples read from an SECM data file.
+ * The triples are held in primitive arrays so that large files can be buffered without boxing every value.
+ * The smallest and largest finite currents are tracked as points are added.
+ * @author Nathaniel
+ */
+public class SECMPoints {
+
+    /**
+     * Creates an empty buffer with a default initial capacity.
+     */
+    public SECMPoints(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty buffer.
+     * @param capacity the number of points that can be held before the buffer needs to grow.
+     */
+    public SECMPoints(int capacity){
+        capacity = Math.max(capacity, 1);
+        x_values = new double[capacity];
+        y_values = new double[capacity];
+        currents = new double[capacity];
+        count = 0;
+        current_minimum = Double.POSITIVE_INFINITY;
+        current_maximum = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Appends a point to the buffer.
+     * @param x the x-coordinate of the point.
+     * @param y the y-coordinate of the point.
+     * @param current the current measured at the point.
+     */
+    public void add(double x, double y, double current){
+        if(count == x_values.length){
+            grow(count + 1);
+        }
+        x_values[count] = x;
+        y_values[count] = y;
+        currents[count] = current;
+        count ++;
+        if(Double.isFinite(current)){
+            if(current < current_minimum){
+                current_minimum = current;
+            }
+            if(current > current_maximum){
+                current_maximum = current;
+            }
+        }
+    }
+
+    /**
+     * Appends every point of another buffer to this buffer, keeping their order.
+     * @param other the points to be appended.
+     */
+    public void addAll(SECMPoints other){
+        if(count + other.count > x_values.length){
+            grow(count + other.count);
+        }
+        System.arraycopy(other.x_values, 0, x_values, count, other.count);
+        System.arraycopy(other.y_values, 0, y_values, count, other.count);
+        System.arraycopy(other.currents, 0, currents, count, other.count);
+        count += other.count;
+        current_minimum = Math.min(current_minimum, other.current_minimum);
+        current_maximum = Math.max(current_maximum, other.current_maximum);
+    }
+
+    /**
+     * Returns the number of points held in the buffer.
+     * @return the number of points.
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Returns the x-coordinate of a point.
+     * @param index the index of the point in the order it was added.
+     * @return the x-coordinate of the point.
+     */
+    public double getX(int index){
+        return x_values[index];
+    }
+
+    /**
+     * Returns the y-coordinate of a point.
+     * @param index the index of the point in the order it was added.
+     * @return the y-coordinate of the point.
+     */
+    public double getY(int index){
+        return y_values[index];
+    }
+
+    /**
+     * Returns the current of a point.
+     * @param index the index of the point in the order it was added.
+     * @return the current of the point.
+     */
+    public double getCurrent(int index){
+        return currents[index];
+    }
+
+    /**
+     * Returns <code>true</code> if at least one point with a finite current has been added.
+     * @return <code>true</code> if {@link #getCurrentMinimum()} and {@link #getCurrentMaximum()} hold meaningful values.
+     */
+    public boolean hasFiniteCurrent(){
+        return current_minimum <= current_maximum;
+    }
+
+    /**
+     * Returns the smallest finite current that has been added.
+     * @return the smallest finite current or {@link Double#POSITIVE_INFINITY} if there are none.
+     */
+    public double getCurrentMinimum(){
+        return current_minimum;
+    }
+
+    /**
+     * Returns the largest finite current that has been added.
+     * @return the largest finite current or {@link Double#NEGATIVE_INFINITY} if there are none.
+     */
+    public double getCurrentMaximum(){
+        return current_maximum;
+    }
+
+    /**
+     * Returns a copy of the x-coordinates of all points.
+     * @return an array of length {@link #size()} holding the x-coordinates.
+     */
+    public double[] copyXValues(){
+        return Arrays.copyOf(x_values, count);
+    }
+
+    /**
+     * Returns a copy of the y-coordinates of all points.
+     * @return an array of length {@link #size()} holding the y-coordinates.
+     */
+    public double[] copyYValues(){
+        return Arrays.copyOf(y_values, count);
+    }
+
+    /**
+     * Enlarges the backing arrays so that at least <code>minimum_capacity</code> points can be held.
+     * @param minimum_capacity the required capacity.
+     */
+    private void grow(int minimum_capacity){
+        int capacity = Math.max(minimum_capacity, x_values.length + (x_values.length >> 1));
+        x_values = Arrays.copyOf(x_values, capacity);
+        y_values = Arrays.copyOf(y_values, capacity);
+        currents = Arrays.copyOf(currents, capacity);
+    }
+
+    /**
+     * The x-coordinates of the points.
+     */
+    private double[] x_values;
+    /**
+     * The y-coordinates of the points.
+     */
+    private double[] y_values;
+    /**
+     * The currents of the points.
+     */
+    private double[] currents;
+    /**
+     * The number of points held.
+     */
+    private int count;
+    /**
+     * The smallest finite current added so far.
+     */
+    private double current_minimum;
+    /**
+     * The largest finite current added so far.
+     */
+    private double current_maximum;
+
+    /**
+     * The initial capacity used by {@link #SECMPoints()}.
+     */
+    private static final int DEFAULT_CAPACITY = 4096;
+}
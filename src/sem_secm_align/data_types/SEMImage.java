@@ -1,19 +1,39 @@
 /*
  * Created: 2022-03-30
- * Updated: 2022-06-23
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.data_types;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import sem_secm_align.settings.ColourSettings;
 
 /**
  * Holds information pertaining to a scanning electron microscopy image
+ * <p>Grayscale images, including grayscale images that were saved in colour, are held as a single channel at the bit depth of the file (8 or 16 bits per pixel) 
+ * rather than as 32-bit colour. Their gray levels can be read directly through {@link #getGrayBytes()} or {@link #getGrayShorts()}.</p>
+ * <p>Images with more than {@link #REGION_THRESHOLD} pixels are not decoded in full. 
+ * Instead a reduced resolution overview is decoded up front and {@link #getRegion(Rectangle2D, double, boolean)} decodes just the part of the file that is on screen, 
+ * at the resolution it is shown at, whenever the view moves or zooms past what was last decoded.</p>
+ * <p>Reduced resolution copies of the held image are built in the background (see {@link SEMPyramid}) so that zoomed out views are drawn from 
+ * a copy of about the size they are shown at. Signals that are measured from the image rather than displayed are sampled from the held image itself.</p>
  * @author Nathaniel
  */
 public class SEMImage {
@@ -23,10 +43,25 @@ public class SEMImage {
      * @param filepath The path to the SEM image
      */
     public SEMImage(String filepath){
+        this.filepath = filepath;
         sem_image = null;
         boolean readcorrectly;
         try{
-            sem_image = ImageIO.read(new File(filepath));
+            Rectangle bounds = readBounds(filepath);
+            full_width = bounds.width;
+            full_height = bounds.height;
+            if((long)full_width*full_height > REGION_THRESHOLD){
+                overview_subsampling = (Math.max(full_width, full_height) + OVERVIEW_SIZE - 1)/OVERVIEW_SIZE;
+                sem_image = toNativeGray(decode(filepath, bounds, overview_subsampling));
+            }
+            else{
+                overview_subsampling = 1;
+                BufferedImage read = ImageIO.read(new File(filepath));
+                if(read == null){
+                    throw new IOException("No image reader found for " + filepath);
+                }
+                sem_image = toNativeGray(read);
+            }
             readcorrectly = true;
         } catch (IOException ex) {
             ex.printStackTrace();
@@ -35,8 +70,15 @@ public class SEMImage {
             Graphics def = sem_image.getGraphics();
             def.setColor(ColourSettings.BACKGROUND_COLOUR);
             def.fillRect(0, 0, 1, 1);
+            full_width = 1;
+            full_height = 1;
+            overview_subsampling = 1;
         }
         displayable = readcorrectly;
+        pyramid = new SEMPyramid(sem_image, overview_subsampling);
+        if(readcorrectly){
+            pyramid.startBuilding();
+        }
     }
     
     /**
@@ -46,34 +88,204 @@ public class SEMImage {
     @Deprecated
     public SEMImage(){
         displayable = false;
+        filepath = null;
         sem_image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         Graphics def = sem_image.getGraphics();
         def.setColor(ColourSettings.BACKGROUND_COLOUR);
         def.fillRect(0, 0, 1, 1);
+        full_width = 1;
+        full_height = 1;
+        overview_subsampling = 1;
+        pyramid = new SEMPyramid(sem_image, 1);
     }
     
     /**
      * Returns the height of the SEM image in pixels.
-     * @return the height of the SEM image in pixels.
+     * @return the height of the SEM image in pixels at full resolution.
      */
     public int getHeight(){
-        return sem_image.getHeight();
+        return full_height;
     }
     
     /**
      * Returns the SEM image as a {@link BufferedImage}.
+     * For images that are decoded by region (see {@link #isRegional()}) this is the reduced resolution overview, 
+     * which spans {@link #getImageScale()} full resolution pixels with each of its pixels.
      * @return the SEM image
      */
     public BufferedImage getImage(){
         return sem_image;
     }
     
+    /**
+     * Returns the number of full resolution pixels spanned by each pixel of {@link #getImage()}.
+     * @return 1 unless the image is decoded by region.
+     */
+    public int getImageScale(){
+        return overview_subsampling;
+    }
+    
     /**
      * Returns the width of the SEM image in pixels.
-     * @return the width of the SEM image in pixels.
+     * @return the width of the SEM image in pixels at full resolution.
      */
     public int getWidth(){
-        return sem_image.getWidth();
+        return full_width;
+    }
+    
+    /**
+     * Determines whether this image is too large to be decoded in full, so that only an overview is held and other regions are decoded when needed.
+     * @return true if the image has more than {@link #REGION_THRESHOLD} pixels.
+     */
+    public boolean isRegional(){
+        return overview_subsampling > 1;
+    }
+    
+    /**
+     * Returns the pixels needed to display part of the SEM image at a given resolution, taking zoomed out views from the mipmap pyramid.
+     * @param area The part of the SEM image that is needed, in full resolution pixels. It may extend past the image.
+     * @param resolution The number of full resolution pixels that will be drawn onto each screen pixel. Values below 1 mean the image is magnified.
+     * @return A region covering <code>area</code> with at least the requested resolution, or the overview if the region cannot be decoded.
+     * @see #getRegion(Rectangle2D, double, boolean)
+     */
+    public SEMRegion getRegion(Rectangle2D area, double resolution){
+        return getRegion(area, resolution, true);
+    }
+    
+    /**
+     * Returns the pixels needed to draw part of the SEM image at a given resolution.
+     * <p>Images held in full are returned whole: as the level of their mipmap pyramid that best matches <code>resolution</code> if <code>filtered</code>, 
+     * otherwise as the held image itself. Since the pyramid is built in the background, only the unfiltered image gives the same pixels every time. 
+     * For images decoded by region, the part of the file covering <code>area</code> 
+     * (plus a margin, so that small pans can reuse it) is decoded with subsampling, unless the last region decoded already covers it at the same resolution.
+     * If the overview is fine enough it, or a level of its pyramid when <code>filtered</code>, is used instead.</p>
+     * @param area The part of the SEM image that is needed, in full resolution pixels. It may extend past the image.
+     * @param resolution The number of full resolution pixels that will be drawn onto each screen pixel. Values below 1 mean the image is magnified.
+     * @param filtered <code>true</code> to allow the box-filtered levels of the mipmap pyramid, for display; 
+     * <code>false</code> to sample the held image or a decoded region, for signals that are measured or exported.
+     * @return A region covering <code>area</code> with at least the requested resolution, or the overview if the region cannot be decoded.
+     */
+    public synchronized SEMRegion getRegion(Rectangle2D area, double resolution, boolean filtered){
+        SEMRegion overview = filtered ? pyramid.getLevel(resolution) : pyramid.getBase();
+        if(!isRegional()){
+            return overview;
+        }
+        int subsampling = 1;
+        while(subsampling*2 <= resolution){
+            subsampling *= 2;
+        }
+        if(subsampling >= overview_subsampling){
+            return overview;
+        }
+        Rectangle bounds = new Rectangle(0, 0, full_width, full_height);
+        Rectangle needed = area.getBounds().intersection(bounds);
+        if(needed.isEmpty()){
+            return overview;
+        }
+        //compare with the subsampling that was asked for, since the size limit below may have decoded the region more coarsely
+        if(region != null && region_subsampling == subsampling && region_bounds.contains(needed)){
+            return region;
+        }
+        //decode with a margin on every side, aligned to the subsampling so that neighbouring regions sample the same pixels
+        int margin_x = (int)(needed.width*REGION_MARGIN);
+        int margin_y = (int)(needed.height*REGION_MARGIN);
+        int x1 = Math.max(0, (needed.x - margin_x)/subsampling*subsampling);
+        int y1 = Math.max(0, (needed.y - margin_y)/subsampling*subsampling);
+        int x2 = Math.min(full_width, needed.x + needed.width + margin_x);
+        int y2 = Math.min(full_height, needed.y + needed.height + margin_y);
+        Rectangle decode_bounds = new Rectangle(x1, y1, x2 - x1, y2 - y1);
+        int requested_subsampling = subsampling;
+        //keep the decoded region to a bounded size no matter how the area was requested
+        while((long)(decode_bounds.width/subsampling)*(decode_bounds.height/subsampling) > MAX_REGION_PIXELS && subsampling*2 < overview_subsampling){
+            subsampling *= 2;
+            decode_bounds.x = decode_bounds.x/subsampling*subsampling;
+            decode_bounds.y = decode_bounds.y/subsampling*subsampling;
+            decode_bounds.width = x2 - decode_bounds.x;
+            decode_bounds.height = y2 - decode_bounds.y;
+        }
+        try{
+            BufferedImage decoded = toNativeGray(decode(filepath, decode_bounds, subsampling));
+            region = new SEMRegion(decoded, decode_bounds.x, decode_bounds.y, subsampling);
+            region_bounds = decode_bounds;
+            region_subsampling = requested_subsampling;
+            return region;
+        }
+        catch(IOException | RuntimeException ex){
+            ex.printStackTrace();
+            return overview;
+        }
+    }
+    
+    /**
+     * Reads the size of the first image in a file without decoding it.
+     * @param filepath The path to the image file.
+     * @return The bounds of the image in pixels.
+     * @throws IOException If the file cannot be read or is not an image.
+     */
+    private static Rectangle readBounds(String filepath) throws IOException{
+        try(ImageInputStream input = openInput(filepath)){
+            ImageReader reader = openReader(filepath, input);
+            try{
+                return new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+            }
+            finally{
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Decodes part of the first image in a file.
+     * @param filepath The path to the image file.
+     * @param bounds The part of the image to be decoded, in full resolution pixels.
+     * @param subsampling Only every <code>subsampling</code><sup>th</sup> pixel along each axis is decoded.
+     * @return The decoded pixels.
+     * @throws IOException If the file cannot be read or is not an image.
+     */
+    private static BufferedImage decode(String filepath, Rectangle bounds, int subsampling) throws IOException{
+        try(ImageInputStream input = openInput(filepath)){
+            ImageReader reader = openReader(filepath, input);
+            try{
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(bounds);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            }
+            finally{
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Opens an image file for reading.
+     * @param filepath The path to the image file.
+     * @return A stream over the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static ImageInputStream openInput(String filepath) throws IOException{
+        ImageInputStream input = ImageIO.createImageInputStream(new File(filepath));
+        if(input == null){
+            throw new IOException("Unable to open " + filepath);
+        }
+        return input;
+    }
+    
+    /**
+     * Finds a reader for an image file.
+     * @param filepath The path to the image file. Used for error messages.
+     * @param input A stream over the file.
+     * @return A reader positioned at the start of the file. It should be disposed of once it is no longer needed.
+     * @throws IOException If there is no reader for the file's format.
+     */
+    private static ImageReader openReader(String filepath, ImageInputStream input) throws IOException{
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if(!readers.hasNext()){
+            throw new IOException("No image reader found for " + filepath);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
     }
     
     /**
@@ -85,11 +297,205 @@ public class SEMImage {
     }
     
     /**
-     * The SEM image proper.
+     * Determines if the SEM image is held as a single grayscale channel.
+     * @return true if the image is grayscale, false if it is in colour.
+     */
+    public boolean isGrayscale(){
+        return sem_image.getType() == BufferedImage.TYPE_BYTE_GRAY || sem_image.getType() == BufferedImage.TYPE_USHORT_GRAY;
+    }
+    
+    /**
+     * Returns the number of bits used for each gray level.
+     * @return 8 or 16 for grayscale images, 0 for colour images.
+     */
+    public int getBitDepth(){
+        switch (sem_image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return 8;
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return 16;
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Returns the largest gray level that a pixel of this image can hold.
+     * @return 255 for 8-bit images, 65535 for 16-bit images and 0 for colour images.
+     */
+    public int getMaxGrayLevel(){
+        return (1 << getBitDepth()) - 1;
+    }
+    
+    /**
+     * Returns the gray levels of an 8-bit grayscale image. The level at <code>(x,y)</code> of {@link #getImage()} is <code>data[y*getImage().getWidth() + x] &amp; 0xFF</code>.
+     * <p>This is the image's own storage, so it should not be modified.</p>
+     * @return The gray levels, or <code>null</code> if this is not an 8-bit grayscale image.
+     */
+    public byte[] getGrayBytes(){
+        if(sem_image.getType() != BufferedImage.TYPE_BYTE_GRAY){
+            return null;
+        }
+        return ((DataBufferByte)sem_image.getRaster().getDataBuffer()).getData();
+    }
+    
+    /**
+     * Returns the gray levels of a 16-bit grayscale image. The level at <code>(x,y)</code> of {@link #getImage()} is <code>data[y*getImage().getWidth() + x] &amp; 0xFFFF</code>.
+     * <p>This is the image's own storage, so it should not be modified.</p>
+     * @return The gray levels, or <code>null</code> if this is not a 16-bit grayscale image.
+     */
+    public short[] getGrayShorts(){
+        if(sem_image.getType() != BufferedImage.TYPE_USHORT_GRAY){
+            return null;
+        }
+        return ((DataBufferUShort)sem_image.getRaster().getDataBuffer()).getData();
+    }
+    
+    /**
+     * Returns the gray level of a pixel of {@link #getImage()}.
+     * @param x The x-index of the pixel.
+     * @param y The y-index of the pixel.
+     * @return The gray level, from 0 to {@link #getMaxGrayLevel()}. For colour images, the average of the red, green and blue channels.
+     */
+    public int getGrayLevel(int x, int y){
+        if(isGrayscale()){
+            return sem_image.getRaster().getSample(x, y, 0);
+        }
+        int rgb = sem_image.getRGB(x, y);
+        return (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+    }
+    
+    /**
+     * Converts an image to a single-channel grayscale image at its native bit depth when this can be done without changing how it is displayed.
+     * <ul>
+     * <li>8- and 16-bit single-channel gray images are copied into a {@link BufferedImage#TYPE_BYTE_GRAY} or {@link BufferedImage#TYPE_USHORT_GRAY} image 
+     * unless they are already held in that form with one row after another.</li>
+     * <li>Opaque 8-bit colour images whose red, green and blue channels are equal at every pixel are converted to {@link BufferedImage#TYPE_BYTE_GRAY}.</li>
+     * <li>All other images are returned unchanged.</li>
+     * </ul>
+     * @param image The image as read from the file.
+     * @return The compact image, or <code>image</code> itself if it cannot be stored more compactly.
+     */
+    private static BufferedImage toNativeGray(BufferedImage image){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        ColorModel model = image.getColorModel();
+        if(raster.getNumBands() == 1 && model.getColorSpace().getType() == ColorSpace.TYPE_GRAY && !model.hasAlpha()){
+            int bits = model.getComponentSize(0);
+            int transfer = raster.getTransferType();
+            int type;
+            if(bits == 8 && transfer == DataBuffer.TYPE_BYTE){
+                type = BufferedImage.TYPE_BYTE_GRAY;
+            }
+            else if(bits == 16 && transfer == DataBuffer.TYPE_USHORT){
+                type = BufferedImage.TYPE_USHORT_GRAY;
+            }
+            else{
+                return image;
+            }
+            if(image.getType() == type && isPacked(raster)){
+                return image;
+            }
+            BufferedImage gray = new BufferedImage(width, height, type);
+            int[] row = new int[width];
+            for(int y = 0; y < height; y++){
+                raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, row);
+                gray.getRaster().setSamples(0, y, width, 1, 0, row);
+            }
+            return gray;
+        }
+        if(model.getComponentSize(0) > 8){
+            return image;
+        }
+        //colour images holding gray values
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] levels = ((DataBufferByte)gray.getRaster().getDataBuffer()).getData();
+        int[] row = new int[width];
+        for(int y = 0; y < height; y++){
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for(int x = 0; x < width; x++){
+                int argb = row[x];
+                int red = (argb >> 16) & 0xFF;
+                if((argb >>> 24) != 0xFF || red != ((argb >> 8) & 0xFF) || red != (argb & 0xFF)){
+                    return image;
+                }
+                levels[y*width + x] = (byte)red;
+            }
+        }
+        return gray;
+    }
+    
+    /**
+     * Determines whether a single-band raster holds its pixels one row after another with no gaps, starting at the beginning of its buffer.
+     * @param raster The raster to be checked.
+     * @return true if the pixel at <code>(x,y)</code> is element <code>y*width + x</code> of the buffer.
+     */
+    private static boolean isPacked(Raster raster){
+        if(!(raster.getSampleModel() instanceof ComponentSampleModel)){
+            return false;
+        }
+        ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+        return raster.getDataBuffer().getOffset() == 0 && model.getPixelStride() == 1 && model.getScanlineStride() == raster.getWidth()
+                && model.getBandOffsets()[0] == 0 && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+    
+    /**
+     * The SEM image proper, or its overview for images decoded by region.
      */
     private BufferedImage sem_image;
     /**
      * Whether or not this image is a valid SEM image that can be displayed.
      */
     private final boolean displayable;
+    /**
+     * The path to the image file, used to decode regions.
+     */
+    private final String filepath;
+    /**
+     * The width of the image in pixels at full resolution.
+     */
+    private int full_width;
+    /**
+     * The height of the image in pixels at full resolution.
+     */
+    private int full_height;
+    /**
+     * The number of full resolution pixels spanned by each pixel of {@link #sem_image}.
+     */
+    private int overview_subsampling;
+    /**
+     * The whole of {@link #sem_image} followed by its successive halvings.
+     */
+    private final SEMPyramid pyramid;
+    /**
+     * The last region decoded by {@link #getRegion(Rectangle2D, double, boolean)}, or <code>null</code>.
+     */
+    private SEMRegion region;
+    /**
+     * The part of the image covered by {@link #region}, in full resolution pixels.
+     */
+    private Rectangle region_bounds;
+    /**
+     * The subsampling that was requested when {@link #region} was decoded. 
+     * This is finer than the scale of the region when the region was too large to decode at the requested subsampling.
+     */
+    private int region_subsampling;
+    
+    /**
+     * The number of pixels above which an image is decoded by region instead of in full (64 megapixels).
+     */
+    public static final long REGION_THRESHOLD = 1L << 26;
+    /**
+     * The largest width or height of the overview of an image that is decoded by region.
+     */
+    private static final int OVERVIEW_SIZE = 2048;
+    /**
+     * The margin decoded around the requested area of a region, as a fraction of the area's size.
+     */
+    private static final double REGION_MARGIN = 0.25;
+    /**
+     * The largest number of pixels in a decoded region.
+     */
+    private static final long MAX_REGION_PIXELS = 1L << 24;
 }
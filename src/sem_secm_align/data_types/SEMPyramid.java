@@ -0,0 +1,165 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.util.Arrays;
+
+/**
+ * A mipmap pyramid of an SEM image: the image itself followed by successive halvings of it, each made by averaging 2x2 blocks of the level above.
+ * <p>Drawing a reduced image from the level that matches the drawing scale is faster than sampling the full image and shows less aliasing.
+ * The halvings are built on a background thread; until a level is ready the finest level that is ready is used instead.</p>
+ * @author Nathaniel
+ */
+class SEMPyramid {
+
+    /**
+     * Creates a pyramid holding only its base level. Call {@link #startBuilding()} to build the other levels.
+     * @param base The full image of the pyramid.
+     * @param base_scale The number of full resolution SEM pixels spanned by each pixel of <code>base</code>.
+     */
+    SEMPyramid(BufferedImage base, int base_scale){
+        this.base_scale = base_scale;
+        levels = new SEMRegion[]{new SEMRegion(base, 0, 0, base_scale)};
+    }
+
+    /**
+     * Starts building the halvings on a background thread. Levels become available to {@link #getLevel(double)} as soon as each one is finished.
+     * Nothing is built for images that are already small.
+     */
+    void startBuilding(){
+        BufferedImage base = levels[0].getImage();
+        if(Math.max(base.getWidth(), base.getHeight()) <= MIN_LEVEL_SIZE){
+            return;
+        }
+        Thread builder = new Thread(this::build, "SEM mipmap builder");
+        builder.setDaemon(true);
+        builder.setPriority(Thread.MIN_PRIORITY);
+        builder.start();
+    }
+
+    /**
+     * Returns the level to draw at a given resolution: the coarsest level whose pixels are no larger than one screen pixel.
+     * @param resolution The number of full resolution SEM pixels that will be drawn onto each screen pixel.
+     * @return The level, covering the whole image.
+     */
+    SEMRegion getLevel(double resolution){
+        SEMRegion[] built = levels;
+        int level = 0;
+        while(level + 1 < built.length && built[level + 1].getScale() <= resolution){
+            level ++;
+        }
+        return built[level];
+    }
+
+    /**
+     * Returns the full level of the pyramid, which does not depend on how far the halvings have been built.
+     * @return The base level, covering the whole image.
+     */
+    SEMRegion getBase(){
+        return levels[0];
+    }
+
+    /**
+     * Builds each halving in turn until the image is no larger than {@link #MIN_LEVEL_SIZE}, publishing each level as it is finished.
+     */
+    private void build(){
+        BufferedImage image = levels[0].getImage();
+        int scale = base_scale;
+        while(Math.max(image.getWidth(), image.getHeight()) > MIN_LEVEL_SIZE){
+            image = halve(image);
+            scale *= 2;
+            SEMRegion[] built = Arrays.copyOf(levels, levels.length + 1);
+            built[built.length - 1] = new SEMRegion(image, 0, 0, scale);
+            levels = built;
+        }
+    }
+
+    /**
+     * Halves an image by averaging each 2x2 block of pixels. Odd edges repeat their last row or column.
+     * Grayscale images keep their bit depth. Other images are averaged channel by channel as ARGB.
+     * @param image The image to be halved.
+     * @return The halved image, <code>ceil(width/2)</code> by <code>ceil(height/2)</code> pixels.
+     */
+    static BufferedImage halve(BufferedImage image){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int half_width = (width + 1)/2;
+        int half_height = (height + 1)/2;
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:{
+                byte[] source = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+                BufferedImage half = new BufferedImage(half_width, half_height, BufferedImage.TYPE_BYTE_GRAY);
+                byte[] target = ((DataBufferByte)half.getRaster().getDataBuffer()).getData();
+                for(int y = 0; y < half_height; y++){
+                    int row1 = 2*y*width;
+                    int row2 = Math.min(2*y + 1, height - 1)*width;
+                    for(int x = 0; x < half_width; x++){
+                        int x1 = 2*x;
+                        int x2 = Math.min(x1 + 1, width - 1);
+                        int sum = (source[row1 + x1] & 0xFF) + (source[row1 + x2] & 0xFF) + (source[row2 + x1] & 0xFF) + (source[row2 + x2] & 0xFF);
+                        target[y*half_width + x] = (byte)((sum + 2) >> 2);
+                    }
+                }
+                return half;
+            }
+            case BufferedImage.TYPE_USHORT_GRAY:{
+                short[] source = ((DataBufferUShort)image.getRaster().getDataBuffer()).getData();
+                BufferedImage half = new BufferedImage(half_width, half_height, BufferedImage.TYPE_USHORT_GRAY);
+                short[] target = ((DataBufferUShort)half.getRaster().getDataBuffer()).getData();
+                for(int y = 0; y < half_height; y++){
+                    int row1 = 2*y*width;
+                    int row2 = Math.min(2*y + 1, height - 1)*width;
+                    for(int x = 0; x < half_width; x++){
+                        int x1 = 2*x;
+                        int x2 = Math.min(x1 + 1, width - 1);
+                        int sum = (source[row1 + x1] & 0xFFFF) + (source[row1 + x2] & 0xFFFF) + (source[row2 + x1] & 0xFFFF) + (source[row2 + x2] & 0xFFFF);
+                        target[y*half_width + x] = (short)((sum + 2) >> 2);
+                    }
+                }
+                return half;
+            }
+            default:{
+                BufferedImage half = new BufferedImage(half_width, half_height, BufferedImage.TYPE_INT_ARGB);
+                int[] target = ((DataBufferInt)half.getRaster().getDataBuffer()).getData();
+                int[] row1 = new int[width];
+                int[] row2 = new int[width];
+                for(int y = 0; y < half_height; y++){
+                    image.getRGB(0, 2*y, width, 1, row1, 0, width);
+                    image.getRGB(0, Math.min(2*y + 1, height - 1), width, 1, row2, 0, width);
+                    for(int x = 0; x < half_width; x++){
+                        int x1 = 2*x;
+                        int x2 = Math.min(x1 + 1, width - 1);
+                        int argb = 0;
+                        for(int shift = 0; shift < 32; shift += 8){
+                            int sum = ((row1[x1] >>> shift) & 0xFF) + ((row1[x2] >>> shift) & 0xFF) + ((row2[x1] >>> shift) & 0xFF) + ((row2[x2] >>> shift) & 0xFF);
+                            argb |= ((sum + 2) >> 2) << shift;
+                        }
+                        target[y*half_width + x] = argb;
+                    }
+                }
+                return half;
+            }
+        }
+    }
+
+    /**
+     * The number of full resolution SEM pixels spanned by each pixel of the base level.
+     */
+    private final int base_scale;
+    /**
+     * The levels built so far, from finest to coarsest. Replaced, never modified, as levels are added.
+     */
+    private volatile SEMRegion[] levels;
+
+    /**
+     * Halving stops once the width and height of a level are both at most this many pixels.
+     */
+    private static final int MIN_LEVEL_SIZE = 256;
+}
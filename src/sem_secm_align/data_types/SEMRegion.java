@@ -0,0 +1,92 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * A decoded part of an {@link SEMImage}, possibly at a reduced resolution.
+ * <p>Pixel <code>(i,j)</code> of {@link #getImage()} shows the SEM image's pixel <code>(x + i*scale, y + j*scale)</code>,
+ * where <code>x</code> and <code>y</code> are given by {@link #getX()} and {@link #getY()} and <code>scale</code> by {@link #getScale()}.</p>
+ * @author Nathaniel
+ */
+public class SEMRegion {
+
+    /**
+     * Creates a region.
+     * @param image The decoded pixels.
+     * @param x The x-index in the full SEM image of the first column of <code>image</code>.
+     * @param y The y-index in the full SEM image of the first row of <code>image</code>.
+     * @param scale The number of full resolution pixels spanned by each pixel of <code>image</code>.
+     */
+    public SEMRegion(BufferedImage image, int x, int y, double scale){
+        this.image = image;
+        this.x = x;
+        this.y = y;
+        this.scale = scale;
+    }
+
+    /**
+     * Returns the decoded pixels.
+     * @return The image of the region.
+     */
+    public BufferedImage getImage(){
+        return image;
+    }
+
+    /**
+     * Returns the x-index in the full SEM image of the first column of the region.
+     * @return The x-origin of the region in full resolution pixels.
+     */
+    public int getX(){
+        return x;
+    }
+
+    /**
+     * Returns the y-index in the full SEM image of the first row of the region.
+     * @return The y-origin of the region in full resolution pixels.
+     */
+    public int getY(){
+        return y;
+    }
+
+    /**
+     * Returns the number of full resolution pixels spanned by each pixel of the region.
+     * @return 1 for a full resolution region, larger for a reduced resolution region.
+     */
+    public double getScale(){
+        return scale;
+    }
+
+    /**
+     * Returns the transform from the pixels of the region to the pixels of the full SEM image.
+     * Appending it to a transform that draws the full SEM image gives a transform that draws this region in the same place.
+     * @return The transform from region pixels to full resolution pixels.
+     */
+    public AffineTransform toImageTransform(){
+        AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+        transform.scale(scale, scale);
+        return transform;
+    }
+
+    /**
+     * The decoded pixels.
+     */
+    private final BufferedImage image;
+    /**
+     * The x-index in the full SEM image of the first column.
+     */
+    private final int x;
+    /**
+     * The y-index in the full SEM image of the first row.
+     */
+    private final int y;
+    /**
+     * The number of full resolution pixels spanned by each pixel.
+     */
+    private final double scale;
+}
@@ -0,0 +1,163 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types.loaders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMPoints;
+
+/**
+ * Loads column-based ASCII exports such as the <code>.asc</code> files written by HEKA software.
+ * <p>Each data line holds the x-coordinate, y-coordinate and current in separate columns. Columns are separated by whitespace, tabs or commas,
+ * or by semicolons in which case a comma may also be used as the decimal separator.</p>
+ * <p>Header lines before the first data line are skipped, as are blank lines and lines beginning with <code>#</code>, <code>%</code> or <code>"</code>.
+ * The file is read one line at a time so that it never needs to be held in memory as text.</p>
+ * @author Nathaniel
+ */
+public class ASCIILoader implements SECMLoader{
+
+    /**
+     * Creates a loader that reads the x-coordinate, y-coordinate and current from the first three columns.
+     */
+    public ASCIILoader(){
+        this(0, 1, 2);
+    }
+
+    /**
+     * Creates a loader that reads the x-coordinate, y-coordinate and current from the given columns.
+     * @param x_column The index of the column holding the x-coordinate, starting from 0.
+     * @param y_column The index of the column holding the y-coordinate.
+     * @param current_column The index of the column holding the current.
+     */
+    public ASCIILoader(int x_column, int y_column, int current_column){
+        this.x_column = x_column;
+        this.y_column = y_column;
+        this.current_column = current_column;
+        column_count = Math.max(x_column, Math.max(y_column, current_column)) + 1;
+    }
+
+    @Override
+    public String getName(){
+        return "ASCII files";
+    }
+
+    @Override
+    public String[] getExtensions(){
+        return new String[]{"asc", "dat"};
+    }
+
+    /**
+     * Accepts files with an ASCII extension and text files whose first data line is not comma-separated.
+     * @param filepath The path to the file.
+     * @param head The first bytes of the file.
+     * @return true if the file appears to be a column-based ASCII file.
+     */
+    @Override
+    public boolean accepts(String filepath, byte[] head){
+        if(SECMLoaders.hasExtension(filepath, getExtensions())){
+            return true;
+        }
+        String text = new String(head, StandardCharsets.ISO_8859_1);
+        for(String line : text.split("\r\n|\n|\r")){
+            line = line.trim();
+            if(line.isEmpty() || isComment(line)){
+                continue;
+            }
+            char first = line.charAt(0);
+            if(Character.isDigit(first) || first == '-' || first == '+' || first == '.'){
+                return line.indexOf(';') >= 0 || line.indexOf(',') < 0;
+            }
+            if(first == 0){
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException{
+        SECMPoints points = new SECMPoints();
+        double[] values = new double[column_count];
+        boolean in_data = false;
+        int line_number = 0;
+        try(BufferedReader reader = Files.newBufferedReader(Paths.get(filepath), StandardCharsets.ISO_8859_1)){
+            String line;
+            while((line = reader.readLine()) != null){
+                line_number ++;
+                line = line.trim();
+                if(line.isEmpty() || isComment(line)){
+                    continue;
+                }
+                if(parseLine(line, values)){
+                    in_data = true;
+                    points.add(values[x_column], values[y_column], values[current_column]);
+                }
+                else if(in_data){
+                    throw new ImproperFileFormattingException("Line " + line_number + " could not be read as x, y and current values:\n" + line);
+                }
+            }
+        }
+        if(!in_data){
+            throw new ImproperFileFormattingException("No data lines were found in the file.");
+        }
+        return points;
+    }
+
+    /**
+     * Splits a line into columns and parses the columns that are needed.
+     * @param line The trimmed line.
+     * @param values Receives the parsed columns. Must hold at least {@link #column_count} values.
+     * @return true if the line holds enough numeric columns, false if it is not a data line.
+     */
+    private boolean parseLine(String line, double[] values){
+        boolean semicolons = line.indexOf(';') >= 0;
+        String[] columns = semicolons ? line.split("\\s*;\\s*") : line.split("[\\s,]+");
+        if(columns.length < column_count){
+            return false;
+        }
+        try{
+            for(int i = 0; i < column_count; i++){
+                String column = semicolons ? columns[i].replace(',', '.') : columns[i];
+                values[i] = Double.parseDouble(column);
+            }
+        }
+        catch(NumberFormatException e){
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a line is a comment.
+     * @param line The trimmed, non-empty line.
+     * @return true if the line begins with <code>#</code>, <code>%</code> or <code>"</code>.
+     */
+    private static boolean isComment(String line){
+        char first = line.charAt(0);
+        return first == '#' || first == '%' || first == '"';
+    }
+
+    /**
+     * The index of the column holding the x-coordinate.
+     */
+    private final int x_column;
+    /**
+     * The index of the column holding the y-coordinate.
+     */
+    private final int y_column;
+    /**
+     * The index of the column holding the current.
+     */
+    private final int current_column;
+    /**
+     * The number of columns that need to be parsed on each line.
+     */
+    private final int column_count;
+}
@@ -0,0 +1,45 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types.loaders;
+
+import java.io.IOException;
+import sem_secm_align.data_types.FluxReader;
+import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMPoints;
+
+/**
+ * Loads files created by Flux: https://github.com/LaboratoryForBioelectrochemicalImaging/fluxproject
+ * <p>Formatted as x,y,current. Reading is done by {@link FluxReader}.</p>
+ * @author Nathaniel
+ */
+public class FluxLoader implements SECMLoader{
+
+    @Override
+    public String getName(){
+        return "Flux files";
+    }
+
+    @Override
+    public String[] getExtensions(){
+        return new String[]{"txt", "csv"};
+    }
+
+    /**
+     * Accepts files with a Flux extension. Flux is also the fallback format of {@link SECMLoaders}.
+     * @param filepath The path to the file.
+     * @param head The first bytes of the file (not used).
+     * @return true if the file has one of the extensions of {@link #getExtensions()}.
+     */
+    @Override
+    public boolean accepts(String filepath, byte[] head){
+        return SECMLoaders.hasExtension(filepath, getExtensions());
+    }
+
+    @Override
+    public SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException{
+        return FluxReader.read(filepath);
+    }
+}
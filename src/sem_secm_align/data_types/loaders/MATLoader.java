@@ -0,0 +1,524 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types.loaders;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMPoints;
+
+/**
+ * Loads MATLAB level 5 MAT-files, such as those exported by HEKA software.
+ * <p>The file is mapped into memory with a {@link FileChannel} and the numeric arrays are decoded straight from their binary form,
+ * including arrays stored in compressed elements. Character, cell, structure, object and sparse arrays are skipped, as are imaginary parts.</p>
+ * <p>The points are taken from the numeric arrays of the file in one of the following layouts:</p>
+ * <ul>
+ * <li>arrays named <code>x</code> and <code>y</code> (in any case) along with a current array named <code>current</code>, <code>i</code>, <code>data</code> or <code>z</code>,
+ * or the only other numeric array in the file.
+ * If all three hold the same number of values they are read as lists of points.
+ * Otherwise the current must be a matrix with one row per y-coordinate and one column per x-coordinate (or the transpose),</li>
+ * <li>a single numeric array with three columns (or three rows) holding the x-coordinate, y-coordinate and current of each point.</li>
+ * </ul>
+ * <p>MAT-files saved with version 7.3 are HDF5 files and are not supported.</p>
+ * @author Nathaniel
+ */
+public class MATLoader implements SECMLoader{
+
+    @Override
+    public String getName(){
+        return "MATLAB files";
+    }
+
+    @Override
+    public String[] getExtensions(){
+        return new String[]{"mat"};
+    }
+
+    /**
+     * Accepts files that begin with the text of a MAT-file header.
+     * Version 7.3 files are accepted too so that {@link #read(java.lang.String)} can report that they are not supported.
+     * @param filepath The path to the file (not used).
+     * @param head The first bytes of the file.
+     * @return true if the file is a MAT-file.
+     */
+    @Override
+    public boolean accepts(String filepath, byte[] head){
+        String text = new String(head, 0, Math.min(head.length, HEADER_TEXT.length()), StandardCharsets.ISO_8859_1);
+        return text.equals(HEADER_TEXT) || text.equals(HDF5_HEADER_TEXT);
+    }
+
+    @Override
+    public SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException{
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size < HEADER_SIZE){
+                throw new ImproperFileFormattingException("The file is too short to be a MAT-file.");
+            }
+            if(size > Integer.MAX_VALUE){
+                throw new ImproperFileFormattingException("MAT-files larger than 2 GiB are not supported.");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] text = new byte[HEADER_TEXT_SIZE];
+            buffer.get(text);
+            String description = new String(text, StandardCharsets.ISO_8859_1);
+            if(description.startsWith(HDF5_HEADER_TEXT)){
+                throw new ImproperFileFormattingException("Version 7.3 MAT-files are not supported. Save the file with -v7 or earlier.");
+            }
+            if(!description.startsWith(HEADER_TEXT)){
+                throw new ImproperFileFormattingException("The file is not a MAT-file.");
+            }
+            //the endian indicator holds the characters "MI" written as a 16-bit integer
+            if(buffer.get(126) == 'I' && buffer.get(127) == 'M'){
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            else if(buffer.get(126) == 'M' && buffer.get(127) == 'I'){
+                buffer.order(ByteOrder.BIG_ENDIAN);
+            }
+            else{
+                throw new ImproperFileFormattingException("The MAT-file header has no valid endian indicator.");
+            }
+            buffer.position(HEADER_SIZE);
+            ArrayList<Variable> variables = new ArrayList<>();
+            while(buffer.remaining() >= 8){
+                readElement(buffer, variables);
+            }
+            if(buffer.hasRemaining()){
+                //part of a tag
+                throw new ImproperFileFormattingException("The MAT-file is truncated or corrupt.");
+            }
+            return toPoints(variables);
+        }
+        catch(IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e){
+            throw new ImproperFileFormattingException("The MAT-file is truncated or corrupt.");
+        }
+    }
+
+    /**
+     * Reads one top level data element, adding it to <code>variables</code> if it is a numeric array.
+     * @param buffer The file positioned at the start of the element. It is left positioned at the start of the next element.
+     * @param variables Receives the numeric arrays.
+     * @throws ImproperFileFormattingException If a compressed element cannot be decompressed.
+     */
+    private static void readElement(ByteBuffer buffer, ArrayList<Variable> variables) throws ImproperFileFormattingException{
+        int type = buffer.getInt(buffer.position());
+        ByteBuffer data = nextElement(buffer);
+        if(type == MI_COMPRESSED){
+            ByteBuffer inflated = inflate(data).order(buffer.order());
+            while(inflated.remaining() >= 8){
+                readElement(inflated, variables);
+            }
+        }
+        else if(type == MI_MATRIX){
+            Variable variable = readMatrix(data.order(buffer.order()));
+            if(variable != null){
+                variables.add(variable);
+            }
+        }
+    }
+
+    /**
+     * Reads the tag of a data element and returns its data, moving the buffer on to the next element.
+     * Both the normal and the small data element formats are handled.
+     * @param buffer The buffer positioned at the start of the element.
+     * @return A buffer holding only the data of the element. Its byte order is not set.
+     */
+    private static ByteBuffer nextElement(ByteBuffer buffer){
+        int tag = buffer.getInt();
+        int start;
+        int length;
+        if((tag >>> 16) != 0){
+            //small data element: the length is in the upper half of the tag and the data fills the next 4 bytes
+            length = tag >>> 16;
+            start = buffer.position();
+            buffer.position(start + 4);
+        }
+        else{
+            length = buffer.getInt();
+            start = buffer.position();
+            //compressed elements are not padded
+            int padded = (tag == MI_COMPRESSED) ? length : (length + 7) & ~7;
+            buffer.position(Math.min(buffer.limit(), start + padded));
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(start).limit(start + length);
+        return data.slice();
+    }
+
+    /**
+     * Returns the type of the data element at the current position of a buffer.
+     * @param buffer The buffer positioned at the start of the element.
+     * @return The type of the element, as one of the <code>MI_</code> constants.
+     */
+    private static int elementType(ByteBuffer buffer){
+        int tag = buffer.getInt(buffer.position());
+        return ((tag >>> 16) != 0) ? tag & 0xFFFF : tag;
+    }
+
+    /**
+     * Decompresses the data of an <code>miCOMPRESSED</code> element.
+     * @param data The zlib stream.
+     * @return The decompressed bytes.
+     * @throws ImproperFileFormattingException If the data is not a valid zlib stream or ends before the stream does.
+     */
+    private static ByteBuffer inflate(ByteBuffer data) throws ImproperFileFormattingException{
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(data);
+            byte[] output = new byte[Math.max(64, data.remaining()*4)];
+            int length = 0;
+            while(!inflater.finished()){
+                if(length == output.length){
+                    output = Arrays.copyOf(output, output.length*2);
+                }
+                int count = inflater.inflate(output, length, output.length - length);
+                if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+                length += count;
+            }
+            if(!inflater.finished()){
+                throw new ImproperFileFormattingException("A compressed element of the MAT-file is truncated.");
+            }
+            return ByteBuffer.wrap(output, 0, length).slice();
+        }
+        catch(DataFormatException e){
+            throw new ImproperFileFormattingException("A compressed element of the MAT-file is corrupt.");
+        }
+        finally{
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads an <code>miMATRIX</code> element.
+     * @param data The data of the element with its byte order set.
+     * @return The array, or <code>null</code> if it is not a numeric array.
+     */
+    private static Variable readMatrix(ByteBuffer data){
+        if(data.remaining() < 8){
+            //empty arrays may have no sub-elements
+            return null;
+        }
+        ByteBuffer flags = nextElement(data).order(data.order());
+        int array_class = flags.getInt(0) & 0xFF;
+        if(array_class < MX_DOUBLE || array_class > MX_UINT64){
+            return null;
+        }
+        ByteBuffer dimension_data = nextElement(data).order(data.order());
+        int[] dimensions = new int[dimension_data.remaining()/4];
+        for(int i = 0; i < dimensions.length; i++){
+            dimensions[i] = dimension_data.getInt();
+        }
+        ByteBuffer name = nextElement(data);
+        byte[] name_bytes = new byte[name.remaining()];
+        name.get(name_bytes);
+        int real_type = elementType(data);
+        double[] values = toDoubles(real_type, nextElement(data).order(data.order()));
+        if(values == null){
+            return null;
+        }
+        return new Variable(new String(name_bytes, StandardCharsets.ISO_8859_1), dimensions, values);
+    }
+
+    /**
+     * Converts the data of a numeric element to <code>double</code> values.
+     * MATLAB may store an array using a smaller type than its class when the values fit, so the element type is used rather than the array class.
+     * @param type The type of the element.
+     * @param data The data of the element with its byte order set.
+     * @return The values, or <code>null</code> if the type is not numeric.
+     */
+    private static double[] toDoubles(int type, ByteBuffer data){
+        double[] values;
+        switch (type) {
+            case MI_DOUBLE:
+                values = new double[data.remaining()/8];
+                data.asDoubleBuffer().get(values);
+                return values;
+            case MI_SINGLE:
+                values = new double[data.remaining()/4];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getFloat();
+                }
+                return values;
+            case MI_INT8:
+                values = new double[data.remaining()];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.get();
+                }
+                return values;
+            case MI_UINT8:
+                values = new double[data.remaining()];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.get() & 0xFF;
+                }
+                return values;
+            case MI_INT16:
+                values = new double[data.remaining()/2];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getShort();
+                }
+                return values;
+            case MI_UINT16:
+                values = new double[data.remaining()/2];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getShort() & 0xFFFF;
+                }
+                return values;
+            case MI_INT32:
+                values = new double[data.remaining()/4];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getInt();
+                }
+                return values;
+            case MI_UINT32:
+                values = new double[data.remaining()/4];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getInt() & 0xFFFFFFFFL;
+                }
+                return values;
+            case MI_INT64:
+                values = new double[data.remaining()/8];
+                for(int i = 0; i < values.length; i++){
+                    values[i] = data.getLong();
+                }
+                return values;
+            case MI_UINT64:
+                values = new double[data.remaining()/8];
+                for(int i = 0; i < values.length; i++){
+                    long value = data.getLong();
+                    values[i] = (value >= 0) ? value : (double)(value >>> 1)*2.0 + (value & 1);
+                }
+                return values;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Arranges the numeric arrays of a file into SECM points.
+     * @param variables The numeric arrays of the file.
+     * @return The points.
+     * @throws ImproperFileFormattingException If the arrays do not match any of the supported layouts.
+     * @see MATLoader
+     */
+    private static SECMPoints toPoints(ArrayList<Variable> variables) throws ImproperFileFormattingException{
+        Variable x = find(variables, "x");
+        Variable y = find(variables, "y");
+        if(x != null && y != null){
+            Variable current = null;
+            for(String name : CURRENT_NAMES){
+                current = find(variables, name);
+                if(current != null){
+                    break;
+                }
+            }
+            if(current == null && variables.size() == 3){
+                for(Variable variable : variables){
+                    if(variable != x && variable != y){
+                        current = variable;
+                    }
+                }
+            }
+            if(current != null){
+                return toPoints(x, y, current);
+            }
+        }
+        if(variables.size() == 1){
+            Variable table = variables.get(0);
+            if(table.dimensions.length == 2 && (table.dimensions[1] == 3 || table.dimensions[0] == 3)){
+                int count = table.values.length/3;
+                //arrays are stored column by column
+                boolean columns = table.dimensions[1] == 3;
+                SECMPoints points = new SECMPoints(count);
+                for(int i = 0; i < count; i++){
+                    if(columns){
+                        points.add(table.values[i], table.values[count + i], table.values[2*count + i]);
+                    }
+                    else{
+                        points.add(table.values[3*i], table.values[3*i + 1], table.values[3*i + 2]);
+                    }
+                }
+                return points;
+            }
+        }
+        throw new ImproperFileFormattingException("The MAT-file does not hold x, y and current arrays or a three column array of points.");
+    }
+
+    /**
+     * Arranges separate x-coordinate, y-coordinate and current arrays into SECM points.
+     * @param x The x-coordinates.
+     * @param y The y-coordinates.
+     * @param current The currents.
+     * @return The points.
+     * @throws ImproperFileFormattingException If the sizes of the arrays do not match.
+     */
+    private static SECMPoints toPoints(Variable x, Variable y, Variable current) throws ImproperFileFormattingException{
+        int nx = x.values.length;
+        int ny = y.values.length;
+        if(nx == ny && current.values.length == nx){
+            SECMPoints points = new SECMPoints(nx);
+            for(int i = 0; i < nx; i++){
+                points.add(x.values[i], y.values[i], current.values[i]);
+            }
+            return points;
+        }
+        if(current.dimensions.length == 2 && current.values.length == nx*ny){
+            int rows = current.dimensions[0];
+            int cols = current.dimensions[1];
+            boolean y_rows = rows == ny && cols == nx;
+            if(!y_rows && !(rows == nx && cols == ny)){
+                throw new ImproperFileFormattingException("The current array is " + rows + "x" + cols + " but there are " + nx + " x-coordinates and " + ny + " y-coordinates.");
+            }
+            SECMPoints points = new SECMPoints(nx*ny);
+            for(int col = 0; col < cols; col++){
+                for(int row = 0; row < rows; row++){
+                    double value = current.values[col*rows + row];
+                    if(y_rows){
+                        points.add(x.values[col], y.values[row], value);
+                    }
+                    else{
+                        points.add(x.values[row], y.values[col], value);
+                    }
+                }
+            }
+            return points;
+        }
+        throw new ImproperFileFormattingException("The sizes of the x (" + nx + "), y (" + ny + ") and " + current.name + " (" + current.values.length + ") arrays do not match.");
+    }
+
+    /**
+     * Finds an array by name.
+     * @param variables The arrays to search.
+     * @param name The name of the array, ignoring case.
+     * @return The first array with the name, or <code>null</code> if there is none.
+     */
+    private static Variable find(ArrayList<Variable> variables, String name){
+        for(Variable variable : variables){
+            if(variable.name.equalsIgnoreCase(name)){
+                return variable;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A numeric array read from a MAT-file.
+     */
+    private static class Variable{
+        /**
+         * Creates an array.
+         * @param name The name of the array.
+         * @param dimensions The size of each dimension of the array.
+         * @param values The real values of the array in column-major order.
+         */
+        Variable(String name, int[] dimensions, double[] values){
+            this.name = name;
+            this.dimensions = dimensions;
+            this.values = values;
+        }
+
+        /**
+         * The name of the array.
+         */
+        final String name;
+        /**
+         * The size of each dimension of the array.
+         */
+        final int[] dimensions;
+        /**
+         * The real values of the array in column-major order.
+         */
+        final double[] values;
+    }
+
+    /**
+     * The text at the start of every level 5 MAT-file.
+     */
+    private static final String HEADER_TEXT = "MATLAB 5.0 MAT-file";
+    /**
+     * The text at the start of a version 7.3 (HDF5) MAT-file.
+     */
+    private static final String HDF5_HEADER_TEXT = "MATLAB 7.3 MAT-file";
+    /**
+     * The size of the descriptive text of the header.
+     */
+    private static final int HEADER_TEXT_SIZE = 116;
+    /**
+     * The size of the file header.
+     */
+    private static final int HEADER_SIZE = 128;
+    /**
+     * The names given to the current array, in order of preference.
+     */
+    private static final String[] CURRENT_NAMES = {"current", "i", "data", "z"};
+
+    /**
+     * The data element type of 8-bit signed integer data.
+     */
+    private static final int MI_INT8 = 1;
+    /**
+     * The data element type of 8-bit unsigned integer data.
+     */
+    private static final int MI_UINT8 = 2;
+    /**
+     * The data element type of 16-bit signed integer data.
+     */
+    private static final int MI_INT16 = 3;
+    /**
+     * The data element type of 16-bit unsigned integer data.
+     */
+    private static final int MI_UINT16 = 4;
+    /**
+     * The data element type of 32-bit signed integer data.
+     */
+    private static final int MI_INT32 = 5;
+    /**
+     * The data element type of 32-bit unsigned integer data.
+     */
+    private static final int MI_UINT32 = 6;
+    /**
+     * The data element type of single precision data.
+     */
+    private static final int MI_SINGLE = 7;
+    /**
+     * The data element type of double precision data.
+     */
+    private static final int MI_DOUBLE = 9;
+    /**
+     * The data element type of 64-bit signed integer data.
+     */
+    private static final int MI_INT64 = 12;
+    /**
+     * The data element type of 64-bit unsigned integer data.
+     */
+    private static final int MI_UINT64 = 13;
+    /**
+     * The data element type of an array.
+     */
+    private static final int MI_MATRIX = 14;
+    /**
+     * The data element type of a zlib-compressed data element.
+     */
+    private static final int MI_COMPRESSED = 15;
+    /**
+     * The first numeric array class (double precision).
+     */
+    private static final int MX_DOUBLE = 6;
+    /**
+     * The last numeric array class (64-bit unsigned integer).
+     */
+    private static final int MX_UINT64 = 15;
+}
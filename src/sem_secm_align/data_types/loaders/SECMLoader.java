@@ -0,0 +1,47 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types.loaders;
+
+import java.io.IOException;
+import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMPoints;
+
+/**
+ * Reads the raw points of one SECM file format.
+ * Loaders are registered in {@link SECMLoaders}, which picks the loader for a file from its contents and extension.
+ * @author Nathaniel
+ */
+public interface SECMLoader {
+
+    /**
+     * Returns a short description of the file format, suitable for a file chooser.
+     * @return The name of the file format.
+     */
+    String getName();
+
+    /**
+     * Returns the file extensions usually used by this format.
+     * @return The extensions without the leading dot, in lower case.
+     */
+    String[] getExtensions();
+
+    /**
+     * Determines whether this loader recognizes a file.
+     * @param filepath The path to the file.
+     * @param head The first bytes of the file. May be shorter than {@link SECMLoaders#HEAD_SIZE} if the file is short.
+     * @return true if the file appears to be in this format.
+     */
+    boolean accepts(String filepath, byte[] head);
+
+    /**
+     * Reads every point in a file.
+     * @param filepath The path to the file.
+     * @return The points of the file. Their order does not matter.
+     * @throws IOException If the file is not found or cannot be read.
+     * @throws ImproperFileFormattingException If the contents of the file cannot be understood.
+     */
+    SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException;
+}
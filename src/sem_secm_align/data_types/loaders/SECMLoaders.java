@@ -0,0 +1,124 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.data_types.loaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import sem_secm_align.data_types.ImproperFileFormattingException;
+import sem_secm_align.data_types.SECMPoints;
+
+/**
+ * The registry of {@link SECMLoader}s and the means of picking one for a file.
+ * <p>Loaders are tried in the order of {@link #LOADERS}. The first one that accepts the file is used and files that no loader accepts are read as Flux files.</p>
+ * @author Nathaniel
+ */
+public class SECMLoaders {
+
+    /**
+     * Finds the loader for a file.
+     * @param filepath The path to the file.
+     * @return The first loader of {@link #LOADERS} that accepts the file, or the {@link FluxLoader} if none do.
+     * @throws IOException If the file is not found or cannot be read.
+     */
+    public static SECMLoader forFile(String filepath) throws IOException{
+        byte[] head = readHead(filepath);
+        for(SECMLoader loader : LOADERS){
+            if(loader.accepts(filepath, head)){
+                return loader;
+            }
+        }
+        return FLUX;
+    }
+
+    /**
+     * Reads every point in a file using the loader found by {@link #forFile(java.lang.String)}.
+     * @param filepath The path to the file.
+     * @return The points of the file.
+     * @throws IOException If the file is not found or cannot be read.
+     * @throws ImproperFileFormattingException If the contents of the file cannot be understood.
+     */
+    public static SECMPoints read(String filepath) throws IOException, ImproperFileFormattingException{
+        return forFile(filepath).read(filepath);
+    }
+
+    /**
+     * Returns the registered loaders.
+     * @return A copy of {@link #LOADERS}.
+     */
+    public static SECMLoader[] getLoaders(){
+        return LOADERS.clone();
+    }
+
+    /**
+     * Returns every extension used by the registered loaders.
+     * @return The extensions without the leading dot.
+     */
+    public static String[] getAllExtensions(){
+        return Arrays.stream(LOADERS).flatMap(loader -> Arrays.stream(loader.getExtensions())).distinct().toArray(String[]::new);
+    }
+
+    /**
+     * Determines whether a file has one of the given extensions.
+     * @param filepath The path to the file.
+     * @param extensions The extensions without the leading dot, in lower case.
+     * @return true if the extension of the file matches one of <code>extensions</code>, ignoring case.
+     */
+    static boolean hasExtension(String filepath, String[] extensions){
+        String name = Paths.get(filepath).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if(dot < 0){
+            return false;
+        }
+        String extension = name.substring(dot + 1);
+        for(String candidate : extensions){
+            if(candidate.equalsIgnoreCase(extension)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads up to {@link #HEAD_SIZE} bytes from the start of a file.
+     * @param filepath The path to the file.
+     * @return The first bytes of the file.
+     * @throws IOException If the file is not found or cannot be read.
+     */
+    private static byte[] readHead(String filepath) throws IOException{
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)){
+            ByteBuffer head = ByteBuffer.allocate((int)Math.min(HEAD_SIZE, channel.size()));
+            while(head.hasRemaining() && channel.read(head) >= 0){
+
+            }
+            return Arrays.copyOf(head.array(), head.position());
+        }
+    }
+
+    /**
+     * The number of bytes from the start of a file given to {@link SECMLoader#accepts(java.lang.String, byte[])}.
+     */
+    public static final int HEAD_SIZE = 512;
+    /**
+     * The loader for Flux files, used when no other loader accepts a file.
+     */
+    public static final SECMLoader FLUX = new FluxLoader();
+    /**
+     * The loader for MATLAB level 5 MAT-files.
+     */
+    public static final SECMLoader MAT = new MATLoader();
+    /**
+     * The loader for whitespace, tab or semicolon delimited ASCII files.
+     */
+    public static final SECMLoader ASCII = new ASCIILoader();
+    /**
+     * The registered loaders in the order in which they are tried. Binary formats come first since they can be recognized reliably.
+     */
+    private static final SECMLoader[] LOADERS = {MAT, ASCII, FLUX};
+}
@@ -1,6 +1,6 @@
 /*
  * Created: 2022-12-01
- * Updated: 2023-05-26
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.edge_detection;
@@ -23,6 +23,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import sem_secm_align.Visualizer;
+import sem_secm_align.data_types.BitGrid;
 import sem_secm_align.data_types.ImproperFileFormattingException;
 import sem_secm_align.settings.EdgeDetectionSettings;
 
@@ -296,12 +297,12 @@ public class EdgeDetectionWindow extends JFrame{
      * Triggered when {@link #apply_option} is pressed.
      * Requests edges from {@link #edge_display} and reports them to {@link #parent}.
      * @see EdgeVisualizer#getEdges() 
-     * @see Visualizer#setSwitches(int[][]) 
+     * @see Visualizer#setSwitches(sem_secm_align.data_types.BitGrid) 
      */
     private void applyDetection(){
-        int[][] edges = edge_display.getEdges();
+        BitGrid edges = edge_display.getEdges();
         int[] destination_size = parent.getReactivityGridSize();
-        if(edges.length == destination_size[0] && edges[0].length == destination_size[1]){
+        if(edges.getWidth() == destination_size[0] && edges.getHeight() == destination_size[1]){
             // export edges
             parent.setSwitches(edges);
         }
@@ -1,6 +1,6 @@
 /*
  * Created: 2022-12-15
- * Updated: 2023-05-26
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.edge_detection;
@@ -12,6 +12,8 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 import javax.swing.JPanel;
+import sem_secm_align.data_types.BitGrid;
+import sem_secm_align.settings.ColourMap;
 import sem_secm_align.settings.ColourSettings;
 import sem_secm_align.settings.EdgeDetectionSettings;
 import sem_secm_align.utility.filters.Filter;
@@ -247,6 +249,7 @@ public class EdgeVisualizer extends JPanel{
         
         
         //draw the image
+        ColourMap colour_map = ColourSettings.getColourMap(ed_settings.COLOR_MODE);
         for(int x_index = 0; x_index < data.length; x_index++){
             int xn0 = (int)(((double)x_index)*pixel_width);
             int xn1 = (int)(((double)x_index + 1)*pixel_width);
@@ -254,7 +257,7 @@ public class EdgeVisualizer extends JPanel{
                 int yn0 = (int)(((double)y_index)*pixel_height);
                 int yn1 = (int)(((double)y_index + 1)*pixel_height);
                 double dataval = Math.abs(data[x_index][y_index])/plotmax;
-                g.setColor(ColourSettings.colourScale(dataval, ed_settings.COLOR_MODE));
+                g.setColor(colour_map.getColour(dataval));
                 g.fillRect(x0+xn0, y0+yn0, xn1-xn0, yn1-yn0);
             }
         }
@@ -266,7 +269,7 @@ public class EdgeVisualizer extends JPanel{
         for(int y = 0; y <= plot_height; y++){
             double complement = plot_height - y;
             double brightness = complement/((double)plot_height);
-            g.setColor(ColourSettings.colourScale(brightness, ed_settings.COLOR_MODE));
+            g.setColor(colour_map.getColour(brightness));
             g.fillRect(x0_cscale, y + y0, COLOUR_BAR_WIDTH, 1);
         }
         g.setColor(ed_settings.AXES_COLOR);
@@ -539,20 +542,14 @@ public class EdgeVisualizer extends JPanel{
      * Returns the thresholded edges computed by this component.
      * @return The thresholded edges.
      */
-    public int[][] getEdges(){
+    public BitGrid getEdges(){
         int w = unthresholded_edges.length;
         int h = unthresholded_edges[0].length;
-        int[][] thresholded_edges = new int[w][h];
+        BitGrid thresholded_edges = new BitGrid(w, h);
         for(int x = 0; x < w; x++){
             for(int y = 0; y < h; y++){
-                if(unthresholded_edges[x][y] < lower_threshold){
-                    thresholded_edges[x][y] = 0;
-                }
-                else if(unthresholded_edges[x][y] <= upper_threshold){
-                    thresholded_edges[x][y] = 1;
-                }
-                else{
-                    thresholded_edges[x][y] = 0;
+                if(unthresholded_edges[x][y] >= lower_threshold && unthresholded_edges[x][y] <= upper_threshold){
+                    thresholded_edges.set(x, y, true);
                 }
             }
         }
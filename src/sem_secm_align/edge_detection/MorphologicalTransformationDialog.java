@@ -1,6 +1,6 @@
 /*
  * Created: 2023-04-06
- * Updated: 2023-05-10
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.edge_detection;
@@ -19,8 +19,12 @@ import javax.swing.JPanel;
 import sem_secm_align.Visualizer;
 import sem_secm_align.utility.filters.BinaryFilter;
 import sem_secm_align.utility.filters.Close;
+import sem_secm_align.utility.filters.CloseDisk;
 import sem_secm_align.utility.filters.CloseSpecial;
+import sem_secm_align.utility.filters.DilateDisk;
+import sem_secm_align.utility.filters.ErodeDisk;
 import sem_secm_align.utility.filters.Open;
+import sem_secm_align.utility.filters.OpenDisk;
 
 /**
  * A dialog box that allows the user to perform morphological operations on the reactivity grid.
@@ -147,7 +151,7 @@ public class MorphologicalTransformationDialog extends JFrame{
     /**
      * The list of filters and their labels
      */
-    private BinaryFilter[] available_filters = new BinaryFilter[]{new Close(3), new Close(5), new Close(7), new CloseSpecial(7), new Close(9), new CloseSpecial(9), new Close(11), new CloseSpecial(11), new Close(15), new CloseSpecial(15), new Open(3), new Open(5), new Open(7)};
+    private BinaryFilter[] available_filters = new BinaryFilter[]{new Close(3), new Close(5), new Close(7), new CloseSpecial(7), new Close(9), new CloseSpecial(9), new Close(11), new CloseSpecial(11), new Close(15), new CloseSpecial(15), new Close(31), new Close(63), new Open(3), new Open(5), new Open(7), new CloseDisk(3), new CloseDisk(5), new CloseDisk(10), new CloseDisk(20), new OpenDisk(3), new OpenDisk(5), new OpenDisk(10), new DilateDisk(2), new ErodeDisk(2)};
     
     /**
      * The {@link Visualizer} element to which this window reports.
@@ -0,0 +1,165 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.settings;
+
+import java.awt.Color;
+import static sem_secm_align.settings.Constants.RELATIVE_ERR_CUTOFF;
+
+/**
+ * A colour scale held as a precomputed table of packed ARGB colours.
+ * <p>An input between <code>0</code> and <code>1</code> is mapped to entry <code>(int)(input*(size - 1))</code> of the table, 
+ * so a table of 256 entries reproduces an 8-bit colour scale exactly. Inputs outside that range are clamped to the ends of the table.
+ * {@link Double#NaN} is given its own colour and, optionally, so are inputs less than {@link Constants#RELATIVE_ERR_CUTOFF}.</p>
+ * @author Nathaniel
+ * @see ColourSettings#getColourMap(int)
+ */
+public class ColourMap {
+    
+    /**
+     * Creates a colour map without a separate colour for zero.
+     * @param name The name of the colour map.
+     * @param table The packed ARGB colours from the colour of <code>0</code> to the colour of <code>1</code>. Must have at least two entries.
+     * @param nan_colour The packed ARGB colour of {@link Double#NaN}.
+     */
+    public ColourMap(String name, int[] table, int nan_colour){
+        this(name, table, false, 0, nan_colour);
+    }
+    
+    /**
+     * Creates a colour map with a separate colour for inputs less than {@link Constants#RELATIVE_ERR_CUTOFF}.
+     * @param name The name of the colour map.
+     * @param table The packed ARGB colours from the colour of <code>0</code> to the colour of <code>1</code>. Must have at least two entries.
+     * @param zero_colour The packed ARGB colour of inputs less than {@link Constants#RELATIVE_ERR_CUTOFF}.
+     * @param nan_colour The packed ARGB colour of {@link Double#NaN}.
+     */
+    public ColourMap(String name, int[] table, int zero_colour, int nan_colour){
+        this(name, table, true, zero_colour, nan_colour);
+    }
+    
+    /**
+     * Creates a colour map.
+     * @param name The name of the colour map.
+     * @param table The packed ARGB colours from the colour of <code>0</code> to the colour of <code>1</code>.
+     * @param has_zero_colour Whether inputs less than {@link Constants#RELATIVE_ERR_CUTOFF} are given <code>zero_colour</code>.
+     * @param zero_colour The packed ARGB colour of inputs less than {@link Constants#RELATIVE_ERR_CUTOFF}.
+     * @param nan_colour The packed ARGB colour of {@link Double#NaN}.
+     */
+    private ColourMap(String name, int[] table, boolean has_zero_colour, int zero_colour, int nan_colour){
+        this.name = name;
+        this.table = table.clone();
+        this.has_zero_colour = has_zero_colour;
+        this.zero_colour = zero_colour;
+        this.nan_colour = nan_colour;
+        index_scale = table.length - 1;
+        colours = new Color[table.length];
+        for(int i = 0; i < table.length; i++){
+            colours[i] = new Color(table[i], true);
+        }
+        zero = new Color(zero_colour, true);
+        nan = new Color(nan_colour, true);
+    }
+    
+    /**
+     * Returns the packed ARGB colour of an input.
+     * @param input The input data, normally between <code>0</code> and <code>1</code>.
+     * @return The colour of <code>input</code> as packed ARGB.
+     */
+    public int getARGB(double input){
+        if(input != input){
+            return nan_colour;
+        }
+        if(has_zero_colour && input < RELATIVE_ERR_CUTOFF){
+            return zero_colour;
+        }
+        return table[getIndex(input)];
+    }
+    
+    /**
+     * Returns the colour of an input. The same {@link Color} instance is returned for every input that maps to the same entry of the table.
+     * @param input The input data, normally between <code>0</code> and <code>1</code>.
+     * @return The colour of <code>input</code>.
+     */
+    public Color getColour(double input){
+        if(input != input){
+            return nan;
+        }
+        if(has_zero_colour && input < RELATIVE_ERR_CUTOFF){
+            return zero;
+        }
+        return colours[getIndex(input)];
+    }
+    
+    /**
+     * Returns the name of this colour map.
+     * @return The name to be shown to the user.
+     */
+    public String getName(){
+        return name;
+    }
+    
+    /**
+     * Returns the number of entries in the table of this colour map.
+     * @return The size of the table.
+     */
+    public int getSize(){
+        return table.length;
+    }
+    
+    @Override
+    public String toString(){
+        return name;
+    }
+    
+    /**
+     * Maps an input to an entry of {@link #table}.
+     * @param input The input data, not {@link Double#NaN}.
+     * @return <code>(int)(input*(size - 1))</code> clamped to the table.
+     */
+    private int getIndex(double input){
+        int index = (int)(input*index_scale);
+        if(index < 0){
+            return 0;
+        }
+        return index > index_scale ? index_scale : index;
+    }
+    
+    /**
+     * The name of this colour map.
+     */
+    private final String name;
+    /**
+     * The packed ARGB colours from the colour of <code>0</code> to the colour of <code>1</code>.
+     */
+    private final int[] table;
+    /**
+     * {@link #table} as {@link Color}s, so that {@link #getColour(double)} does not need to create any.
+     */
+    private final Color[] colours;
+    /**
+     * The largest index of {@link #table}, by which inputs are multiplied to find their entry.
+     */
+    private final int index_scale;
+    /**
+     * Whether inputs less than {@link Constants#RELATIVE_ERR_CUTOFF} are given {@link #zero_colour}.
+     */
+    private final boolean has_zero_colour;
+    /**
+     * The packed ARGB colour of inputs less than {@link Constants#RELATIVE_ERR_CUTOFF}, if {@link #has_zero_colour} is set.
+     */
+    private final int zero_colour;
+    /**
+     * {@link #zero_colour} as a {@link Color}.
+     */
+    private final Color zero;
+    /**
+     * The packed ARGB colour of {@link Double#NaN}.
+     */
+    private final int nan_colour;
+    /**
+     * {@link #nan_colour} as a {@link Color}.
+     */
+    private final Color nan;
+}
@@ -1,12 +1,11 @@
 /*
  * Created: 2022-04-12
- * Updated: 2023-01-13
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.settings;
 
 import java.awt.Color;
-import static sem_secm_align.settings.Constants.RELATIVE_ERR_CUTOFF;
 
 /**
  * Holds colours that are used by the visualizer in a centralized place.
@@ -16,7 +15,8 @@ public class ColourSettings {
     
     /**
      * Returns a colour according to <code>input</code> and a colour scale.
-     * @param input The input data. Must be a value between <code>0</code> and <code>1</code>.
+     * The colour is looked up in the precomputed {@link ColourMap} of the scale, so no new {@link Color} is created.
+     * @param input The input data. Should be a value between <code>0</code> and <code>1</code>; other values are clamped.
      * @param mode Selector for the colour scale to be used. Options are:
      * <ul>
      * <li>{@link #CSCALE_GREY}: Greyscale where <code>0</code> is black and <code>1</code> is white.</li>
@@ -26,26 +26,36 @@ public class ColourSettings {
      * @return The scaled colour or {@link #BACKGROUND_COLOUR} if an invalid mode is selected.
      */
     public static Color colourScale(double input, int mode){
-        int v;
-        switch(mode){          
-            case CSCALE_GREY:
-                v = (int)(255.0*input);
-                return new Color(v,v,v);
-            case CSCALE_GREY_MAGENTAZERO:
-                v = (int)(255.0*input);
-                if(input < RELATIVE_ERR_CUTOFF){
-                    return new Color(255,0,255);
-                }
-                return new Color(v,v,v);
-            case CSCALE_RED_BLACKZERO:
-                v = (int)(255.0*input);
-                if(input < RELATIVE_ERR_CUTOFF){
-                    return new Color(0,0,0);
-                }
-                return new Color(255,v,v);
-            default:
-                return BACKGROUND_COLOUR;
+        ColourMap map = getColourMap(mode);
+        if(map == null){
+            return BACKGROUND_COLOUR;
         }
+        return map.getColour(input);
+    }
+    
+    /**
+     * Returns the colour map of a colour scale.
+     * @param mode Selector for the colour scale. See {@link #colourScale(double, int)} for the options.
+     * @return The colour map, or <code>null</code> if an invalid mode is selected.
+     */
+    public static ColourMap getColourMap(int mode){
+        if(mode < 0 || mode >= COLOUR_MAPS.length){
+            return null;
+        }
+        return COLOUR_MAPS[mode];
+    }
+    
+    /**
+     * Builds the table of an 8-bit colour scale whose red, green and blue channels all rise from <code>0</code> to <code>255</code>.
+     * @param base The packed ARGB colour that is combined with each level. Channels set in <code>base</code> stay at <code>255</code>.
+     * @return A table of 256 packed ARGB colours.
+     */
+    private static int[] levelTable(int base){
+        int[] table = new int[256];
+        for(int v = 0; v < table.length; v++){
+            table[v] = base | (v << 16) | (v << 8) | v;
+        }
+        return table;
     }
     
     /**
@@ -89,4 +99,14 @@ public class ColourSettings {
      * Otherwise, {@link #colourScale(double, int) } will output magenta.
      */
     public static final int CSCALE_RED_BLACKZERO = 2;
+    
+    /**
+     * The colour maps of each {@link #colourScale(double, int) } mode, indexed by mode.
+     * The 8-bit scales keep their 256 levels so that they look exactly as they always have.
+     */
+    private static final ColourMap[] COLOUR_MAPS = {
+        new ColourMap("Greyscale", levelTable(0xFF000000), 0xFF000000),
+        new ColourMap("Greyscale, magenta zero", levelTable(0xFF000000), 0xFFFF00FF, 0xFF000000),
+        new ColourMap("Redscale, black zero", levelTable(0xFFFF0000), 0xFF000000, 0xFFFF0000)
+    };
 }
@@ -1,12 +1,21 @@
 /*
  * Created: 2022-12-06
- * Updated: 2022-12-06
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.stream.IntStream;
 import sem_secm_align.data_types.ImproperFileFormattingException;
 
 /**
@@ -18,27 +27,174 @@ public class ImageParser {
     /**
      * Parses a given image and converts it into a double[][] that reflects the grayscale values for the image.
      * @param image The image to be converted.
-     * @return The grayscale values of the image (the average of the red green and blue channels).
-     * @see BufferedImage#getRGB(int, int) 
-     * @see Color#Color(int) 
+     * @return The grayscale values of the image (the average of the red green and blue channels) indexed as <code>imagedata[x][y]</code>.
+     * @see #bufferedImageToGrayscaleFlat(BufferedImage) 
      */
     public static double[][] bufferedImageToGrayscale(BufferedImage image){
         
         int width = image.getWidth();
         int height = image.getHeight();
         
+        double[] flat = bufferedImageToGrayscaleFlat(image);
         double[][] imagedata = new double[width][height];
         
-        for(int y = 0; y < height; y++){
-            for(int x = 0; x < width; x++){
-                Color c = new Color(image.getRGB(x, y));
-                imagedata[x][y] += c.getBlue() + c.getGreen() + c.getRed();
-                imagedata[x][y] /= 3;
+        for(int x = 0; x < width; x++){
+            double[] column = imagedata[x];
+            for(int y = 0; y < height; y++){
+                column[y] = flat[y*width + x];
             }
         }
         
         return imagedata;
         
     }
+    
+    /**
+     * Parses a given image and converts it into a single row-major array that reflects the grayscale values for the image.
+     * <p>The values are the same as averaging the red, green and blue channels of {@link BufferedImage#getRGB(int, int)}, 
+     * but the common image types are read straight from their {@link DataBuffer} without creating a {@link Color} for each pixel:
+     * {@link BufferedImage#TYPE_BYTE_GRAY}, {@link BufferedImage#TYPE_USHORT_GRAY}, {@link BufferedImage#TYPE_INT_RGB}, {@link BufferedImage#TYPE_INT_ARGB} and {@link BufferedImage#TYPE_3BYTE_BGR}.
+     * Other types are read a row at a time through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+     * Rows are converted in parallel for large images.</p>
+     * @param image The image to be converted.
+     * @return The grayscale values of the image, with the value at <code>(x,y)</code> at index <code>y*width + x</code>.
+     */
+    public static double[] bufferedImageToGrayscaleFlat(BufferedImage image){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] imagedata = new double[width*height];
+        RowConverter converter = converterFor(image, imagedata);
+        IntStream rows = IntStream.range(0, height);
+        if((long)width*height >= PARALLEL_THRESHOLD){
+            rows = rows.parallel();
+        }
+        rows.forEach(converter::convertRow);
+        return imagedata;
+    }
+    
+    /**
+     * Picks the fastest way of converting the rows of an image.
+     * @param image The image to be converted.
+     * @param imagedata Receives the grayscale values row by row.
+     * @return The converter for the image.
+     */
+    private static RowConverter converterFor(BufferedImage image, double[] imagedata){
+        int width = image.getWidth();
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:{
+                //gray images are stored in a linear colour space, so getRGB applies a gamma curve; tabulate it once
+                ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+                int scan = model.getScanlineStride();
+                int pixel = model.getPixelStride();
+                int start = buffer.getOffset() - ty*scan - tx*pixel + model.getBandOffsets()[0];
+                double[] table = grayTable(image.getColorModel(), image.getType() == BufferedImage.TYPE_BYTE_GRAY ? 256 : 65536);
+                if(buffer instanceof DataBufferByte){
+                    byte[] data = ((DataBufferByte)buffer).getData();
+                    return y -> {
+                        int index = start + y*scan;
+                        int out = y*width;
+                        for(int x = 0; x < width; x++, index += pixel){
+                            imagedata[out + x] = table[data[index] & 0xFF];
+                        }
+                    };
+                }
+                short[] data = ((DataBufferUShort)buffer).getData();
+                return y -> {
+                    int index = start + y*scan;
+                    int out = y*width;
+                    for(int x = 0; x < width; x++, index += pixel){
+                        imagedata[out + x] = table[data[index] & 0xFFFF];
+                    }
+                };
+            }
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:{
+                int scan = ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+                int start = buffer.getOffset() - ty*scan - tx;
+                int[] data = ((DataBufferInt)buffer).getData();
+                return y -> {
+                    int index = start + y*scan;
+                    int out = y*width;
+                    for(int x = 0; x < width; x++){
+                        int rgb = data[index + x];
+                        imagedata[out + x] = (double)(((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+                    }
+                };
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:{
+                ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+                int scan = model.getScanlineStride();
+                int pixel = model.getPixelStride();
+                int start = buffer.getOffset() - ty*scan - tx*pixel;
+                int[] offsets = model.getBandOffsets();
+                int red = offsets[0];
+                int green = offsets[1];
+                int blue = offsets[2];
+                byte[] data = ((DataBufferByte)buffer).getData();
+                return y -> {
+                    int index = start + y*scan;
+                    int out = y*width;
+                    for(int x = 0; x < width; x++, index += pixel){
+                        imagedata[out + x] = (double)((data[index + red] & 0xFF) + (data[index + green] & 0xFF) + (data[index + blue] & 0xFF)) / 3;
+                    }
+                };
+            }
+            default:
+                return y -> {
+                    int[] row = image.getRGB(0, y, width, 1, null, 0, width);
+                    int out = y*width;
+                    for(int x = 0; x < width; x++){
+                        int rgb = row[x];
+                        imagedata[out + x] = (double)(((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+                    }
+                };
+        }
+    }
+    
+    /**
+     * Tabulates the grayscale value of every level of a single-channel image.
+     * @param model The colour model of the image.
+     * @param levels The number of levels: 256 for 8-bit images and 65536 for 16-bit images.
+     * @return The average of the red, green and blue channels given by {@link ColorModel#getRGB(Object)} for each level, as used by {@link BufferedImage#getRGB(int, int)}.
+     */
+    private static double[] grayTable(ColorModel model, int levels){
+        double[] table = new double[levels];
+        byte[] byte_level = new byte[1];
+        short[] short_level = new short[1];
+        for(int level = 0; level < levels; level++){
+            int rgb;
+            if(levels == 256){
+                byte_level[0] = (byte)level;
+                rgb = model.getRGB(byte_level);
+            }
+            else{
+                short_level[0] = (short)level;
+                rgb = model.getRGB(short_level);
+            }
+            table[level] = (double)(((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+        }
+        return table;
+    }
+    
+    /**
+     * Converts one row of an image to grayscale.
+     */
+    private interface RowConverter{
+        /**
+         * Converts a row.
+         * @param y The index of the row.
+         */
+        void convertRow(int y);
+    }
+    
+    /**
+     * The number of pixels above which rows are converted in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 1 << 18;
        
 }
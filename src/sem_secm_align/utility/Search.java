@@ -1,6 +1,6 @@
 /*
  * Created: 2020-12-14
- * Updated: 2021-05-19
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility;
@@ -19,25 +19,25 @@ public class Search {
      * @return -1 if all values in the array above the minimum index are greater than or equal to the key. Otherwise returns the highest index for which array[index] &lt; key is true.
      */
     private static int FindSmaller(double key, double[] array, int min, int max){
-        if(array[max] < key){
-            return max;
-        }
-        else if(array[min] >= key){
-            return -1;
-        }
-        else if(max-min <=1){
-            return min;
-        }
-        else{
+        while(true){
+            if(array[max] < key){
+                return max;
+            }
+            else if(array[min] >= key){
+                return -1;
+            }
+            else if(max-min <=1){
+                return min;
+            }
             int mid = (max - min) / 2 + min;
             if(array[mid] == key){
                 return mid - 1;
             }
             else if(array[mid] < key){
-                return FindSmaller(key, array, mid, max);
+                min = mid;
             }
             else{
-                return FindSmaller(key, array, min, mid);
+                max = mid;
             }
         }
     }
@@ -51,4 +51,84 @@ public class Search {
     public static int FindSmaller(double key, double[] array){
         return FindSmaller(key, array, 0, array.length - 1);
     }
+    
+    /**
+     * A search over one sorted array that remembers where its last result was.
+     * <p>Each search starts from the previous result and gallops (steps of 1, 2, 4, ...) towards the key before finishing with a binary search, 
+     * so a sequence of increasing or decreasing keys costs amortised constant time per key instead of a full binary search each time.
+     * Keys in random order still cost at most about twice as much as {@link Search#FindSmaller(double, double[])}.</p>
+     * <p>A cursor holds state and so must not be shared between threads.</p>
+     */
+    public static class Cursor{
+        /**
+         * Creates a cursor positioned before the start of the array.
+         * @param array an array of distinct values sorted in order of lowest to highest. The array is not copied.
+         */
+        public Cursor(double[] array){
+            this.array = array;
+            position = -1;
+        }
+        
+        /**
+         * Returns the index in the array that has the greatest value that is strictly less than the key.
+         * Gives the same result as {@link Search#FindSmaller(double, double[])}.
+         * @param key the value against which array elements will be compared.
+         * @return -1 if all values in the array are greater than or equal to the key. Otherwise returns the highest index for which array[index] &lt; key is true.
+         */
+        public int findSmaller(double key){
+            if(Double.isNaN(key)){
+                return FindSmaller(key, array);
+            }
+            int lower;
+            int upper;
+            if(position + 1 < array.length && array[position + 1] < key){
+                //gallop forward: array[lower] < key
+                lower = position + 1;
+                int step = 1;
+                upper = lower + step;
+                while(upper < array.length && array[upper] < key){
+                    lower = upper;
+                    step *= 2;
+                    upper = lower + step;
+                }
+                upper = Math.min(upper, array.length);
+            }
+            else if(position >= 0 && array[position] >= key){
+                //gallop backward: array[upper] >= key
+                upper = position;
+                int step = 1;
+                lower = upper - step;
+                while(lower >= 0 && array[lower] >= key){
+                    upper = lower;
+                    step *= 2;
+                    lower = upper - step;
+                }
+                lower = Math.max(lower, -1);
+            }
+            else{
+                return position;
+            }
+            //array[lower] < key <= array[upper], treating array[-1] as -infinity and array[length] as +infinity
+            while(upper - lower > 1){
+                int mid = (upper - lower) / 2 + lower;
+                if(array[mid] < key){
+                    lower = mid;
+                }
+                else{
+                    upper = mid;
+                }
+            }
+            position = lower;
+            return position;
+        }
+        
+        /**
+         * The array being searched.
+         */
+        private final double[] array;
+        /**
+         * The result of the last search.
+         */
+        private int position;
+    }
 }
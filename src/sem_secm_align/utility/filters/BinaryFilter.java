@@ -1,10 +1,12 @@
 /*
  * Created: 2023-04-06
- * Updated: 2023-04-06
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility.filters;
 
+import sem_secm_align.data_types.BitGrid;
+
 /**
  *
  * @author Nathaniel
@@ -15,7 +17,7 @@ public interface BinaryFilter {
      * @param input_grid the data to be filtered.
      * @return The filtered data.
      */
-    int[][] applyFilter(int[][] input_grid);
+    BitGrid applyFilter(BitGrid input_grid);
     /**
      * Method for obtaining the name of the filter
      * @return the filter's name
@@ -1,10 +1,12 @@
 /*
  * Created: 2023-04-06
- * Updated: 2023-05-10
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility.filters;
 
+import sem_secm_align.data_types.BitGrid;
+
 /**
  * Morphological closure using a nxn square of ones as the dilater/eroder
  * This can fill in (n-1)x(n-1) holes or ((n-1))-wide gaps between lines.
@@ -17,15 +19,9 @@ public class Close implements BinaryFilter{
     }
     
     @Override
-    public int[][] applyFilter(int[][] input_grid){
-        int[][] mask = new int[size][size];
-        for(int i = 0; i < size; i++){
-            for(int ii = 0; ii < size; ii++){
-                mask[i][ii] = 1;
-            }
-        }
-        int[][] dilated = DilationErosion.dilateGrid(input_grid, mask);
-        return DilationErosion.erodeGrid(dilated, mask);
+    public BitGrid applyFilter(BitGrid input_grid){
+        BitGrid dilated = DilationErosion.dilateRectangle(input_grid, size, size);
+        return DilationErosion.erodeRectangle(dilated, size, size);
     }
 
     @Override
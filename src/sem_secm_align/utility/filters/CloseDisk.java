@@ -0,0 +1,35 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.utility.filters;
+
+import sem_secm_align.data_types.BitGrid;
+
+/**
+ * Morphological closure using a disk of the given radius as the dilater/eroder.
+ * This can fill in holes and gaps narrower than the disk without squaring off the edges of round features, such as disk microelectrodes.
+ * The cost does not depend on the radius.
+ * @author Nathaniel
+ */
+public class CloseDisk implements BinaryFilter{
+
+    public CloseDisk(int radius){
+        this.radius = radius;
+    }
+    
+    @Override
+    public BitGrid applyFilter(BitGrid input_grid){
+        BitGrid dilated = DilationErosion.dilateDisk(input_grid, radius);
+        return DilationErosion.erodeDisk(dilated, radius);
+    }
+
+    @Override
+    public String getName(){
+        return "Radius " + radius + " Disk Morphological Close";
+    }
+    
+    final int radius;
+    
+}
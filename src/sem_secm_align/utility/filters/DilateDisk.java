@@ -0,0 +1,34 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.utility.filters;
+
+import sem_secm_align.data_types.BitGrid;
+
+/**
+ * Morphological dilation using a disk of the given radius as the dilater.
+ * This grows features by the radius in every direction, keeping their corners round.
+ * The cost does not depend on the radius.
+ * @author Nathaniel
+ */
+public class DilateDisk implements BinaryFilter{
+
+    public DilateDisk(int radius){
+        this.radius = radius;
+    }
+    
+    @Override
+    public BitGrid applyFilter(BitGrid input_grid){
+        return DilationErosion.dilateDisk(input_grid, radius);
+    }
+
+    @Override
+    public String getName(){
+        return "Radius " + radius + " Disk Morphological Dilation";
+    }
+    
+    final int radius;
+    
+}
@@ -0,0 +1,129 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.utility.filters;
+
+import sem_secm_align.data_types.BitGrid;
+
+/**
+ * Computes the exact Euclidean distance transform of a grid of bits: the distance from each grid-section to the nearest set grid-section.
+ * <p>The algorithm of Felzenszwalb and Huttenlocher is used. A one-dimensional transform is taken down every column and then along every row of the result,
+ * each by finding the lower envelope of the parabolas rooted at the grid-sections. The cost is linear in the number of grid-sections.</p>
+ * @author Nathaniel
+ */
+public class DistanceTransform {
+
+    /**
+     * Computes the squared Euclidean distance from each grid-section to the nearest set grid-section.
+     * @param grid The grid.
+     * @return The squared distances in grid-sections, indexed as <code>[x][y]</code>.
+     * The distances are whole numbers. If no grid-section is set, every distance is at least {@link #INFINITY}.
+     */
+    public static double[][] squaredDistances(BitGrid grid){
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        double[][] distances = new double[width][height];
+        int n = Math.max(width, height);
+        double[] f = new double[n];
+        double[] d = new double[n];
+        int[] v = new int[n];
+        double[] z = new double[n + 1];
+        //down the columns
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                f[y] = grid.get(x, y) ? 0 : INFINITY;
+            }
+            transform(f, height, d, v, z);
+            System.arraycopy(d, 0, distances[x], 0, height);
+        }
+        //along the rows
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                f[x] = distances[x][y];
+            }
+            transform(f, width, d, v, z);
+            for(int x = 0; x < width; x++){
+                distances[x][y] = d[x];
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Computes the squared Euclidean distance from each grid-section to the nearest grid-section that is not set, counting every grid-section outside the grid as not set.
+     * @param grid The grid.
+     * @return The squared distances in grid-sections, indexed as <code>[x][y]</code>. Grid-sections that are not set have a distance of 0.
+     */
+    public static double[][] squaredDistancesToBackground(BitGrid grid){
+        BitGrid background = grid.copy();
+        background.not();
+        double[][] distances = squaredDistances(background);
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        //the nearest grid-section outside the grid is straight across the nearest edge
+        for(int x = 0; x < width; x++){
+            int xedge = Math.min(x + 1, width - x);
+            for(int y = 0; y < height; y++){
+                int edge = Math.min(xedge, Math.min(y + 1, height - y));
+                distances[x][y] = Math.min(distances[x][y], (double)edge*edge);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * The one-dimensional squared distance transform of a sampled function: <code>d[q] = min over p of (q - p)^2 + f[p]</code>.
+     * @param f The function, with {@link #INFINITY} where there is nothing to measure from.
+     * @param n The number of samples.
+     * @param d Receives the transform.
+     * @param v Work space of at least <code>n</code> elements for the locations of the parabolas in the lower envelope.
+     * @param z Work space of at least <code>n + 1</code> elements for the boundaries between the parabolas in the lower envelope.
+     */
+    private static void transform(double[] f, int n, double[] d, int[] v, double[] z){
+        if(n == 0){
+            return;
+        }
+        int k = 0;
+        v[0] = 0;
+        z[0] = Double.NEGATIVE_INFINITY;
+        z[1] = Double.POSITIVE_INFINITY;
+        for(int q = 1; q < n; q++){
+            double s = intersection(f, q, v[k]);
+            while(s <= z[k]){
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        k = 0;
+        for(int q = 0; q < n; q++){
+            while(z[k + 1] < q){
+                k++;
+            }
+            double offset = q - v[k];
+            d[q] = offset*offset + f[v[k]];
+        }
+    }
+
+    /**
+     * Finds where the parabolas rooted at two samples intersect.
+     * @param f The function.
+     * @param q The later sample.
+     * @param p The earlier sample.
+     * @return The position of the intersection.
+     */
+    private static double intersection(double[] f, int q, int p){
+        return ((f[q] + (double)q*q) - (f[p] + (double)p*p)) / (2.0*(q - p));
+    }
+
+    /**
+     * The value standing in for an infinite distance. It is finite so that the intersections of parabolas can still be computed,
+     * and larger than any squared distance on a grid that fits in memory.
+     */
+    public static final double INFINITY = 1E20;
+}
@@ -0,0 +1,34 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.utility.filters;
+
+import sem_secm_align.data_types.BitGrid;
+
+/**
+ * Morphological erosion using a disk of the given radius as the eroder.
+ * This shrinks features by the radius in every direction and removes any that a disk of that radius cannot fit inside.
+ * The cost does not depend on the radius.
+ * @author Nathaniel
+ */
+public class ErodeDisk implements BinaryFilter{
+
+    public ErodeDisk(int radius){
+        this.radius = radius;
+    }
+    
+    @Override
+    public BitGrid applyFilter(BitGrid input_grid){
+        return DilationErosion.erodeDisk(input_grid, radius);
+    }
+
+    @Override
+    public String getName(){
+        return "Radius " + radius + " Disk Morphological Erosion";
+    }
+    
+    final int radius;
+    
+}
@@ -1,10 +1,12 @@
 /*
  * Created: 2022-12-01
- * Updated: 2023-04-06
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility.filters;
 
+import sem_secm_align.data_types.BitGrid;
+
 /**
  * This is the identity filter (does not have any effect on the data)
  * @author Nathaniel
@@ -27,7 +29,7 @@ public class Identity implements Filter, BinaryFilter{
      * @return The input data.
      */
     @Override
-    public int[][] applyFilter(int[][] input_grid) {
+    public BitGrid applyFilter(BitGrid input_grid) {
         return input_grid;
     }
     
@@ -5,6 +5,8 @@
  */
 package sem_secm_align.utility.filters;
 
+import sem_secm_align.data_types.BitGrid;
+
 /**
  * Identifies where the ends of lines occur (i.e. pixels where there is less than 2 immediately neighboring pixels
  * @author Nathaniel
@@ -12,26 +14,22 @@ package sem_secm_align.utility.filters;
 public class LineEndFilter implements BinaryFilter{
 
     @Override
-    public int[][] applyFilter(int[][] input_grid){
-        int[][] ends = new int[input_grid.length][input_grid[0].length];
-        for(int x = 0; x < input_grid.length; x++){
-            for(int y = 0; y < input_grid[0].length; y++){
-                if(input_grid[x][y] == 1){
+    public BitGrid applyFilter(BitGrid input_grid){
+        int width = input_grid.getWidth();
+        int height = input_grid.getHeight();
+        BitGrid ends = new BitGrid(width, height);
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                if(input_grid.get(x, y)){
                     int sum = 0;
-                    for(int u = -1; u < 2; u++){
-                        for(int v = -1; v < 2; v++){
-                            sum += DilationErosion.zeroPad(input_grid, x + u, y + v);
+                    for(int u = Math.max(x - 1, 0); u < Math.min(x + 2, width); u++){
+                        for(int v = Math.max(y - 1, 0); v < Math.min(y + 2, height); v++){
+                            if(input_grid.get(u, v)){
+                                sum ++;
+                            }
                         }
                     }
-                    if(sum > 1){
-                        ends[x][y] = 1;
-                    }
-                    else{
-                        ends[x][y] = 0;
-                    }
-                }
-                else{
-                    ends[x][y] = 0;
+                    ends.set(x, y, sum > 1);
                 }
             }
         }
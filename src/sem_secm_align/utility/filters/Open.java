@@ -1,10 +1,12 @@
 /*
  * Created: 2023-04-06
- * Updated: 2023-05-10
+ * Updated: 2026-10-18
  * Nathaniel Leslie
  */
 package sem_secm_align.utility.filters;
 
+import sem_secm_align.data_types.BitGrid;
+
 /**
  * Morphological opening using a 3x3 square of ones as the dilater/eroder
  * This will remove 2 thick lines and blobs.
@@ -17,15 +19,9 @@ public class Open implements BinaryFilter{
     }
     
     @Override
-    public int[][] applyFilter(int[][] input_grid){
-        int[][] mask = new int[size][size];
-        for(int i = 0; i < size; i++){
-            for(int ii = 0; ii < size; ii++){
-                mask[i][ii] = 1;
-            }
-        }
-        int[][] eroded = DilationErosion.erodeGrid(input_grid, mask);
-        return DilationErosion.dilateGrid(eroded, mask);
+    public BitGrid applyFilter(BitGrid input_grid){
+        BitGrid eroded = DilationErosion.erodeRectangle(input_grid, size, size);
+        return DilationErosion.dilateRectangle(eroded, size, size);
     }
 
     @Override
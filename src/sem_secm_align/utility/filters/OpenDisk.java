@@ -0,0 +1,35 @@
+/*
+ * Created: 2026-10-18
+ * Updated: 2026-10-18
+ * Nathaniel Leslie
+ */
+package sem_secm_align.utility.filters;
+
+import sem_secm_align.data_types.BitGrid;
+
+/**
+ * Morphological opening using a disk of the given radius as the eroder/dilater.
+ * This removes specks and spurs narrower than the disk while keeping the round edges of larger features, such as disk microelectrodes.
+ * The cost does not depend on the radius.
+ * @author Nathaniel
+ */
+public class OpenDisk implements BinaryFilter{
+
+    public OpenDisk(int radius){
+        this.radius = radius;
+    }
+    
+    @Override
+    public BitGrid applyFilter(BitGrid input_grid){
+        BitGrid eroded = DilationErosion.erodeDisk(input_grid, radius);
+        return DilationErosion.dilateDisk(eroded, radius);
+    }
+
+    @Override
+    public String getName(){
+        return "Radius " + radius + " Disk Morphological Open";
+    }
+    
+    final int radius;
+    
+}